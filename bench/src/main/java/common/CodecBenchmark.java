@@ -0,0 +1,76 @@
+package common;
+
+import java.awt.Color;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Codificación y decodificación de mensajes: un estado completo con players serpientes y un movimiento
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final int FOODS = 8; // el tope por defecto de una sala
+
+    @Param({"4", "64", "512"})
+    public int players;
+
+    @Param({"3", "64"})
+    public int bodyLength;
+
+    private Message state;
+    private Message move;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        int side = 2000;
+        GameState gameState = new GameState(side, side);
+        Snake[] snakes = new Snake[players];
+        for (int p = 0; p < players; p++) {
+            SnakeBody body = new SnakeBody(bodyLength);
+            for (int i = 0; i < bodyLength; i++) {
+                body.pushTail(10 + i % 100, 3 * p + i / 100);
+            }
+            snakes[p] = new Snake(p + 1, Color.BLUE, body, Snake.Direction.LEFT);
+        }
+        gameState.setSnakes(snakes);
+        for (int i = 0; i < FOODS; i++) {
+            gameState.getFoods().add(new Food(5 * i, 1999, Food.FoodType.SMALL));
+        }
+        gameState.setTick(1234);
+        gameState.setGameRunning(true);
+        state = new Message(Message.Type.GAME_STATE, gameState);
+        move = new Message(Message.Type.MOVE_UP);
+        buffer = ByteBuffer.allocate(Math.max(MessageCodec.encodedSize(state), MessageCodec.encodedSize(move)));
+    }
+
+    @Benchmark
+    public int encodeGameState() {
+        buffer.clear();
+        MessageCodec.encode(state, buffer);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public Message roundTripGameState() throws ProtocolException {
+        return roundTrip(state);
+    }
+
+    @Benchmark
+    public Message roundTripMove() throws ProtocolException {
+        return roundTrip(move);
+    }
+
+    private Message roundTrip(Message message) throws ProtocolException {
+        buffer.clear();
+        MessageCodec.encode(message, buffer);
+        buffer.flip();
+        buffer.getInt(); // largo de la trama
+        return MessageCodec.decode(buffer);
+    }
+}
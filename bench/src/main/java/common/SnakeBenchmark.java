@@ -0,0 +1,64 @@
+package common;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Movimiento de una serpiente sola: avanzar, quitar la cola y crecer
+// Da vueltas en un cuadrado de 2x2 para no salirse del rango de coordenadas
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeBenchmark {
+    private static final Snake.Direction[] TURNS = {
+        Snake.Direction.DOWN, Snake.Direction.LEFT, Snake.Direction.UP, Snake.Direction.RIGHT
+    };
+
+    @Param({"3", "64", "1024"})
+    public int bodyLength;
+
+    private Snake snake;
+    private Food food;
+    private int step;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        SnakeBody body = new SnakeBody(bodyLength);
+        for (int i = 0; i < bodyLength; i++) {
+            body.pushTail(1000 - i, 1000);
+        }
+        snake = new Snake(1, Color.RED, body, Snake.Direction.RIGHT);
+        food = new Food(0, 0, Food.FoodType.MEDIUM);
+    }
+
+    private void turn() {
+        snake.setDirection(TURNS[step++ & 3]);
+    }
+
+    // Un paso normal: cabeza nueva y cola fuera
+    @Benchmark
+    public boolean moveAndRemoveTail() {
+        turn();
+        snake.move();
+        return snake.removeTail();
+    }
+
+    // Un paso comiendo: crece uno por paso; cada bodyLength pasos se recorta al largo inicial
+    @Benchmark
+    public int moveAndGrow() {
+        turn();
+        snake.move();
+        snake.grow(food);
+        snake.removeTail();
+        SnakeBody body = snake.getSegments();
+        if (body.size() >= 2 * bodyLength) {
+            while (body.size() > bodyLength) {
+                body.popTail();
+            }
+        }
+        return body.size();
+    }
+}
@@ -0,0 +1,77 @@
+package server;
+
+import common.*;
+import java.awt.Color;
+import java.util.Collections;
+import java.util.Random;
+
+// Tableros armados para los benchmarks: salas sin jugadores conectados ni red
+final class BenchBoards {
+    private BenchBoards() {
+    }
+
+    // Motor de una sala de size x size con el cupo pedido (recortado a los límites de RoomSettings)
+    static GameEngine engine(int size, int players) {
+        RoomSettings settings = new RoomSettings("bench", size, size, players).clamped();
+        ServerMetrics metrics = new ServerMetrics(Collections.emptySet(), Collections.emptyMap());
+        Room room = new Room(1, settings, new FramePool(false), null, metrics,
+                GameEngine.DEFAULT_MAX_FOODS, GameEngine.DEFAULT_FOOD_TTL_TICKS);
+        return room.getEngine();
+    }
+
+    // Partida con las serpientes de inicio de los jugadores 1..players (los que no entran en el cupo se saltean)
+    static GameEngine match(int size, int players) {
+        GameEngine engine = engine(size, players);
+        int[] ids = new int[players];
+        for (int i = 0; i < players; i++) {
+            ids[i] = i + 1;
+        }
+        engine.resetBoard(ids);
+        return engine;
+    }
+
+    // Reemplaza las serpientes por cuerpos de bodyLength segmentos en zigzag, cada una en su franja de filas;
+    // devuelve cuántas entraron
+    static int layOutBodies(GameEngine engine, int bodyLength) {
+        GameState state = engine.getGameState();
+        OccupancyGrid grid = engine.getGrid();
+        int width = state.getBoardWidth();
+        int height = state.getBoardHeight();
+        int rowLength = width - 2;
+        int bandRows = (bodyLength + rowLength - 1) / rowLength;
+        Snake[] old = state.getSnakes();
+        Snake[] snakes = new Snake[old.length];
+        grid.clear();
+        int placed = 0;
+        for (int i = 0; i < old.length && 1 + (placed + 1) * bandRows <= height - 1; i++) {
+            int top = 1 + placed * bandRows;
+            SnakeBody body = new SnakeBody(bodyLength);
+            for (int j = 0; j < bodyLength; j++) {
+                int row = j / rowLength;
+                int col = j % rowLength;
+                int x = row % 2 == 0 ? width - 2 - col : 1 + col;
+                body.pushTail(x, top + row);
+                grid.occupy(x, top + row, i + 1);
+            }
+            snakes[i] = new Snake(i + 1, Color.RED, body, Snake.Direction.RIGHT);
+            placed++;
+        }
+        state.setSnakes(snakes);
+        return placed;
+    }
+
+    // Marca como pared una fracción de las celdas al azar (tablero lleno en ese porcentaje)
+    static void fill(GameEngine engine, int percent, Random random) {
+        OccupancyGrid grid = engine.getGrid();
+        int target = (int) ((long) grid.getWidth() * grid.getHeight() * percent / 100);
+        int filled = grid.getWidth() * grid.getHeight() - grid.getFreeCount();
+        while (filled < target) {
+            int cell = grid.randomFreeCell(random);
+            if (cell < 0) {
+                break;
+            }
+            grid.setWall(grid.xOf(cell), grid.yOf(cell), true);
+            filled++;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Punto de entrada de benchmarks.jar: corre JMH con el perfilador de GC (memoria asignada por operación
+// y recolecciones) salvo que se pida otro perfilador con -prof
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-prof")) {
+            options.add("-prof");
+            options.add("gc");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
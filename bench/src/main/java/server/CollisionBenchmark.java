@@ -0,0 +1,72 @@
+package server;
+
+import common.*;
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// checkCollisions con cuerpos de distinto largo: la consulta va a la grilla, no recorre los cuerpos
+// Se prueban cabezas de un segmento en celdas al azar (vacías, paredes o cuerpos de otras serpientes)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+    private static final int PROBES = 1024;
+
+    @Param({"500", "2000"})
+    public int boardSize;
+
+    @Param({"64", "512"})
+    public int players;
+
+    @Param({"3", "64", "1024"})
+    public int bodyLength;
+
+    private GameEngine engine;
+    private Snake[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        engine = BenchBoards.match(boardSize, players);
+        BenchBoards.layOutBodies(engine, bodyLength);
+        // La mitad de las pruebas cae sobre algún cuerpo, la otra mitad en cualquier celda
+        Random random = new Random(42);
+        Snake[] snakes = engine.getGameState().getSnakes();
+        probes = new Snake[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            int x = random.nextInt(boardSize);
+            int y = random.nextInt(boardSize);
+            Snake target = snakes[random.nextInt(snakes.length)];
+            if (i % 2 == 0 && target != null) {
+                SnakeBody body = target.getSegments();
+                int segment = random.nextInt(body.size());
+                x = body.getX(segment);
+                y = body.getY(segment);
+            }
+            SnakeBody head = new SnakeBody(1);
+            head.pushTail(x, y);
+            probes[i] = new Snake(0, Color.WHITE, head, Snake.Direction.RIGHT);
+        }
+    }
+
+    @Benchmark
+    public boolean checkCollisions() {
+        return engine.checkCollisions(probes[next++ & (PROBES - 1)]);
+    }
+
+    // Todas las serpientes del tablero, como en un tick
+    @Benchmark
+    public void checkAllSnakes(Blackhole blackhole) {
+        for (Snake snake : engine.getGameState().getSnakes()) {
+            if (snake != null) {
+                blackhole.consume(engine.checkCollisions(snake));
+            }
+        }
+    }
+}
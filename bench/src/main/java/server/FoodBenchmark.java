@@ -0,0 +1,45 @@
+package server;
+
+import common.*;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// generateFood con el tablero lleno en distinta medida; cada comida nueva se vence enseguida
+// para que siempre haya un lugar libre y el tablero no cambie entre operaciones
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoodBenchmark {
+    @Param({"40", "500", "2000"})
+    public int boardSize;
+
+    @Param({"0", "50", "90", "99"})
+    public int fillPercent;
+
+    private GameEngine engine;
+    private List<Food> foods;
+
+    @Setup
+    public void setUp() {
+        engine = BenchBoards.engine(boardSize, 4);
+        BenchBoards.fill(engine, fillPercent, new Random(42));
+        foods = engine.getGameState().getFoods();
+    }
+
+    @Benchmark
+    public int generateAndExpire() {
+        engine.generateFood();
+        if (foods.isEmpty()) {
+            return -1; // tablero lleno
+        }
+        Food food = foods.get(foods.size() - 1);
+        int slot = OccupancyGrid.foodSlot(engine.getGrid().get(food.getX(), food.getY()));
+        engine.expireFood(slot);
+        return slot;
+    }
+}
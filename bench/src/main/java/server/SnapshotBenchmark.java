@@ -0,0 +1,83 @@
+package server;
+
+import common.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Lo que arma broadcastGameState en cada tick, sin la red:
+// estado completo codificado, historial + delta contra el tick anterior, y la vista de un jugador en salas grandes
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final Snake.Direction[] TURNS = {
+        Snake.Direction.DOWN, Snake.Direction.LEFT, Snake.Direction.UP, Snake.Direction.RIGHT
+    };
+
+    @Param({"40", "500", "2000"})
+    public int boardSize;
+
+    @Param({"4", "64", "512"})
+    public int players;
+
+    private GameEngine engine;
+    private GameState state;
+    private FramePool framePool;
+    private SnapshotHistory history;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        engine = BenchBoards.match(boardSize, players);
+        state = engine.getGameState();
+        framePool = new FramePool(false);
+        history = new SnapshotHistory();
+        state.setGameRunning(true);
+        history.record(state, 1);
+    }
+
+    // Todas las serpientes dan un paso (en un cuadrado de 2x2) y avanza el tick, como en updateGame
+    private void advance() {
+        Snake.Direction turn = TURNS[step++ & 3];
+        for (Snake snake : state.getSnakes()) {
+            if (snake != null) {
+                snake.setDirection(turn);
+                snake.move();
+                snake.removeTail();
+            }
+        }
+        state.setTick(state.getTick() + 1);
+    }
+
+    @Benchmark
+    public int fullState() {
+        SharedFrame frame = framePool.encode(new Message(Message.Type.GAME_STATE, state));
+        int size = frame.size();
+        frame.release();
+        return size;
+    }
+
+    @Benchmark
+    public int recordAndDelta() {
+        advance();
+        history.record(state, 1);
+        StateDelta delta = history.diff(state.getTick() - 1, state, 1);
+        SharedFrame frame = framePool.encode(new Message(Message.Type.GAME_STATE_DELTA, delta));
+        int size = frame.size();
+        frame.release();
+        return size;
+    }
+
+    // En tableros de hasta 48x38 la vista es el tablero entero
+    @Benchmark
+    public int playerView() {
+        GameState view = engine.buildView(1 + (step++ % Math.max(1, players)));
+        SharedFrame frame = framePool.encode(new Message(Message.Type.GAME_STATE, view));
+        int size = frame.size();
+        frame.release();
+        return size;
+    }
+}
@@ -0,0 +1,6 @@
+@echo off
+REM Script para la prueba de carga (servidor local)
+REM Ejemplo: run-loadtest.bat --bots 500 --room-size 50 --board 500x500 --rate 5 --duration 120
+echo Iniciando prueba de carga...
+java -cp bin client.LoadTester %*
+pause
\ No newline at end of file
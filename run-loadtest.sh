@@ -0,0 +1,6 @@
+#!/bin/bash
+
+# Script para la prueba de carga (servidor local)
+# Ejemplo: ./run-loadtest.sh --bots 500 --room-size 50 --board 500x500 --rate 5 --duration 120
+echo "Iniciando prueba de carga..."
+java -cp bin client.LoadTester "$@"
\ No newline at end of file
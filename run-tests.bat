@@ -0,0 +1,5 @@
+@echo off
+REM Script para las pruebas (JUnit 5, con Maven)
+echo Ejecutando pruebas...
+call mvn -B test
+pause
\ No newline at end of file
@@ -0,0 +1,6 @@
+#!/bin/bash
+
+# Script para las pruebas (JUnit 5, con Maven)
+
+echo "Ejecutando pruebas de Snake Distribuido..."
+mvn -B test
\ No newline at end of file
@@ -0,0 +1,325 @@
+package client;
+
+import common.*;
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+
+// Conexión de un bot del generador de carga: habla el mismo protocolo que SnakeClient, sin ventana
+// Arma los estados de los deltas y los confirma igual que el cliente (o simula las salas lockstep), y mide lo que recibe
+class BotConnection {
+    private static final int STATE_HISTORY = 64;
+    private static final int BUCKET_MILLIS = 1;     // ancho de cada barra del histograma de intervalos
+    static final int HISTOGRAM_BUCKETS = 2000;      // la última barra junta todo lo que pasa de 2 s
+
+    // Avisos al generador (desde el hilo lector del bot)
+    interface Listener {
+        void onRoomJoined(BotConnection bot);
+        void onGameOver(BotConnection bot);
+    }
+
+    private final int index;
+    private final Listener listener;
+    private final boolean udp;
+    private final boolean lockstep; // anuncia CAP_LOCKSTEP y simula las salas lockstep
+    private final LockstepRunner lockstepRunner = new LockstepRunner(this::send);
+    private Socket socket;
+    private StateChannel stateChannel; // estados por UDP; null si van por TCP
+    private DataOutputStream output;
+    private CountingInputStream counter;
+    private GameState[] stateHistory = new GameState[STATE_HISTORY];
+    private volatile int roomId = -1;
+    private volatile int playerId = -1;
+    private volatile boolean closing;
+    private volatile String disconnectReason;
+
+    // Medidas; las escriben los hilos lectores (TCP y UDP) de a uno, se leen al final
+    private volatile boolean measuring;
+    private long lastStateNanos;
+    private int gameOverTick = -1; // por UDP el último estado puede llegar después del GAME_OVER (TCP)
+    private long states;
+    private long deltaMisses;
+    private long intervals;
+    private double intervalSum;
+    private double intervalSquares;
+    private double maxInterval;
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    private long datagramBytesAtStart;
+
+    public BotConnection(int index, Listener listener, boolean udp, boolean lockstep) {
+        this.index = index;
+        this.listener = listener;
+        this.udp = udp;
+        this.lockstep = lockstep;
+    }
+
+    public void connect(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        counter = new CountingInputStream(socket.getInputStream());
+        DataInputStream input = new DataInputStream(new BufferedInputStream(counter));
+        // Pila chica: hay un hilo lector por conexión
+        Thread reader = new Thread(null, () -> receiveMessages(input), "bot-" + index, 256 * 1024);
+        reader.setDaemon(true);
+        reader.start();
+        int capabilities = MessageCodec.CAP_DELTA | (lockstep ? MessageCodec.CAP_LOCKSTEP : 0);
+        if (udp) {
+            try {
+                stateChannel = new StateChannel(socket.getInetAddress(), port, "bot-" + index);
+                capabilities |= MessageCodec.CAP_UDP;
+            } catch (SocketException e) {
+                System.err.println("Bot " + index + " sin UDP: " + e.getMessage());
+            }
+        }
+        send(new Message(Message.Type.CONNECT, capabilities));
+    }
+
+    public synchronized void send(Message message) {
+        if (output == null || disconnectReason != null) {
+            return;
+        }
+        try {
+            MessageCodec.writeFrame(output, message);
+            output.flush();
+        } catch (IOException e) {
+            disconnected("error enviando: " + e.getMessage());
+        }
+    }
+
+    private void receiveMessages(DataInputStream in) {
+        try {
+            while (true) {
+                handleMessage(MessageCodec.readFrame(in));
+            }
+        } catch (IOException e) {
+            disconnected(closing ? null : "conexión perdida: " + e.getMessage());
+        }
+    }
+
+    // Estados por UDP: solo los de la sala actual
+    private void receiveDatagram(int fromRoom, Message message) {
+        if (fromRoom == roomId && (message.getType() == Message.Type.GAME_STATE
+                || message.getType() == Message.Type.GAME_STATE_DELTA)) {
+            handleMessage(message);
+        }
+    }
+
+    private synchronized void handleMessage(Message message) {
+        switch (message.getType()) {
+            case UDP_TOKEN:
+                if (stateChannel != null) {
+                    stateChannel.start((Integer) message.getData(), this::receiveDatagram);
+                }
+                break;
+            case ROOM_JOINED:
+                roomId = (Integer) message.getData();
+                playerId = message.getPlayerId();
+                stateHistory = new GameState[STATE_HISTORY];
+                lockstepRunner.reset();
+                send(new Message(Message.Type.STATE_ACK, -1));
+                listener.onRoomJoined(this);
+                break;
+            case GAME_STATE:
+                receivedState((GameState) message.getData());
+                break;
+            case LOCKSTEP_SYNC:
+                measureState(lockstepRunner.sync((Simulation) message.getData()));
+                break;
+            case LOCKSTEP_TICK: {
+                GameState state = lockstepRunner.step((TickInputs) message.getData());
+                if (state != null) {
+                    measureState(state);
+                }
+                break;
+            }
+            case GAME_STATE_DELTA: {
+                StateDelta delta = (StateDelta) message.getData();
+                GameState state = delta.applyTo(stateHistory[Math.floorMod(delta.getBaseTick(), STATE_HISTORY)]);
+                if (state == null) {
+                    deltaMisses++;
+                } else {
+                    receivedState(state);
+                }
+                break;
+            }
+            case GAME_OVER:
+                // La pausa hasta la próxima partida no es un intervalo entre estados
+                lastStateNanos = 0;
+                gameOverTick = ((GameState) message.getData()).getTick();
+                listener.onGameOver(this);
+                break;
+            case CONNECTION_REJECTED:
+                disconnected("rechazado: " + message.getData());
+                break;
+            case ERROR:
+                System.err.println("Bot " + index + ": " + message.getData());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void receivedState(GameState state) {
+        stateHistory[Math.floorMod(state.getTick(), STATE_HISTORY)] = state;
+        send(new Message(Message.Type.STATE_ACK, state.getTick()));
+        measureState(state);
+    }
+
+    // Los estados simulados en lockstep se miden igual, sin confirmarlos
+    private void measureState(GameState state) {
+        if (state.getTick() <= gameOverTick) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (measuring) {
+            states++;
+            if (lastStateNanos != 0) {
+                double millis = (now - lastStateNanos) / 1e6;
+                intervals++;
+                intervalSum += millis;
+                intervalSquares += millis * millis;
+                maxInterval = Math.max(maxInterval, millis);
+                histogram[Math.min(HISTOGRAM_BUCKETS - 1, (int) (millis / BUCKET_MILLIS))]++;
+            }
+        }
+        lastStateNanos = now;
+    }
+
+    // Empieza a medir desde ahora (los estados previos a la partida no cuentan)
+    public void startMeasuring() {
+        if (counter != null) {
+            counter.resetCount();
+        }
+        if (stateChannel != null) {
+            datagramBytesAtStart = stateChannel.getBytesReceived();
+        }
+        measuring = true;
+    }
+
+    public void stopMeasuring() {
+        measuring = false;
+    }
+
+    private void disconnected(String reason) {
+        synchronized (this) {
+            if (disconnectReason != null) {
+                return;
+            }
+            disconnectReason = reason == null ? "" : reason;
+        }
+        if (stateChannel != null) {
+            stateChannel.close();
+        }
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public void close() {
+        closing = true;
+        send(new Message(Message.Type.DISCONNECT));
+        disconnected(null);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+    public int getRoomId() {
+        return roomId;
+    }
+    public int getPlayerId() {
+        return playerId;
+    }
+    // Motivo de una desconexión que no pidió el generador; null si sigue conectado o se cerró a propósito
+    public String getFailure() {
+        String reason = disconnectReason;
+        return reason == null || reason.isEmpty() ? null : reason;
+    }
+    public long getBytesReceived() {
+        long datagramBytes = stateChannel == null ? 0 : stateChannel.getBytesReceived() - datagramBytesAtStart;
+        return (counter == null ? 0 : counter.getCount()) + datagramBytes;
+    }
+    // Si los estados llegaron por UDP y cuántos datagramas viejos o desordenados se descartaron
+    public boolean isReceivingDatagrams() {
+        return stateChannel != null && stateChannel.isReceiving();
+    }
+    public long getStaleDatagrams() {
+        return stateChannel == null ? 0 : stateChannel.getStale();
+    }
+    public long getStates() {
+        return states;
+    }
+    public long getDeltaMisses() {
+        return deltaMisses;
+    }
+    // Estados completos de las salas lockstep y los que se pidieron por un tick perdido
+    public int getLockstepSyncs() {
+        return lockstepRunner.getSyncs();
+    }
+    public int getLockstepResyncRequests() {
+        return lockstepRunner.getResyncRequests();
+    }
+    public long getIntervals() {
+        return intervals;
+    }
+    public double getMeanInterval() {
+        return intervals == 0 ? 0 : intervalSum / intervals;
+    }
+    // Variación del intervalo entre estados (desvío estándar, en ms)
+    public double getJitter() {
+        if (intervals < 2) {
+            return 0;
+        }
+        double mean = getMeanInterval();
+        return Math.sqrt(Math.max(0, intervalSquares / intervals - mean * mean));
+    }
+    public double getMaxInterval() {
+        return maxInterval;
+    }
+    public long[] getHistogram() {
+        return histogram;
+    }
+    static double bucketMillis(int bucket) {
+        return (bucket + 1) * BUCKET_MILLIS;
+    }
+
+    // Cuenta los bytes que llegan por el socket
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        void resetCount() {
+            count = 0;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package client;
+
+import common.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Generador de carga sin ventana: abre N conexiones de bots contra el servidor, los agrupa en salas,
+// inicia las partidas y manda movimientos al ritmo pedido; al final escribe un reporte
+// con intervalos entre estados (jitter), bytes recibidos y desconexiones de cada conexión
+public class LoadTester implements BotConnection.Listener {
+    private static final long JOIN_TIMEOUT_SECONDS = 15;
+    private static final long RESTART_DELAY_MILLIS = 1000; // pausa antes de reiniciar una partida terminada
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+
+    private final String host;
+    private final int port;
+    private final int botCount;
+    private final int roomSize;
+    private final int boardWidth;
+    private final int boardHeight;
+    private final double movesPerSecond;
+    private final Snake.Direction[] script; // null = movimientos al azar
+    private final int durationSeconds;
+    private final String reportFile;
+    private final boolean udp; // estados por UDP (el control sigue por TCP)
+    private final boolean lockstep; // salas lockstep: llegan las entradas de cada tick y cada bot simula
+
+    private BotConnection[] bots;
+    private CountDownLatch leadersJoined;
+    private CountDownLatch allJoined;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    private int failedConnects;
+
+    public LoadTester(Map<String, String> options) {
+        host = options.getOrDefault("host", "127.0.0.1");
+        port = Integer.parseInt(options.getOrDefault("port", "12345"));
+        botCount = Integer.parseInt(options.getOrDefault("bots", "100"));
+        roomSize = Math.max(1, Integer.parseInt(options.getOrDefault("room-size", String.valueOf(RoomSettings.DEFAULT_MAX_PLAYERS))));
+        String[] board = options.getOrDefault("board", RoomSettings.DEFAULT_WIDTH + "x" + RoomSettings.DEFAULT_HEIGHT).split("x");
+        boardWidth = Integer.parseInt(board[0]);
+        boardHeight = Integer.parseInt(board[1]);
+        movesPerSecond = Double.parseDouble(options.getOrDefault("rate", "4"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        reportFile = options.getOrDefault("report", "reporte-carga.txt");
+        udp = Boolean.parseBoolean(options.getOrDefault("udp", "false"));
+        lockstep = Boolean.parseBoolean(options.getOrDefault("lockstep", "false"));
+        String scriptText = options.get("script");
+        if (scriptText == null) {
+            script = null;
+        } else {
+            String[] names = scriptText.split(",");
+            script = new Snake.Direction[names.length];
+            for (int i = 0; i < names.length; i++) {
+                script[i] = Snake.Direction.valueOf(names[i].trim().toUpperCase());
+            }
+        }
+    }
+
+    public void run() throws InterruptedException, IOException {
+        int rooms = (botCount + roomSize - 1) / roomSize;
+        bots = new BotConnection[botCount];
+        leadersJoined = new CountDownLatch(rooms);
+        allJoined = new CountDownLatch(botCount);
+        scheduler = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        System.out.println("Conectando " + botCount + " bots a " + host + ":" + port + " en " + rooms + " salas de " + roomSize);
+
+        for (int i = 0; i < botCount; i++) {
+            bots[i] = new BotConnection(i, this, udp, lockstep);
+            try {
+                bots[i].connect(host, port);
+            } catch (IOException e) {
+                failedConnects++;
+                System.err.println("Bot " + i + " no pudo conectarse: " + e.getMessage());
+            }
+        }
+
+        // El primer bot de cada grupo crea la sala; los demás entran cuando se conoce su id
+        RoomSettings settings = new RoomSettings("carga", boardWidth, boardHeight, roomSize).clamped();
+        for (int i = 0; i < botCount; i += roomSize) {
+            bots[i].send(new Message(Message.Type.CREATE_ROOM,
+                    new RoomSettings("carga-" + (i / roomSize + 1), settings.getWidth(), settings.getHeight(),
+                            settings.getMaxPlayers(), lockstep)));
+        }
+        leadersJoined.await(JOIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (int i = 0; i < botCount; i++) {
+            if (!isLeader(i)) {
+                int roomId = bots[leaderOf(i)].getRoomId();
+                if (roomId > 0) {
+                    bots[i].send(new Message(Message.Type.JOIN_ROOM, roomId));
+                }
+            }
+        }
+        if (!allJoined.await(JOIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("No entraron todos los bots a sus salas: faltan " + allJoined.getCount());
+        }
+
+        // Medición: desde el inicio de las partidas hasta el final de la prueba
+        running = true;
+        for (BotConnection bot : bots) {
+            bot.startMeasuring();
+        }
+        for (int i = 0; i < botCount; i += roomSize) {
+            bots[i].send(new Message(Message.Type.START_GAME));
+        }
+        long periodMicros = movesPerSecond > 0 ? (long) (1_000_000 / movesPerSecond) : 0;
+        if (periodMicros > 0) {
+            Random random = new Random();
+            for (BotConnection bot : bots) {
+                int[] step = {0};
+                // Desfase al azar para que los bots no manden todos en el mismo instante
+                scheduler.scheduleAtFixedRate(() -> sendMove(bot, step, ThreadLocalRandom.current()),
+                        (long) (random.nextDouble() * periodMicros), periodMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        running = false;
+        scheduler.shutdownNow();
+        for (BotConnection bot : bots) {
+            bot.stopMeasuring();
+        }
+        String report = buildReport(elapsed);
+        for (BotConnection bot : bots) {
+            bot.close();
+        }
+        System.out.print(report);
+        Files.write(Paths.get(reportFile), report.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Reporte escrito en " + reportFile);
+    }
+
+    private void sendMove(BotConnection bot, int[] step, Random random) {
+        Snake.Direction direction = script != null ? script[step[0]++ % script.length] : DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+        switch (direction) {
+            case UP:
+                bot.send(new Message(Message.Type.MOVE_UP));
+                break;
+            case DOWN:
+                bot.send(new Message(Message.Type.MOVE_DOWN));
+                break;
+            case LEFT:
+                bot.send(new Message(Message.Type.MOVE_LEFT));
+                break;
+            case RIGHT:
+                bot.send(new Message(Message.Type.MOVE_RIGHT));
+                break;
+        }
+    }
+
+    private boolean isLeader(int index) {
+        return index % roomSize == 0;
+    }
+
+    private int leaderOf(int index) {
+        return index - index % roomSize;
+    }
+
+    @Override
+    public void onRoomJoined(BotConnection bot) {
+        if (isLeader(bot.getIndex())) {
+            leadersJoined.countDown();
+        }
+        allJoined.countDown();
+    }
+
+    // Partida terminada: el creador de la sala la vuelve a iniciar para que la carga siga
+    @Override
+    public void onGameOver(BotConnection bot) {
+        if (running && isLeader(bot.getIndex())) {
+            try {
+                scheduler.schedule(() -> bot.send(new Message(Message.Type.START_GAME)), RESTART_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // La prueba ya terminó
+            }
+        }
+    }
+
+    private String buildReport(double elapsed) {
+        long[] histogram = new long[BotConnection.HISTOGRAM_BUCKETS];
+        long states = 0;
+        long bytes = 0;
+        long misses = 0;
+        long stale = 0;
+        long syncs = 0;
+        long resyncRequests = 0;
+        int overUdp = 0;
+        double maxInterval = 0;
+        double jitterSum = 0;
+        int measured = 0;
+        BotConnection worst = null;
+        Map<String, Integer> failures = new TreeMap<>();
+        for (BotConnection bot : bots) {
+            long[] own = bot.getHistogram();
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += own[i];
+            }
+            states += bot.getStates();
+            bytes += bot.getBytesReceived();
+            misses += bot.getDeltaMisses();
+            stale += bot.getStaleDatagrams();
+            syncs += bot.getLockstepSyncs();
+            resyncRequests += bot.getLockstepResyncRequests();
+            if (bot.isReceivingDatagrams()) {
+                overUdp++;
+            }
+            maxInterval = Math.max(maxInterval, bot.getMaxInterval());
+            if (bot.getIntervals() > 0) {
+                jitterSum += bot.getJitter();
+                measured++;
+                if (worst == null || bot.getJitter() > worst.getJitter()) {
+                    worst = bot;
+                }
+            }
+            if (bot.getFailure() != null) {
+                failures.merge(bot.getFailure(), 1, Integer::sum);
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("=== Prueba de carga: %d bots, %d por sala, tablero %dx%d, %.1f movimientos/s, %.1f s ===%n",
+                botCount, roomSize, boardWidth, boardHeight, movesPerSecond, elapsed));
+        out.append(String.format("Conexiones fallidas: %d, sin sala: %d, desconectados: %d%n",
+                failedConnects, allJoined.getCount(), failures.values().stream().mapToInt(Integer::intValue).sum()));
+        for (Map.Entry<String, Integer> failure : failures.entrySet()) {
+            out.append(String.format("  %d x %s%n", failure.getValue(), failure.getKey()));
+        }
+        out.append(String.format("Estados recibidos: %d (%.1f/s por bot), deltas sin base: %d%n",
+                states, states / elapsed / Math.max(1, botCount), misses));
+        if (udp) {
+            out.append(String.format("Estados por UDP: %d bots, datagramas viejos o desordenados descartados: %d%n", overUdp, stale));
+        }
+        if (lockstep) {
+            out.append(String.format("Lockstep: estados completos recibidos %d, pedidos por ticks perdidos %d%n", syncs, resyncRequests));
+        }
+        out.append(String.format("Bytes recibidos: %d (%.1f KB/s por bot)%n", bytes, bytes / elapsed / 1024 / Math.max(1, botCount)));
+        out.append(String.format("Intervalo entre estados: p50 %.0f ms, p99 %.0f ms, p99.9 %.0f ms, máximo %.1f ms%n",
+                percentile(histogram, 0.50), percentile(histogram, 0.99), percentile(histogram, 0.999), maxInterval));
+        out.append(String.format("Jitter (desvío del intervalo): medio %.2f ms", measured == 0 ? 0 : jitterSum / measured));
+        if (worst != null) {
+            out.append(String.format(", peor bot %d con %.2f ms", worst.getIndex(), worst.getJitter()));
+        }
+        out.append(String.format("%n%n"));
+        out.append(String.format("%5s %6s %7s %8s %12s %10s %10s %10s  %s%n",
+                "bot", "sala", "jugador", "estados", "bytes", "media ms", "jitter ms", "max ms", "desconexión"));
+        for (BotConnection bot : bots) {
+            out.append(String.format("%5d %6d %7d %8d %12d %10.2f %10.2f %10.1f  %s%n",
+                    bot.getIndex(), bot.getRoomId(), bot.getPlayerId(), bot.getStates(), bot.getBytesReceived(),
+                    bot.getMeanInterval(), bot.getJitter(), bot.getMaxInterval(),
+                    bot.getFailure() == null ? "-" : bot.getFailure()));
+        }
+        return out.toString();
+    }
+
+    // Límite superior de la barra donde cae el percentil pedido
+    private static double percentile(long[] histogram, double fraction) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= target) {
+                return BotConnection.bucketMillis(i);
+            }
+        }
+        return BotConnection.bucketMillis(histogram.length - 1);
+    }
+
+    // Opciones como --nombre valor, por ejemplo: --bots 500 --room-size 50 --board 500x500 --rate 5 --duration 120 --udp true
+    // (--lockstep true: salas lockstep, solo con tableros del tamaño de la vista)
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Opción inválida: " + args[i]);
+                System.exit(1);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new LoadTester(options).run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,65 @@
+package client;
+
+import common.*;
+import java.util.function.Consumer;
+
+// Simulación local de una sala lockstep: arranca del estado completo del servidor (LOCKSTEP_SYNC) y avanza
+// con las entradas de cada tick (LOCKSTEP_TICK), así el servidor no manda estados
+// Cada HASH_INTERVAL ticks manda el hash de su estado para que el servidor lo compare; si no coincide
+// o falta un tick, llega de nuevo el estado completo
+// Lo usa un solo hilo a la vez (el lector de la conexión)
+class LockstepRunner {
+    private final Consumer<Message> sender;
+    private Simulation sim;
+    private boolean awaitingSync; // se perdió un tick: nada sirve hasta el próximo estado completo
+    private int syncs;
+    private int resyncRequests;
+
+    LockstepRunner(Consumer<Message> sender) {
+        this.sender = sender;
+    }
+
+    // Estado completo del servidor; devuelve una copia para dibujar
+    public GameState sync(Simulation sim) {
+        this.sim = sim;
+        awaitingSync = false;
+        syncs++;
+        return new GameState(sim.getGameState());
+    }
+
+    // Avanza un tick; devuelve una copia del estado para dibujar, o null si el tick no se pudo aplicar
+    public GameState step(TickInputs inputs) {
+        if (sim == null || awaitingSync || inputs.getTick() <= sim.getTick()) {
+            return null; // sin estado todavía, esperando uno completo o tick ya incluido en el estado
+        }
+        if (inputs.getTick() != sim.getTick() + 1) {
+            awaitingSync = true;
+            resyncRequests++;
+            sender.accept(new Message(Message.Type.LOCKSTEP_HASH, new int[] {-1, 0}));
+            return null;
+        }
+        sim.step(inputs);
+        GameState state = sim.getGameState();
+        state.setLastUpdateTime(inputs.getTime());
+        if (sim.getTick() % Simulation.HASH_INTERVAL == 0) {
+            sender.accept(new Message(Message.Type.LOCKSTEP_HASH, new int[] {sim.getTick(), sim.stateHash()}));
+        }
+        return new GameState(state);
+    }
+
+    // Cambio de sala: la simulación anterior ya no sirve
+    public void reset() {
+        sim = null;
+        awaitingSync = false;
+    }
+
+    public boolean isActive() {
+        return sim != null;
+    }
+    public int getSyncs() {
+        return syncs;
+    }
+    public int getResyncRequests() {
+        return resyncRequests;
+    }
+}
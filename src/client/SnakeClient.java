@@ -4,15 +4,32 @@ import common.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.*;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 // Cliente del juego con interfaz gráfica
 public class SnakeClient extends JFrame {
     private static final int CELL_SIZE = 15;
-    private static final int DEFAULT_BOARD_WIDTH = 40;
-    private static final int DEFAULT_BOARD_HEIGHT = 30;
+    // Celdas visibles; en tableros más grandes la vista sigue a la serpiente propia
+    private static final int VIEW_WIDTH = RoomSettings.DEFAULT_WIDTH;
+    private static final int VIEW_HEIGHT = RoomSettings.DEFAULT_HEIGHT;
+    private static final int MINIMAP_SIZE = 120; // píxeles del lado más largo del minimapa
+    private static final int LAYER_MARGIN = 20;   // celdas de la capa estática alrededor de la vista en tableros grandes
+    private static final Font MESSAGE_FONT = new Font("Segoe UI", Font.BOLD, 16);
+    private static final int DEFAULT_REFRESH_RATE = 60; // cuadros por segundo si la pantalla no informa el suyo
+    private static final long IDLE_FRAME_NANOS = 100_000_000L; // sin partida se dibuja cada 100 ms
+    // Tamaños de sala que se pueden crear: nombre, ancho, alto y jugadores
+    private static final String[] ROOM_SIZES = {"Normal 40x30 (4)", "Grande 200x150 (32)", "Enorme 1000x1000 (256)", "Gigante 2000x2000 (512)"};
+    private static final int[][] ROOM_DIMENSIONS = {{40, 30, 4}, {200, 150, 32}, {1000, 1000, 256}, {2000, 2000, 512}};
+    private static final int STATE_HISTORY = 64; // estados guardados para aplicar deltas
     
     // Componentes para interfaz
     private JTextField ipField;
@@ -21,19 +38,52 @@ public class SnakeClient extends JFrame {
     private JButton disconnectButton;
     private JButton startGameButton;
     private JComboBox<GameState.Difficulty> difficultyCombo;
+    private JComboBox<RoomInfo> roomCombo;
+    private JTextField roomNameField;
+    private JComboBox<String> roomSizeCombo;
+    private JCheckBox lockstepCheck;
+    private JButton refreshRoomsButton;
+    private JButton createRoomButton;
+    private JButton joinRoomButton;
+    private JButton leaveRoomButton;
     private GamePanel gamePanel;
     private JLabel statusLabel;
     private JLabel scoreLabel;
     
     // Conexión con sockets
     private Socket socket;
-    private ObjectInputStream input;
-    private ObjectOutputStream output;
+    private DataInputStream input;
+    private DataOutputStream output;
     private boolean connected = false;
-    private int playerId = -1;
+    private volatile int playerId = -1;
+    private int roomId = -1;
+    private volatile int capabilities;
+    // Estados por UDP (null si no se pudo abrir el socket); el control sigue por TCP
+    private volatile StateChannel stateChannel;
+    private volatile int stateRoomId = -1; // sala actual según el hilo de red: los datagramas de otra se descartan
+    // Los estados llegan por TCP y por UDP: se arman y se confirman de a uno
+    private final Object stateLock = new Object();
+    // Confirmaciones y hashes que se arman con stateLock tomado; se mandan al soltarlo, para que una escritura
+    // lenta no frene al otro hilo de red
+    private final Queue<Message> replies = new ConcurrentLinkedQueue<>();
     
-    // Estado del juego
+    // Estado del juego (el último recibido; lo usa el hilo de Swing)
     private GameState gameState;
+    // Último estado que todavía no vio el hilo de Swing: si llega otro antes, se reemplaza
+    private final AtomicReference<GameState> latestFrame = new AtomicReference<>();
+    // Mensajes de control en orden de llegada; el hilo de Swing los procesa en una sola tarea
+    private final Queue<Message> controlMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean controlScheduled = new AtomicBoolean();
+    // Estados con su hora de llegada para el hilo de dibujo
+    private final SnapshotBuffer snapshots = new SnapshotBuffer();
+    // Serpiente propia simulada localmente con las teclas que el servidor todavía no confirmó
+    private final SnakePredictor predictor = new SnakePredictor();
+    // Simulación propia en las salas lockstep (solo la usa el hilo de red)
+    private final LockstepRunner lockstep = new LockstepRunner(replies::add);
+    // Resumen del tablero entero (solo en salas más grandes que la vista)
+    private volatile Minimap minimap;
+    // Estados recientes por tick (solo los usa el hilo de red)
+    private GameState[] stateHistory = new GameState[STATE_HISTORY];
     
     public SnakeClient() {
         initializeGUI();
@@ -45,9 +95,11 @@ public class SnakeClient extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout());
         
-        // Panel de conexión
-        JPanel connectionPanel = createConnectionPanel();
-        add(connectionPanel, BorderLayout.NORTH);
+        // Panel de conexión y de salas
+        JPanel topPanel = new JPanel(new GridLayout(2, 1));
+        topPanel.add(createConnectionPanel());
+        topPanel.add(createRoomPanel());
+        add(topPanel, BorderLayout.NORTH);
         
         // Panel del juego
         gamePanel = new GamePanel();
@@ -95,6 +147,43 @@ public class SnakeClient extends JFrame {
         return panel;
     }
     
+    private JPanel createRoomPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panel.setBorder(BorderFactory.createTitledBorder("Salas"));
+        roomCombo = new JComboBox<>();
+        roomCombo.setPrototypeDisplayValue(new RoomInfo(999, "Nombre de sala", 256, 256, 2000, 2000, true, true));
+        roomCombo.setEnabled(false);
+        panel.add(roomCombo);
+        refreshRoomsButton = new JButton("Actualizar");
+        refreshRoomsButton.addActionListener(e -> sendMessage(new Message(Message.Type.LIST_ROOMS)));
+        refreshRoomsButton.setEnabled(false);
+        panel.add(refreshRoomsButton);
+        joinRoomButton = new JButton("Unirse");
+        joinRoomButton.addActionListener(this::joinRoom);
+        joinRoomButton.setEnabled(false);
+        panel.add(joinRoomButton);
+        panel.add(new JLabel("Nombre:"));
+        roomNameField = new JTextField(10);
+        roomNameField.setEnabled(false);
+        panel.add(roomNameField);
+        roomSizeCombo = new JComboBox<>(ROOM_SIZES);
+        roomSizeCombo.setEnabled(false);
+        panel.add(roomSizeCombo);
+        // El servidor solo reenvía las entradas y el cliente simula la partida (salas de tamaño normal)
+        lockstepCheck = new JCheckBox("Lockstep");
+        lockstepCheck.setEnabled(false);
+        panel.add(lockstepCheck);
+        createRoomButton = new JButton("Crear sala");
+        createRoomButton.addActionListener(this::createRoom);
+        createRoomButton.setEnabled(false);
+        panel.add(createRoomButton);
+        leaveRoomButton = new JButton("Salir de la sala");
+        leaveRoomButton.addActionListener(this::leaveRoom);
+        leaveRoomButton.setEnabled(false);
+        panel.add(leaveRoomButton);
+        return panel;
+    }
+    
     private JPanel createStatusPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));        
         statusLabel = new JLabel("Desconectado");
@@ -113,23 +202,30 @@ public class SnakeClient extends JFrame {
                 if (!connected) {
                     return;
                 }                
-                Message message = null;
+                Message.Type type = null;
+                Snake.Direction direction = null;
                 switch (e.getKeyCode()) {
                     case KeyEvent.VK_UP:
-                        message = new Message(Message.Type.MOVE_UP);
+                        type = Message.Type.MOVE_UP;
+                        direction = Snake.Direction.UP;
                         break;
                     case KeyEvent.VK_DOWN:
-                        message = new Message(Message.Type.MOVE_DOWN);
+                        type = Message.Type.MOVE_DOWN;
+                        direction = Snake.Direction.DOWN;
                         break;
                     case KeyEvent.VK_LEFT:
-                        message = new Message(Message.Type.MOVE_LEFT);
+                        type = Message.Type.MOVE_LEFT;
+                        direction = Snake.Direction.LEFT;
                         break;
                     case KeyEvent.VK_RIGHT:
-                        message = new Message(Message.Type.MOVE_RIGHT);
+                        type = Message.Type.MOVE_RIGHT;
+                        direction = Snake.Direction.RIGHT;
                         break;
                 }                
-                if (message != null) {
-                    sendMessage(message);
+                if (type != null) {
+                    // La serpiente propia gira ya en pantalla; el servidor confirma la entrada por su número
+                    int seq = predictor.input(direction, System.currentTimeMillis());
+                    sendMessage(new Message(type, seq));
                 }
             }
         };
@@ -154,12 +250,21 @@ public class SnakeClient extends JFrame {
         try {
             int port = Integer.parseInt(portText);
             socket = new Socket(ip, port);            
-            output = new ObjectOutputStream(socket.getOutputStream());
-            input = new ObjectInputStream(socket.getInputStream());            
+            stateHistory = new GameState[STATE_HISTORY];
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));            
+            // Sin socket UDP los estados llegan por TCP
+            int clientCapabilities = MessageCodec.CAPABILITIES;
+            try {
+                stateChannel = new StateChannel(socket.getInetAddress(), port, "cliente");
+            } catch (SocketException ex) {
+                System.err.println("Sin UDP, los estados llegarán por TCP: " + ex.getMessage());
+                clientCapabilities &= ~MessageCodec.CAP_UDP;
+            }
             // Iniciar hilo para recibir mensajes
             new Thread(this::receiveMessages).start();            
-            // Enviar mensaje de conexión
-            sendMessage(new Message(Message.Type.CONNECT));            
+            // Enviar mensaje de conexión con las capacidades del cliente
+            sendMessage(new Message(Message.Type.CONNECT, clientCapabilities));            
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Puerto inválido", "Error", JOptionPane.ERROR_MESSAGE);
         } catch (IOException ex) {
@@ -174,38 +279,85 @@ public class SnakeClient extends JFrame {
         closeConnection();
     }
     
-    private void changeDifficulty(ActionEvent e) {
+    private void joinRoom(ActionEvent e) {
+        if (connected) {
+            // Sin sala elegida el servidor busca una con lugar
+            RoomInfo room = (RoomInfo) roomCombo.getSelectedItem();
+            sendMessage(new Message(Message.Type.JOIN_ROOM, room != null ? room.getId() : -1));
+        }
+    }
+    
+    private void createRoom(ActionEvent e) {
         if (connected) {
+            int[] size = ROOM_DIMENSIONS[roomSizeCombo.getSelectedIndex()];
+            // El servidor corta el nombre igual; más largo, la trama no entraría en su límite de entrada
+            String name = roomNameField.getText().trim();
+            if (name.length() > RoomSettings.MAX_NAME_LENGTH) {
+                name = name.substring(0, RoomSettings.MAX_NAME_LENGTH);
+            }
+            RoomSettings settings = new RoomSettings(name, size[0], size[1], size[2], lockstepCheck.isSelected());
+            sendMessage(new Message(Message.Type.CREATE_ROOM, settings));
+        }
+    }
+    
+    private void leaveRoom(ActionEvent e) {
+        if (connected && roomId > 0) {
+            sendMessage(new Message(Message.Type.LEAVE_ROOM));
+            roomId = -1;
+            playerId = -1;
+            stateRoomId = -1;
+            gameState = null;
+            snapshots.clear();
+            predictor.reset();
+            statusLabel.setText("Conectado");
+            updateButtonStates();
+            sendMessage(new Message(Message.Type.LIST_ROOMS));
+        }
+    }
+    
+    private void changeDifficulty(ActionEvent e) {
+        if (connected && roomId > 0) {
             GameState.Difficulty difficulty = (GameState.Difficulty) difficultyCombo.getSelectedItem();
             sendMessage(new Message(Message.Type.SET_DIFFICULTY, difficulty));
         }
     }
     
     private void startGame(ActionEvent e) {
-        if (connected) {
+        if (connected && roomId > 0) {
             sendMessage(new Message(Message.Type.START_GAME));
         }
     }
     
-    private void sendMessage(Message message) {
+    private synchronized void sendMessage(Message message) {
         if (output != null) {
             try {
-                output.writeObject(message);
+                MessageCodec.writeFrame(output, message);
                 output.flush();
             } catch (IOException e) {
                 System.err.println("Error enviando mensaje: " + e.getMessage());
-                closeConnection();
+                if (SwingUtilities.isEventDispatchThread()) {
+                    closeConnection();
+                } else {
+                    SwingUtilities.invokeLater(this::closeConnection);
+                }
             }
         }
     }
     
     private void receiveMessages() {
         try {
-            Message message;
-            while ((message = (Message) input.readObject()) != null) {
-                handleMessage(message);
+            DataInputStream in = input;
+            while (true) {
+                Message message = MessageCodec.readFrame(in);
+                synchronized (stateLock) {
+                    message = resolveState(message);
+                    if (message != null) {
+                        dispatchMessage(message);
+                    }
+                }
+                sendReplies();
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             if (connected) {
                 SwingUtilities.invokeLater(() -> {
                     JOptionPane.showMessageDialog(this, "Conexión perdida con el servidor","Error", JOptionPane.ERROR_MESSAGE);
@@ -215,49 +367,196 @@ public class SnakeClient extends JFrame {
         }
     }
     
+    // Hilo del canal UDP: solo estados, y solo de la sala actual (los de la anterior pueden llegar tarde)
+    private void receiveDatagramState(int fromRoom, Message message) {
+        if (message.getType() != Message.Type.GAME_STATE && message.getType() != Message.Type.GAME_STATE_DELTA) {
+            return;
+        }
+        synchronized (stateLock) {
+            if (fromRoom != stateRoomId) {
+                return;
+            }
+            message = resolveState(message);
+            if (message != null) {
+                dispatchMessage(message);
+            }
+        }
+        sendReplies();
+    }
+    
+    private void sendReplies() {
+        Message reply;
+        while ((reply = replies.poll()) != null) {
+            sendMessage(reply);
+        }
+    }
+    
+    // Reconstruye el estado completo de los deltas (o de las entradas en lockstep) y confirma cada estado recibido
+    // Devuelve null si el delta no se puede aplicar (se espera el siguiente estado completo)
+    private Message resolveState(Message message) {
+        GameState state;
+        if (message.getType() == Message.Type.CONNECTION_ACCEPTED) {
+            capabilities = (Integer) message.getData();
+            return message;
+        } else if (message.getType() == Message.Type.UDP_TOKEN) {
+            StateChannel channel = stateChannel;
+            if (channel != null && (capabilities & MessageCodec.CAP_UDP) != 0) {
+                channel.start((Integer) message.getData(), this::receiveDatagramState);
+            }
+            return null;
+        } else if (message.getType() == Message.Type.ROOM_JOINED) {
+            stateRoomId = (Integer) message.getData();
+            // Los estados de la sala anterior ya no sirven como base ni para dibujar
+            stateHistory = new GameState[STATE_HISTORY];
+            playerId = message.getPlayerId();
+            snapshots.clear();
+            predictor.reset();
+            lockstep.reset();
+            minimap = null;
+            if ((capabilities & MessageCodec.CAP_DELTA) != 0) {
+                replies.add(new Message(Message.Type.STATE_ACK, -1));
+            }
+            return message;
+        } else if (message.getType() == Message.Type.LOCKSTEP_SYNC) {
+            // Salas lockstep: los estados salen de la simulación local y no se confirman
+            return new Message(Message.Type.GAME_STATE, lockstep.sync((Simulation) message.getData()));
+        } else if (message.getType() == Message.Type.LOCKSTEP_TICK) {
+            state = lockstep.step((TickInputs) message.getData());
+            return state == null ? null : new Message(Message.Type.GAME_STATE, state);
+        } else if (message.getType() == Message.Type.GAME_STATE) {
+            state = (GameState) message.getData();
+        } else if (message.getType() == Message.Type.GAME_STATE_DELTA) {
+            StateDelta delta = (StateDelta) message.getData();
+            state = delta.applyTo(stateHistory[Math.floorMod(delta.getBaseTick(), STATE_HISTORY)]);
+            if (state == null) {
+                return null;
+            }
+            message = new Message(Message.Type.GAME_STATE, state);
+        } else {
+            return message;
+        }
+        stateHistory[Math.floorMod(state.getTick(), STATE_HISTORY)] = state;
+        if ((capabilities & MessageCodec.CAP_DELTA) != 0) {
+            replies.add(new Message(Message.Type.STATE_ACK, state.getTick()));
+        }
+        return message;
+    }
+    
+    // Hilo de red: los estados ya decodificados van directo al dibujo y a la predicción; el hilo de Swing
+    // solo ve el más nuevo. El resto de los mensajes se procesa en orden en el hilo de Swing
+    private void dispatchMessage(Message message) {
+        switch (message.getType()) {
+            case GAME_STATE:
+                publishFrame((GameState) message.getData());
+                break;
+            case GAME_OVER:
+                publishFrame((GameState) message.getData());
+                enqueueControl(message);
+                break;
+            case MINIMAP:
+                minimap = (Minimap) message.getData();
+                break;
+            default:
+                enqueueControl(message);
+                break;
+        }
+    }
+    
+    private void publishFrame(GameState state) {
+        if (playerId <= 0) {
+            return; // estado de una sala que ya se dejó
+        }
+        long received = System.currentTimeMillis();
+        snapshots.add(state, received);
+        predictor.reconcile(state, playerId, received);
+        if (latestFrame.getAndSet(state) == null) {
+            SwingUtilities.invokeLater(this::showLatestFrame);
+        }
+    }
+    
+    private void showLatestFrame() {
+        GameState state = latestFrame.getAndSet(null);
+        if (state != null && roomId > 0) {
+            gameState = state;
+            updateScore();
+        }
+    }
+    
+    private void enqueueControl(Message message) {
+        controlMessages.add(message);
+        if (controlScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drainControl);
+        }
+    }
+    
+    private void drainControl() {
+        controlScheduled.set(false);
+        Message message;
+        while ((message = controlMessages.poll()) != null) {
+            handleMessage(message);
+        }
+    }
+    
+    // Hilo de Swing
+    @SuppressWarnings("unchecked")
     private void handleMessage(Message message) {
-        SwingUtilities.invokeLater(() -> {
-            switch (message.getType()) {
-                case CONNECTION_ACCEPTED:
-                    connected = true;
-                    playerId = (Integer) message.getData();
-                    statusLabel.setText("Conectado - Jugador " + playerId);
-                    updateButtonStates();
-                    // Asegurar el foco para los controles
-                    requestFocusInWindow();
-                    gamePanel.requestFocusInWindow();
-                    break;
-                    
-                case CONNECTION_REJECTED:
-                    JOptionPane.showMessageDialog(this, "Conexión rechazada: " + message.getData(), "Conexión Rechazada", JOptionPane.WARNING_MESSAGE);
-                    closeConnection();
-                    break;
-                    
-                case GAME_STATE:
-                    gameState = (GameState) message.getData();
-                    updateScore();
-                    gamePanel.repaint();
-                    break;
-                    
-                case GAME_OVER:
-                    gameState = (GameState) message.getData();
-                    gamePanel.repaint();
-                    JOptionPane.showMessageDialog(this, "Juego Terminado", "Fin del Juego", JOptionPane.INFORMATION_MESSAGE);
-                    break;
-                    
-                case PLAYER_JOINED:
-                    statusLabel.setText(statusLabel.getText() + " | Jugador " + message.getData() + " se unió");
-                    break;
-                    
-                case PLAYER_LEFT:
-                    statusLabel.setText(statusLabel.getText() + " | Jugador " + message.getData() + " salió");
-                    break;
-                    
-                case ERROR:
-                    JOptionPane.showMessageDialog(this, "Error del servidor: " + message.getData(), "Error", JOptionPane.ERROR_MESSAGE);
-                    break;
+        switch (message.getType()) {
+            case CONNECTION_ACCEPTED:
+                connected = true;
+                statusLabel.setText("Conectado");
+                updateButtonStates();
+                sendMessage(new Message(Message.Type.LIST_ROOMS));
+                // Asegurar el foco para los controles
+                requestFocusInWindow();
+                gamePanel.requestFocusInWindow();
+                break;
+                
+            case ROOM_JOINED:
+                roomId = (Integer) message.getData();
+                gameState = null;
+                statusLabel.setText("Sala " + roomId + " - Jugador " + playerId);
+                updateButtonStates();
+                sendMessage(new Message(Message.Type.LIST_ROOMS));
+                gamePanel.requestFocusInWindow();
+                break;
+                
+            case ROOM_LIST:
+                updateRoomList((List<RoomInfo>) message.getData());
+                break;
+                
+            case CONNECTION_REJECTED:
+                JOptionPane.showMessageDialog(this, "Conexión rechazada: " + message.getData(), "Conexión Rechazada", JOptionPane.WARNING_MESSAGE);
+                closeConnection();
+                break;
+                
+            case GAME_OVER:
+                gameState = (GameState) message.getData();
+                updateScore();
+                JOptionPane.showMessageDialog(this, "Juego Terminado", "Fin del Juego", JOptionPane.INFORMATION_MESSAGE);
+                break;
+                
+            case PLAYER_JOINED:
+                statusLabel.setText(statusLabel.getText() + " | Jugador " + message.getData() + " se unió");
+                break;
+                
+            case PLAYER_LEFT:
+                statusLabel.setText(statusLabel.getText() + " | Jugador " + message.getData() + " salió");
+                break;
+                
+            case ERROR:
+                JOptionPane.showMessageDialog(this, "Error del servidor: " + message.getData(), "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+        }
+    }
+    
+    private void updateRoomList(List<RoomInfo> rooms) {
+        roomCombo.removeAllItems();
+        for (RoomInfo room : rooms) {
+            roomCombo.addItem(room);
+            if (room.getId() == roomId) {
+                roomCombo.setSelectedItem(room);
             }
-        });
+        }
     }
     
     private void updateScore() {
@@ -273,15 +572,29 @@ public class SnakeClient extends JFrame {
     private void updateButtonStates() {
         connectButton.setEnabled(!connected);
         disconnectButton.setEnabled(connected);
-        difficultyCombo.setEnabled(connected);
-        startGameButton.setEnabled(connected);
+        difficultyCombo.setEnabled(connected && roomId > 0);
+        startGameButton.setEnabled(connected && roomId > 0);
+        roomCombo.setEnabled(connected);
+        refreshRoomsButton.setEnabled(connected);
+        joinRoomButton.setEnabled(connected);
+        roomNameField.setEnabled(connected);
+        roomSizeCombo.setEnabled(connected);
+        lockstepCheck.setEnabled(connected);
+        createRoomButton.setEnabled(connected);
+        leaveRoomButton.setEnabled(connected && roomId > 0);
         ipField.setEnabled(!connected);
         portField.setEnabled(!connected);
     }
     
     private void closeConnection() {
         connected = false;
-        playerId = -1;        
+        playerId = -1;
+        roomId = -1;        
+        stateRoomId = -1;
+        if (stateChannel != null) {
+            stateChannel.close();
+            stateChannel = null;
+        }
         try {
             if (socket != null && !socket.isClosed()) {
                 socket.close();
@@ -293,171 +606,387 @@ public class SnakeClient extends JFrame {
         input = null;
         output = null;
         gameState = null;
+        snapshots.clear();
+        predictor.reset();
+        // Lo que quedó sin procesar era de la conexión cerrada
+        latestFrame.set(null);
+        controlMessages.clear();
+        replies.clear();
+        roomCombo.removeAllItems();
         
         statusLabel.setText("Desconectado");
         updateButtonStates();
-        gamePanel.repaint();
     }
     
-    // Panel que muestra el juego
-    private class GamePanel extends JPanel {
+    // Panel que muestra el juego: un hilo propio lo dibuja al ritmo de la pantalla sobre un BufferStrategy,
+    // con las posiciones interpoladas entre los dos estados recibidos que rodean la hora de dibujo
+    private class GamePanel extends Canvas {
+        // Vista en píxeles del tablero (sigue a la cabeza interpolada) y su tamaño en celdas
+        private int cameraX;
+        private int cameraY;
+        private int viewCols;
+        private int viewRows;
+        // Capa estática (fondo, paredes y grilla) de una zona del tablero, en celdas
+        private BufferedImage layer;
+        private GraphicsConfiguration layerConfig;
+        private GameState.Difficulty layerDifficulty;
+        private int layerBoardWidth;
+        private int layerBoardHeight;
+        private int layerX;
+        private int layerY;
+        private int layerCols;
+        private int layerRows;
+        private final SpriteCache sprites = new SpriteCache(CELL_SIZE);
+        // Hilo de dibujo (solo él toca la capa, los sprites y la cámara)
+        private Thread renderThread;
+        private volatile boolean rendering;
+
         public GamePanel() {
             setPreferredSize(new Dimension(
-                DEFAULT_BOARD_WIDTH * CELL_SIZE + 1, 
-                DEFAULT_BOARD_HEIGHT * CELL_SIZE + 1
+                VIEW_WIDTH * CELL_SIZE + 1,
+                VIEW_HEIGHT * CELL_SIZE + 1
             ));
             setBackground(Color.BLACK);
-            setBorder(BorderFactory.createLineBorder(Color.WHITE));
+            // Los cuadros los dibuja el hilo propio, no los avisos de repintado
+            setIgnoreRepaint(true);
         }
-        
+
         @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);            
-            if (gameState == null) {
+        public void addNotify() {
+            super.addNotify();
+            rendering = true;
+            renderThread = new Thread(this::renderLoop, "render");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        }
+
+        @Override
+        public void removeNotify() {
+            rendering = false;
+            if (renderThread != null) {
+                renderThread.interrupt();
+                try {
+                    renderThread.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                renderThread = null;
+            }
+            super.removeNotify();
+        }
+
+        // Un cuadro por refresco de pantalla; sin partida alcanza con pocos cuadros por segundo
+        private void renderLoop() {
+            BufferStrategy strategy = null;
+            long next = System.nanoTime();
+            while (rendering) {
+                boolean idle = true;
+                if (isDisplayable() && getWidth() > 0 && getHeight() > 0) {
+                    if (strategy == null) {
+                        createBufferStrategy(2);
+                        strategy = getBufferStrategy();
+                    }
+                    try {
+                        do {
+                            do {
+                                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                                try {
+                                    idle = !render(g);
+                                } finally {
+                                    g.dispose();
+                                }
+                            } while (strategy.contentsRestored());
+                            strategy.show();
+                        } while (strategy.contentsLost());
+                        Toolkit.getDefaultToolkit().sync();
+                    } catch (IllegalStateException e) {
+                        // El componente dejó de mostrarse mientras se dibujaba
+                        strategy = null;
+                    }
+                }
+                next += idle ? IDLE_FRAME_NANOS : frameNanos();
+                long wait = next - System.nanoTime();
+                if (wait <= 0) {
+                    // Atrasado: no se intenta recuperar los cuadros perdidos
+                    next = System.nanoTime();
+                    Thread.yield();
+                    continue;
+                }
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private long frameNanos() {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            int rate = config == null ? DisplayMode.REFRESH_RATE_UNKNOWN : config.getDevice().getDisplayMode().getRefreshRate();
+            return 1_000_000_000L / (rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate);
+        }
+
+        // Dibuja un cuadro; devuelve false si no hay partida que mostrar
+        private boolean render(Graphics2D g) {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            long now = System.currentTimeMillis();
+            SnapshotBuffer.Sample sample = snapshots.sample(now);
+            if (sample == null) {
                 g.setColor(Color.WHITE);
-                g.setFont(new Font("Segoe UI", Font.BOLD, 16));
+                g.setFont(MESSAGE_FONT);
                 FontMetrics fm = g.getFontMetrics();
                 String text = "Conectate al servidor para jugar";
                 int x = (getWidth() - fm.stringWidth(text)) / 2;
                 int y = getHeight() / 2;
                 g.drawString(text, x, y);
-                return;
+                drawBorder(g);
+                return false;
             }
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);            
-            // Dibujar paredes si la dificultad no es "facil"
-            if (gameState.getDifficulty() != GameState.Difficulty.EASY) {
-                drawWalls(g2d);
-            }            
+            GameState state = sample.to;
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            // La serpiente propia va adelantada (predicha); las demás, interpoladas en el pasado
+            SnakePredictor.Prediction prediction = predictor.predict(now);
+            updateView(sample, prediction);
+            // Fondo, paredes y grilla: una sola copia de la capa ya dibujada
+            drawStaticLayer(g, state);
+            g.translate(-cameraX, -cameraY);
             // Dibujar serpientes
-            Snake[] snakes = gameState.getSnakes();
+            Snake[] snakes = state.getSnakes();
+            Snake[] previous = sample.from.getSnakes();
             if (snakes != null) {
                 for (int i = 0; i < snakes.length; i++) {
                     Snake snake = snakes[i];
-                    if (snake != null) {
-                        drawSnake(g2d, snake);
+                    if (prediction != null && i == playerId - 1) {
+                        drawSnake(g, prediction.to, prediction.from, 1, prediction.alpha);
+                    } else if (snake != null) {
+                        drawSnake(g, snake, previous != null && i < previous.length ? previous[i] : null,
+                                ticksBetween(sample), sample.alpha);
                     }
                 }
-            }            
-            // Dibujar todas las frutas
-            java.util.List<Food> foods = gameState.getFoods();
+            }
+            // Dibujar todas las frutas (no se mueven: las del estado más nuevo)
+            java.util.List<Food> foods = state.getFoods();
             if (foods != null) {
                 for (Food food : foods) {
                     if (food != null) {
-                        drawFood(g2d, food);
+                        drawFood(g, food);
                     }
                 }
-            }            
-            // Dibujar grid
-            drawGrid(g2d);
+            }
+            g.translate(cameraX, cameraY);
+            if (viewCols < state.getBoardWidth() || viewRows < state.getBoardHeight()) {
+                drawMinimap(g, state);
+            }
+            drawBorder(g);
+            return true;
         }
-        
-        private void drawWalls(Graphics2D g) {
-            g.setColor(Color.GRAY);
-            int boardWidth = DEFAULT_BOARD_WIDTH;
-            int boardHeight = DEFAULT_BOARD_HEIGHT;
-            // Dibujar cada celda verificando si es una pared
-            for (int x = 0; x < boardWidth; x++) {
-                for (int y = 0; y < boardHeight; y++) {
-                    if (isWallAtPosition(x, y, boardWidth, boardHeight)) {
-                        g.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+
+        private void drawBorder(Graphics2D g) {
+            g.setColor(Color.WHITE);
+            g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
+        }
+
+        // Minimapa en la esquina: regiones con jugadores y el rectángulo de la vista propia
+        private void drawMinimap(Graphics2D g, GameState state) {
+            Minimap map = minimap;
+            if (map == null || map.getBoardWidth() != state.getBoardWidth()
+                    || map.getBoardHeight() != state.getBoardHeight()) {
+                return;
+            }
+            int cell = Math.max(1, MINIMAP_SIZE / Math.max(map.getCols(), map.getRows()));
+            int mapWidth = map.getCols() * cell;
+            int mapHeight = map.getRows() * cell;
+            int left = getWidth() - mapWidth - 6;
+            int top = 6;
+            g.setColor(new Color(0, 0, 0, 180));
+            g.fillRect(left, top, mapWidth, mapHeight);
+            for (int row = 0; row < map.getRows(); row++) {
+                for (int col = 0; col < map.getCols(); col++) {
+                    int heads = map.getHeads(col, row);
+                    if (heads > 0) {
+                        // Más cabezas, más claro
+                        int shade = Math.min(255, 96 + heads * 32);
+                        g.setColor(new Color(shade, shade, 0));
+                        g.fillRect(left + col * cell, top + row * cell, cell, cell);
                     }
                 }
             }
+            g.setColor(Color.WHITE);
+            g.drawRect(left, top, mapWidth, mapHeight);
+            g.setColor(Color.CYAN);
+            int boardPixelsX = map.getBoardWidth() * CELL_SIZE;
+            int boardPixelsY = map.getBoardHeight() * CELL_SIZE;
+            g.drawRect(left + (int) ((long) cameraX * mapWidth / boardPixelsX), top + (int) ((long) cameraY * mapHeight / boardPixelsY),
+                    Math.max(1, viewCols * mapWidth / map.getBoardWidth()), Math.max(1, viewRows * mapHeight / map.getBoardHeight()));
         }
-        
-        private boolean isWallAtPosition(int x, int y, int boardWidth, int boardHeight) {            
+
+        // Centra la vista en la cabeza propia interpolada sin salirse del tablero
+        private void updateView(SnapshotBuffer.Sample sample, SnakePredictor.Prediction prediction) {
+            int boardWidth = sample.to.getBoardWidth();
+            int boardHeight = sample.to.getBoardHeight();
+            viewCols = Math.min(VIEW_WIDTH, boardWidth);
+            viewRows = Math.min(VIEW_HEIGHT, boardHeight);
+            int maxX = (boardWidth - viewCols) * CELL_SIZE;
+            int maxY = (boardHeight - viewRows) * CELL_SIZE;
+            int id = playerId;
+            Snake[] snakes = sample.to.getSnakes();
+            Snake own = snakes != null && id > 0 && id <= snakes.length ? snakes[id - 1] : null;
+            if (prediction != null) {
+                int headX = interpolate(prediction.from, prediction.to, 0, true, 1, prediction.alpha);
+                int headY = interpolate(prediction.from, prediction.to, 0, false, 1, prediction.alpha);
+                cameraX = Math.max(0, Math.min(maxX, headX - viewCols / 2 * CELL_SIZE));
+                cameraY = Math.max(0, Math.min(maxY, headY - viewRows / 2 * CELL_SIZE));
+            } else if (own != null && !own.getSegments().isEmpty()) {
+                Snake[] previous = sample.from.getSnakes();
+                Snake before = previous != null && id <= previous.length ? previous[id - 1] : null;
+                int headX = interpolate(before, own, 0, true, ticksBetween(sample), sample.alpha);
+                int headY = interpolate(before, own, 0, false, ticksBetween(sample), sample.alpha);
+                cameraX = Math.max(0, Math.min(maxX, headX - viewCols / 2 * CELL_SIZE));
+                cameraY = Math.max(0, Math.min(maxY, headY - viewRows / 2 * CELL_SIZE));
+            } else {
+                cameraX = Math.max(0, Math.min(cameraX, maxX));
+                cameraY = Math.max(0, Math.min(cameraY, maxY));
+            }
+        }
+
+        // Ticks entre los dos estados (0 si es uno solo)
+        private int ticksBetween(SnapshotBuffer.Sample sample) {
+            return sample.from == sample.to ? 0 : Math.max(1, sample.to.getTick() - sample.from.getTick());
+        }
+
+        // Posición en píxeles (x o y) del segmento entre dos estados separados por esos ticks; si el segmento
+        // saltó más de lo que se puede mover (nació, atravesó un borde o se reinició la partida) va directo al nuevo
+        private int interpolate(Snake before, Snake after, int index, boolean horizontal, int ticks, double alpha) {
+            SnakeBody to = after.getSegments();
+            int target = horizontal ? to.getX(index) : to.getY(index);
+            if (before == null || ticks == 0 || index >= before.getSegments().size()) {
+                return target * CELL_SIZE;
+            }
+            SnakeBody from = before.getSegments();
+            int distance = Math.abs(to.getX(index) - from.getX(index)) + Math.abs(to.getY(index) - from.getY(index));
+            if (distance > ticks) {
+                return target * CELL_SIZE;
+            }
+            int origin = horizontal ? from.getX(index) : from.getY(index);
+            return (int) Math.round((origin + (target - origin) * alpha) * CELL_SIZE);
+        }
+
+        // Celdas visibles: la vista más una columna y una fila por el desplazamiento en píxeles
+        private boolean isVisible(int pixelX, int pixelY) {
+            return pixelX > cameraX - CELL_SIZE && pixelX < cameraX + (viewCols + 1) * CELL_SIZE
+                    && pixelY > cameraY - CELL_SIZE && pixelY < cameraY + (viewRows + 1) * CELL_SIZE;
+        }
+
+        // Copia la parte visible de la capa estática; la capa se rehace si cambió el tablero, la dificultad
+        // o la pantalla, o si la vista salió de la zona dibujada
+        private void drawStaticLayer(Graphics2D g, GameState state) {
+            int boardWidth = state.getBoardWidth();
+            int boardHeight = state.getBoardHeight();
+            GameState.Difficulty difficulty = state.getDifficulty();
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            int width = viewCols * CELL_SIZE + 1;
+            int height = viewRows * CELL_SIZE + 1;
+            if (layer == null || config != layerConfig || difficulty != layerDifficulty
+                    || boardWidth != layerBoardWidth || boardHeight != layerBoardHeight
+                    || cameraX < layerX * CELL_SIZE || cameraY < layerY * CELL_SIZE
+                    || cameraX + width > (layerX + layerCols) * CELL_SIZE + 1
+                    || cameraY + height > (layerY + layerRows) * CELL_SIZE + 1) {
+                renderStaticLayer(config, boardWidth, boardHeight, difficulty);
+            }
+            int sourceX = cameraX - layerX * CELL_SIZE;
+            int sourceY = cameraY - layerY * CELL_SIZE;
+            g.drawImage(layer, 0, 0, width, height, sourceX, sourceY, sourceX + width, sourceY + height, null);
+        }
+
+        // Dibuja fondo, paredes (si la dificultad no es "facil") y grilla de la zona alrededor de la vista;
+        // en tableros chicos la zona es el tablero entero y se dibuja una vez por mapa y dificultad
+        private void renderStaticLayer(GraphicsConfiguration config, int boardWidth, int boardHeight,
+                                       GameState.Difficulty difficulty) {
+            layerCols = Math.min(boardWidth, viewCols + 2 * LAYER_MARGIN);
+            layerRows = Math.min(boardHeight, viewRows + 2 * LAYER_MARGIN);
+            layerX = Math.max(0, Math.min(boardWidth - layerCols, cameraX / CELL_SIZE - LAYER_MARGIN));
+            layerY = Math.max(0, Math.min(boardHeight - layerRows, cameraY / CELL_SIZE - LAYER_MARGIN));
+            int width = layerCols * CELL_SIZE + 1;
+            int height = layerRows * CELL_SIZE + 1;
+            if (layer == null || config != layerConfig || layer.getWidth() != width || layer.getHeight() != height) {
+                layer = config != null
+                        ? config.createCompatibleImage(width, height, Transparency.OPAQUE)
+                        : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            }
+            layerConfig = config;
+            layerDifficulty = difficulty;
+            layerBoardWidth = boardWidth;
+            layerBoardHeight = boardHeight;
+
+            Graphics2D g = layer.createGraphics();
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+            if (difficulty != GameState.Difficulty.EASY) {
+                g.setColor(Color.GRAY);
+                for (int x = 0; x < layerCols; x++) {
+                    for (int y = 0; y < layerRows; y++) {
+                        if (isWallAtPosition(layerX + x, layerY + y, boardWidth, boardHeight)) {
+                            g.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+                        }
+                    }
+                }
+            }
+            g.setColor(Color.DARK_GRAY);
+            // Líneas verticales y horizontales del mapa
+            for (int x = 0; x <= layerCols; x++) {
+                g.drawLine(x * CELL_SIZE, 0, x * CELL_SIZE, height - 1);
+            }
+            for (int y = 0; y <= layerRows; y++) {
+                g.drawLine(0, y * CELL_SIZE, width - 1, y * CELL_SIZE);
+            }
+            g.dispose();
+        }
+
+        private boolean isWallAtPosition(int x, int y, int boardWidth, int boardHeight) {
             // Pared que sale del borde arriba (hacia abajo)
-            boolean topWall = (x == boardWidth/2 && y >= 0 && y <= 8);            
-            // Pared que sale del borde abajo (hacia arriba)  
-            boolean bottomWall = (x == boardWidth/2 && y >= boardHeight-9 && y < boardHeight);            
+            boolean topWall = (x == boardWidth/2 && y >= 0 && y <= 8);
+            // Pared que sale del borde abajo (hacia arriba)
+            boolean bottomWall = (x == boardWidth/2 && y >= boardHeight-9 && y < boardHeight);
             // Pared que sale del borde izquierda (hacia la derecha)
-            boolean leftWall = (y == boardHeight/2 && x >= 0 && x <= 10);            
+            boolean leftWall = (y == boardHeight/2 && x >= 0 && x <= 10);
             // Pared que sale del borde derecha (hacia la izquierda)
-            boolean rightWall = (y == boardHeight/2 && x >= boardWidth-11 && x < boardWidth);            
+            boolean rightWall = (y == boardHeight/2 && x >= boardWidth-11 && x < boardWidth);
             // Bloque central
-            boolean centerBlock = (x >= boardWidth/2-1 && x <= boardWidth/2+1 && 
-                                  y >= boardHeight/2-1 && y <= boardHeight/2+1);            
+            boolean centerBlock = (x >= boardWidth/2-1 && x <= boardWidth/2+1 &&
+                                  y >= boardHeight/2-1 && y <= boardHeight/2+1);
             return topWall || bottomWall || leftWall || rightWall || centerBlock;
         }
-        
-        private void drawSnake(Graphics2D g, Snake snake) {
-            // Configurar color basado en el estado de la serpiente
-            if (!snake.isAlive()) {
-                g.setColor(Color.DARK_GRAY);
-            } else {
-                g.setColor(snake.getColor());
-            }            
-            // Configurar fuente para las letras
-            Font font = new Font("Segoe UI", Font.BOLD, CELL_SIZE - 2);
-            g.setFont(font);
-            FontMetrics fm = g.getFontMetrics();            
-            // Obtener la letra del cuerpo basada en el ID del jugador (A=1, B=2, C=3, D=4)
-            char bodyLetter = (char)('A' + snake.getPlayerId() - 1);            
-            java.util.List<Point> body = snake.getBody();
-            for (int i = 0; i < body.size(); i++) {
-                Point segment = body.get(i);                
-                // Poner fondo para la letra
-                g.fillRect(segment.x * CELL_SIZE + 1, segment.y * CELL_SIZE + 1, 
-                         CELL_SIZE - 2, CELL_SIZE - 2);                
-                // Elegir la letra
-                char letter = (i == 0) ? 'O' : bodyLetter; // Cabeza = "o" mayuscula, Cuerpo = letra del jugador                
-                // Configurar color del texto
-                g.setColor(Color.WHITE);                
-                // Calcular posición centrada para la letra
-                int textWidth = fm.stringWidth(String.valueOf(letter));
-                int textHeight = fm.getAscent();
-                int x = segment.x * CELL_SIZE + (CELL_SIZE-textWidth)/2;
-                int y = segment.y * CELL_SIZE + (CELL_SIZE+textHeight)/2 - fm.getDescent();                
-                // Mostrar letra
-                g.drawString(String.valueOf(letter), x, y);                
-                // Restaurar color
-                if (!snake.isAlive()) {
-                    g.setColor(Color.DARK_GRAY);
-                } else {
-                    g.setColor(snake.getColor());
+
+        private void drawSnake(Graphics2D g, Snake snake, Snake before, int ticks, double alpha) {
+            // Cabeza = "O", cuerpo = letra del jugador (A=1, B=2, C=3, D=4...); cada una es un sprite ya dibujado
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            char bodyLetter = (char)('A' + (snake.getPlayerId() - 1) % 26);
+            Image head = sprites.snake(config, snake.getColor(), 'O', snake.isAlive());
+            Image body = sprites.snake(config, snake.getColor(), bodyLetter, snake.isAlive());
+            // Una serpiente muerta queda quieta en el último estado
+            Snake from = snake.isAlive() ? before : null;
+            SnakeBody segments = snake.getSegments();
+            for (int i = 0; i < segments.size(); i++) {
+                int segmentX = interpolate(from, snake, i, true, ticks, alpha);
+                int segmentY = interpolate(from, snake, i, false, ticks, alpha);
+                if (isVisible(segmentX, segmentY)) {
+                    g.drawImage(i == 0 ? head : body, segmentX, segmentY, null);
                 }
             }
         }
-        
+
         // Mostrar comida con puntaje en el mapa
         private void drawFood(Graphics2D g, Food food) {
             Point position = food.getPosition();
-            // Dibujar fondo de la comida (rojo)
-            g.setColor(Color.RED);
-            g.fillOval(position.x * CELL_SIZE + 2, position.y * CELL_SIZE + 2, CELL_SIZE - 4, CELL_SIZE - 4);
-            // Dibujar borde
-            g.setColor(new Color(128, 0, 0));
-            g.drawOval(position.x * CELL_SIZE + 2, position.y * CELL_SIZE + 2, CELL_SIZE - 4, CELL_SIZE - 4);            
-            // fuente
-            Font font = new Font("Segoe UI", Font.BOLD, CELL_SIZE - 6);
-            g.setFont(font);
-            FontMetrics fm = g.getFontMetrics();
-            String text = "+" + food.getPoints();            
-            // Ccolor de texto
-            g.setColor(Color.WHITE);            
-            // Centrar texto
-            int textWidth = fm.stringWidth(text);
-            int textHeight = fm.getAscent();
-            int x = position.x * CELL_SIZE + (CELL_SIZE-textWidth)/2;
-            int y = position.y * CELL_SIZE + (CELL_SIZE+textHeight)/2 - fm.getDescent();
-            // Dibujar el texto
-            g.drawString(text, x, y);
-        }
-        
-        private void drawGrid(Graphics2D g) {
-            g.setColor(Color.DARK_GRAY);            
-            // Líneas verticales del mapa
-            for (int x = 0; x <= DEFAULT_BOARD_WIDTH; x++) {
-                g.drawLine(x * CELL_SIZE, 0, x * CELL_SIZE, DEFAULT_BOARD_HEIGHT * CELL_SIZE);
-            }            
-            // Líneas horizontales del mapa
-            for (int y = 0; y <= DEFAULT_BOARD_HEIGHT; y++) {
-                g.drawLine(0, y * CELL_SIZE, DEFAULT_BOARD_WIDTH * CELL_SIZE, y * CELL_SIZE);
+            int pixelX = position.x * CELL_SIZE;
+            int pixelY = position.y * CELL_SIZE;
+            if (isVisible(pixelX, pixelY)) {
+                g.drawImage(sprites.food(getGraphicsConfiguration(), food.getType()), pixelX, pixelY, null);
             }
         }
     }
-    
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             new SnakeClient().setVisible(true);
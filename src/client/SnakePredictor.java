@@ -0,0 +1,173 @@
+package client;
+
+import common.GameState;
+import common.Simulation;
+import common.Snake;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Predicción de la serpiente propia: cada tecla sale con un número de secuencia y se aplica enseguida
+// sobre una copia local de la serpiente. Cada estado del servidor trae la última entrada que ya tuvo en cuenta
+// (Snake.inputSeq): se parte de esa serpiente y se vuelven a simular las entradas que faltan confirmar
+class SnakePredictor {
+    private static final double DEFAULT_TICK_MILLIS = 100;
+    private static final int MAX_PREDICTED_TICKS = 20;   // con más atraso no se adivina: se dibuja lo del servidor
+    private static final long MIN_EXPIRY_MILLIS = 1000;  // entradas que el servidor nunca confirmó (perdidas o descartadas)
+    private static final double SMOOTHING = 0.2;
+
+    // Serpiente propia en dos ticks seguidos y cuánto se avanzó del primero al segundo (0..1)
+    static final class Prediction {
+        final Snake from;
+        final Snake to;
+        final double alpha;
+
+        Prediction(Snake from, Snake to, double alpha) {
+            this.from = from;
+            this.to = to;
+            this.alpha = alpha;
+        }
+    }
+
+    private static final class PendingInput {
+        final int seq;
+        final Snake.Direction direction;
+        final long sentMillis;
+        final double sentTick; // tick del servidor estimado al salir (NaN si todavía no había estado)
+
+        PendingInput(int seq, Snake.Direction direction, long sentMillis, double sentTick) {
+            this.seq = seq;
+            this.direction = direction;
+            this.sentMillis = sentMillis;
+            this.sentTick = sentTick;
+        }
+    }
+
+    private final ArrayDeque<PendingInput> pending = new ArrayDeque<>();
+    private int nextSeq;
+    private Snake confirmed;       // serpiente propia del último estado
+    private int confirmedTick;
+    private long confirmedLastUpdate;
+    private long confirmedArrival; // hora local de llegada de ese estado
+    private double tickMillis = DEFAULT_TICK_MILLIS;
+    private double lead = 1;       // ticks entre el último estado recibido al mandar una entrada y el tick que la aplica
+
+    // Registra una tecla y devuelve su número de secuencia para mandarlo en el MOVE_*
+    public synchronized int input(Snake.Direction direction, long localMillis) {
+        nextSeq++;
+        double sentTick = confirmed == null ? Double.NaN : tickAt(localMillis);
+        pending.add(new PendingInput(nextSeq, direction, localMillis, sentTick));
+        return nextSeq;
+    }
+
+    // Estado del servidor recibido: descarta las entradas confirmadas y se queda con la serpiente propia como base
+    public synchronized void reconcile(GameState state, int playerId, long arrivalMillis) {
+        Snake[] snakes = state.getSnakes();
+        Snake own = snakes != null && playerId > 0 && playerId <= snakes.length ? snakes[playerId - 1] : null;
+        if (confirmed != null && state.getTick() < confirmedTick) {
+            return; // llegó desordenado: la base ya es un estado más nuevo
+        }
+        if (confirmed != null && state.getTick() > confirmedTick) {
+            long elapsed = state.getLastUpdateTime() - confirmedLastUpdate;
+            double period = (double) elapsed / (state.getTick() - confirmedTick);
+            // Las pausas entre partidas no son el período de los ticks
+            if (period > 0 && elapsed < MIN_EXPIRY_MILLIS) {
+                tickMillis += SMOOTHING * (period - tickMillis);
+            }
+        }
+        if (own == null || !state.isGameRunning()) {
+            confirmed = null;
+            return;
+        }
+        PendingInput acknowledged = null;
+        while (!pending.isEmpty() && pending.peek().seq <= own.getInputSeq()) {
+            acknowledged = pending.poll();
+        }
+        if (acknowledged != null && !Double.isNaN(acknowledged.sentTick)) {
+            // El estado que la confirma es el del tick que la aplicó
+            double sample = state.getTick() - acknowledged.sentTick;
+            if (sample > 0) {
+                lead += SMOOTHING * (sample - lead);
+            }
+        }
+        long expiry = Math.max(MIN_EXPIRY_MILLIS, (long) (4 * lead * tickMillis));
+        for (Iterator<PendingInput> it = pending.iterator(); it.hasNext(); ) {
+            if (arrivalMillis - it.next().sentMillis > expiry) {
+                it.remove();
+            }
+        }
+        confirmed = own;
+        confirmedTick = state.getTick();
+        confirmedLastUpdate = state.getLastUpdateTime();
+        confirmedArrival = arrivalMillis;
+    }
+
+    public synchronized void reset() {
+        pending.clear();
+        confirmed = null;
+    }
+
+    // Tick del servidor (con fracción) que corresponde a esta hora local según el último estado
+    private double tickAt(long localMillis) {
+        return confirmedTick + (localMillis - confirmedArrival) / tickMillis;
+    }
+
+    // Serpiente propia ahora: se dibuja un tick antes del que aplicaría una tecla apretada en este momento,
+    // así el giro se ve en el paso siguiente; null si no hay nada que predecir (sin partida o serpiente muerta)
+    public synchronized Prediction predict(long localMillis) {
+        if (confirmed == null || !confirmed.isAlive() || confirmed.getSegments().isEmpty()) {
+            return null;
+        }
+        double ahead = tickAt(localMillis) + lead - 1 - confirmedTick;
+        if (ahead > MAX_PREDICTED_TICKS) {
+            return null;
+        }
+        int steps = Math.max(0, (int) ahead);
+        // Paso (contado desde el estado confirmado) en que el servidor aplicaría cada entrada pendiente
+        List<PendingInput> inputs = new ArrayList<>(pending);
+        int[] applyAt = new int[inputs.size()];
+        for (int i = 0; i < applyAt.length; i++) {
+            double sentTick = inputs.get(i).sentTick;
+            applyAt[i] = Double.isNaN(sentTick) ? 1 : Math.max(1, (int) Math.ceil(sentTick + lead - 1 - confirmedTick));
+        }
+        Snake snake = new Snake(confirmed);
+        Replay replay = new Replay(inputs, applyAt);
+        for (int step = 1; step <= steps; step++) {
+            replay.step(snake, step);
+        }
+        Snake next = new Snake(snake);
+        replay.step(next, steps + 1);
+        return new Prediction(snake, next, Math.max(0, ahead - steps));
+    }
+
+    // Mismas reglas que el servidor (Simulation.queueTurn): hasta TURN_BUFFER giros guardados que no repiten
+    // ni invierten el último, y se aplica uno por tick antes de mover
+    private static final class Replay {
+        private final List<PendingInput> inputs;
+        private final int[] applyAt;
+        private final Snake.Direction[] turns = new Snake.Direction[Simulation.TURN_BUFFER];
+        private int turnCount;
+        private int nextInput;
+
+        Replay(List<PendingInput> inputs, int[] applyAt) {
+            this.inputs = inputs;
+            this.applyAt = applyAt;
+        }
+
+        void step(Snake snake, int step) {
+            while (nextInput < inputs.size() && applyAt[nextInput] <= step) {
+                int at = Simulation.queueTurn(turns, turnCount, snake.getDirection(), inputs.get(nextInput++).direction);
+                if (at == turnCount) {
+                    turnCount++;
+                }
+            }
+            if (turnCount > 0) {
+                snake.setDirection(turns[0]);
+                System.arraycopy(turns, 1, turns, 0, --turnCount);
+            }
+            snake.move();
+            snake.removeTail();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package client;
+
+import common.GameState;
+import java.util.Arrays;
+
+// Últimos estados recibidos con su hora del servidor (GameState.lastUpdateTime), para dibujar entre dos de ellos
+// El cuadro se dibuja en "hora del servidor" = ahora - desfase de relojes - retraso; el retraso se adapta
+// al período de los ticks y a la variación de la llegada, así siempre hay un estado posterior ya recibido
+class SnapshotBuffer {
+    private static final int CAPACITY = 32;
+    private static final long MIN_DELAY_MILLIS = 30;
+    private static final long MAX_DELAY_MILLIS = 500;
+    private static final double SMOOTHING = 0.1; // peso de cada muestra nueva en los promedios
+
+    // Par de estados que rodean la hora pedida y cuánto se avanzó del primero al segundo (0..1)
+    static final class Sample {
+        final GameState from;
+        final GameState to;
+        final double alpha;
+
+        Sample(GameState from, GameState to, double alpha) {
+            this.from = from;
+            this.to = to;
+            this.alpha = alpha;
+        }
+    }
+
+    private final GameState[] states = new GameState[CAPACITY];
+    private final long[] offsets = new long[CAPACITY]; // hora local - hora del servidor al llegar cada estado
+    private int newest = -1;
+    private int count;
+    private double interval;    // período medio entre estados (reloj del servidor)
+    private double lateness;    // atraso medio de la llegada respecto del estado que llegó más rápido
+
+    public synchronized void add(GameState state, long localMillis) {
+        long serverMillis = state.getLastUpdateTime();
+        if (count > 0) {
+            long previous = states[newest].getLastUpdateTime();
+            if (serverMillis < previous) {
+                return; // llegó desordenado: ya hay uno más nuevo
+            }
+            if (serverMillis == previous) {
+                // Mismo tick (por ejemplo el estado de GAME_OVER): reemplaza al último
+                states[newest] = state;
+                return;
+            }
+            long gap = serverMillis - previous;
+            // Las pausas entre partidas no cuentan como período de los ticks
+            if (gap <= MAX_DELAY_MILLIS) {
+                interval = interval == 0 ? gap : interval + SMOOTHING * (gap - interval);
+            }
+        }
+        newest = (newest + 1) % CAPACITY;
+        states[newest] = state;
+        offsets[newest] = localMillis - serverMillis;
+        count = Math.min(CAPACITY, count + 1);
+        lateness += SMOOTHING * (offsets[newest] - minOffset() - lateness);
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(states, null);
+        newest = -1;
+        count = 0;
+        interval = 0;
+        lateness = 0;
+    }
+
+    // El estado que llegó más rápido estima el desfase de relojes (más el retraso mínimo de la red)
+    private long minOffset() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, offsets[(newest - i + CAPACITY) % CAPACITY]);
+        }
+        return min;
+    }
+
+    // Retraso de dibujo: un período más el doble del atraso medio de llegada
+    public synchronized long getDelay() {
+        long delay = (long) (interval + 2 * lateness);
+        return Math.max(MIN_DELAY_MILLIS, Math.min(MAX_DELAY_MILLIS, delay));
+    }
+
+    // Par de estados para dibujar ahora; null si no hay ninguno
+    public synchronized Sample sample(long localMillis) {
+        if (count == 0) {
+            return null;
+        }
+        long renderTime = localMillis - minOffset() - getDelay();
+        GameState later = states[newest];
+        if (renderTime >= later.getLastUpdateTime() || count == 1) {
+            // Sin estado posterior no se extrapola: se queda en el último
+            return new Sample(later, later, 1);
+        }
+        for (int i = 1; i < count; i++) {
+            GameState earlier = states[(newest - i + CAPACITY) % CAPACITY];
+            if (earlier.getLastUpdateTime() <= renderTime) {
+                double span = later.getLastUpdateTime() - earlier.getLastUpdateTime();
+                return new Sample(earlier, later, (renderTime - earlier.getLastUpdateTime()) / span);
+            }
+            later = earlier;
+        }
+        return new Sample(later, later, 1);
+    }
+}
@@ -0,0 +1,93 @@
+package client;
+
+import common.Food;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+// Sprites de las celdas que cambian en cada cuadro (cabezas, cuerpos con su letra y comidas)
+// Se dibujan una sola vez como imágenes compatibles con la pantalla y después solo se copian
+class SpriteCache {
+    private final int cellSize;
+    private final Font snakeFont;
+    private final Font foodFont;
+    // Clave: color, letra y si está viva
+    private final Map<Long, BufferedImage> snakeSprites = new HashMap<>();
+    private final BufferedImage[] foodSprites = new BufferedImage[Food.FoodType.values().length];
+    private GraphicsConfiguration config;
+
+    public SpriteCache(int cellSize) {
+        this.cellSize = cellSize;
+        this.snakeFont = new Font("Segoe UI", Font.BOLD, cellSize - 2);
+        this.foodFont = new Font("Segoe UI", Font.BOLD, cellSize - 6);
+    }
+
+    // Las imágenes compatibles dependen de la pantalla: si cambia, se vuelven a dibujar
+    private void checkConfig(GraphicsConfiguration current) {
+        if (current != config) {
+            config = current;
+            snakeSprites.clear();
+            java.util.Arrays.fill(foodSprites, null);
+        }
+    }
+
+    // Celda de serpiente: fondo del color del jugador (gris si murió) con la letra en blanco
+    public BufferedImage snake(GraphicsConfiguration current, Color color, char letter, boolean alive) {
+        checkConfig(current);
+        long key = ((long) color.getRGB() << 32) | ((long) letter << 1) | (alive ? 1 : 0);
+        BufferedImage sprite = snakeSprites.get(key);
+        if (sprite == null) {
+            sprite = createImage();
+            Graphics2D g = prepare(sprite);
+            g.setColor(alive ? color : Color.DARK_GRAY);
+            g.fillRect(1, 1, cellSize - 2, cellSize - 2);
+            g.setColor(Color.WHITE);
+            g.setFont(snakeFont);
+            drawCentered(g, String.valueOf(letter));
+            g.dispose();
+            snakeSprites.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    // Comida: círculo rojo con borde y el puntaje
+    public BufferedImage food(GraphicsConfiguration current, Food.FoodType type) {
+        checkConfig(current);
+        BufferedImage sprite = foodSprites[type.ordinal()];
+        if (sprite == null) {
+            sprite = createImage();
+            Graphics2D g = prepare(sprite);
+            g.setColor(Color.RED);
+            g.fillOval(2, 2, cellSize - 4, cellSize - 4);
+            g.setColor(new Color(128, 0, 0));
+            g.drawOval(2, 2, cellSize - 4, cellSize - 4);
+            g.setColor(Color.WHITE);
+            g.setFont(foodFont);
+            drawCentered(g, "+" + type.getPoints());
+            g.dispose();
+            foodSprites[type.ordinal()] = sprite;
+        }
+        return sprite;
+    }
+
+    private BufferedImage createImage() {
+        if (config != null) {
+            return config.createCompatibleImage(cellSize, cellSize, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private Graphics2D prepare(BufferedImage sprite) {
+        Graphics2D g = sprite.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g;
+    }
+
+    private void drawCentered(Graphics2D g, String text) {
+        FontMetrics fm = g.getFontMetrics();
+        int x = (cellSize - fm.stringWidth(text)) / 2;
+        int y = (cellSize + fm.getAscent()) / 2 - fm.getDescent();
+        g.drawString(text, x, y);
+    }
+}
@@ -0,0 +1,113 @@
+package client;
+
+import common.*;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+
+// Recepción de los estados por UDP (ver server.DatagramServer): el control sigue por TCP
+// Cada datagrama es [int secuencia][int sala][trama completa]; los viejos o desordenados se descartan,
+// un estado perdido se reemplaza con el siguiente en vez de frenar a los demás
+class StateChannel {
+    private static final long HELLO_MILLIS = 250;       // anuncio mientras no llega ningún estado
+    private static final long KEEPALIVE_MILLIS = 5000;  // después, para que NAT y servidor mantengan la dirección
+
+    // Estado recibido por UDP (desde el hilo lector del canal)
+    interface Listener {
+        void onState(int roomId, Message message);
+    }
+
+    private final DatagramSocket socket;
+    private final String name;
+    private volatile boolean receiving;
+    private int lastSeq;
+    private volatile long stale;   // datagramas viejos o repetidos descartados
+    private volatile long invalid; // datagramas que no se pudieron decodificar
+    private volatile long bytesReceived;
+
+    public StateChannel(InetAddress host, int port, String name) throws SocketException {
+        this.name = name;
+        socket = new DatagramSocket();
+        socket.connect(host, port);
+    }
+
+    // Empieza a anunciar la clave recibida en UDP_TOKEN y a recibir estados
+    public void start(int token, Listener listener) {
+        Thread hello = new Thread(() -> sendHellos(token), name + "-udp-hello");
+        hello.setDaemon(true);
+        hello.start();
+        Thread reader = new Thread(() -> receive(listener), name + "-udp");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void sendHellos(int token) {
+        byte[] data = ByteBuffer.allocate(4).putInt(token).array();
+        DatagramPacket packet = new DatagramPacket(data, data.length);
+        try {
+            while (!socket.isClosed()) {
+                socket.send(packet);
+                Thread.sleep(receiving ? KEEPALIVE_MILLIS : HELLO_MILLIS);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Canal cerrado
+        }
+    }
+
+    private void receive(Listener listener) {
+        byte[] data = new byte[MessageCodec.MAX_DATAGRAM_SIZE];
+        DatagramPacket packet = new DatagramPacket(data, data.length);
+        try {
+            while (true) {
+                packet.setLength(data.length);
+                socket.receive(packet);
+                receiving = true;
+                bytesReceived += packet.getLength();
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, packet.getLength());
+                if (buffer.remaining() < MessageCodec.DATAGRAM_HEADER_SIZE + MessageCodec.HEADER_SIZE) {
+                    invalid++;
+                    continue;
+                }
+                int seq = buffer.getInt();
+                // Comparación con vuelta: la secuencia puede desbordar en conexiones muy largas
+                if (seq - lastSeq <= 0) {
+                    stale++;
+                    continue;
+                }
+                int roomId = buffer.getInt();
+                if (buffer.getInt() != buffer.remaining()) {
+                    invalid++;
+                    continue;
+                }
+                Message message;
+                try {
+                    message = MessageCodec.decode(buffer);
+                } catch (ProtocolException e) {
+                    invalid++;
+                    continue;
+                }
+                lastSeq = seq;
+                listener.onState(roomId, message);
+            }
+        } catch (IOException e) {
+            // Canal cerrado
+        }
+    }
+
+    public boolean isReceiving() {
+        return receiving;
+    }
+    public long getStale() {
+        return stale;
+    }
+    public long getInvalid() {
+        return invalid;
+    }
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public void close() {
+        socket.close();
+    }
+}
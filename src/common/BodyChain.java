@@ -0,0 +1,109 @@
+package common;
+
+import java.nio.ByteBuffer;
+import java.net.ProtocolException;
+
+// Cuerpo de serpiente como cadena de direcciones: cada segmento está al lado del anterior, así que alcanza
+// con la celda de la cabeza y 2 bits por segmento (hacia dónde queda el siguiente, en el orden de Snake.Direction)
+// Los cuerpos recortados a la vista de un jugador pueden tener huecos: se guardan como varios tramos
+// Formato: [int segmentos][int tramos] y por tramo [int celda inicial][int pasos][pasos * 2 bits, de a 4 por byte]
+public final class BodyChain {
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+
+    private BodyChain() {
+    }
+
+    // Código de 2 bits del paso entre dos celdas, -1 si no son vecinas
+    private static int stepCode(int from, int to) {
+        int dx = SnakeBody.unpackX(to) - SnakeBody.unpackX(from);
+        int dy = SnakeBody.unpackY(to) - SnakeBody.unpackY(from);
+        for (int code = 0; code < DIRECTIONS.length; code++) {
+            if (DIRECTIONS[code].getDx() == dx && DIRECTIONS[code].getDy() == dy) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    public static int encodedSize(SnakeBody body) {
+        int size = 4 + 4;
+        int steps = 0;
+        for (int i = 0; i < body.size(); i++) {
+            if (i == 0 || stepCode(body.getPacked(i - 1), body.getPacked(i)) < 0) {
+                size += 4 + 4 + (steps + 3) / 4;
+                steps = 0;
+            } else {
+                steps++;
+            }
+        }
+        return size + (steps + 3) / 4;
+    }
+
+    public static void write(ByteBuffer out, SnakeBody body) {
+        int size = body.size();
+        out.putInt(size);
+        int runsAt = out.position();
+        out.putInt(0);
+        int runs = 0;
+        int i = 0;
+        while (i < size) {
+            // Largo del tramo que empieza en i
+            int end = i + 1;
+            while (end < size && stepCode(body.getPacked(end - 1), body.getPacked(end)) >= 0) {
+                end++;
+            }
+            out.putInt(body.getPacked(i));
+            out.putInt(end - i - 1);
+            int bits = 0;
+            int count = 0;
+            for (int j = i + 1; j < end; j++) {
+                bits |= stepCode(body.getPacked(j - 1), body.getPacked(j)) << (2 * count);
+                if (++count == 4) {
+                    out.put((byte) bits);
+                    bits = 0;
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                out.put((byte) bits);
+            }
+            runs++;
+            i = end;
+        }
+        out.putInt(runsAt, runs);
+    }
+
+    public static SnakeBody read(ByteBuffer in) throws ProtocolException {
+        int size = in.getInt();
+        int runs = in.getInt();
+        // Cada segmento ocupa al menos 2 bits y cada tramo 8 bytes: cota contra largos inventados
+        if (size < 0 || runs < 0 || runs > size || size - runs > in.remaining() * 4L) {
+            throw new ProtocolException("Largo de serpiente inválido: " + size);
+        }
+        SnakeBody body = new SnakeBody(size);
+        for (int r = 0; r < runs; r++) {
+            int cell = in.getInt();
+            int steps = in.getInt();
+            if (steps < 0 || body.size() + 1 + steps > size) {
+                throw new ProtocolException("Tramo de serpiente inválido: " + steps);
+            }
+            int x = SnakeBody.unpackX(cell);
+            int y = SnakeBody.unpackY(cell);
+            body.pushTail(x, y);
+            int bits = 0;
+            for (int j = 0; j < steps; j++) {
+                if ((j & 3) == 0) {
+                    bits = in.get();
+                }
+                Snake.Direction step = DIRECTIONS[(bits >> (2 * (j & 3))) & 3];
+                x += step.getDx();
+                y += step.getDy();
+                body.pushTail(x, y);
+            }
+        }
+        if (body.size() != size) {
+            throw new ProtocolException("Serpiente incompleta: " + body.size() + " de " + size);
+        }
+        return body;
+    }
+}
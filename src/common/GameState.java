@@ -1,7 +1,6 @@
 package common;
 
 import java.io.Serializable;
-import java.awt.Point;
 
 
 // Clase que representa estado de juego
@@ -22,36 +21,48 @@ public class GameState implements Serializable {
     }
     
     private Difficulty difficulty;
-    private Point[][] board;
     private Snake[] snakes;
     private java.util.List<Food> foods;
     private boolean gameRunning;
     private int boardWidth;
     private int boardHeight;
     private long lastUpdateTime;
+    private int tick;
     
     public GameState(int width, int height) {
         this.boardWidth = width;
         this.boardHeight = height;
-        this.board = new Point[height][width];
         this.foods = new java.util.ArrayList<>();
         this.gameRunning = false;
         this.difficulty = Difficulty.EASY;
         this.lastUpdateTime = System.currentTimeMillis();
     }
-    
+
+    // Copia independiente de otro estado (las comidas no cambian una vez creadas, se comparten)
+    public GameState(GameState other) {
+        this.boardWidth = other.boardWidth;
+        this.boardHeight = other.boardHeight;
+        this.foods = new java.util.ArrayList<>(other.foods);
+        this.gameRunning = other.gameRunning;
+        this.difficulty = other.difficulty;
+        this.lastUpdateTime = other.lastUpdateTime;
+        this.tick = other.tick;
+        if (other.snakes != null) {
+            this.snakes = new Snake[other.snakes.length];
+            for (int i = 0; i < snakes.length; i++) {
+                if (other.snakes[i] != null) {
+                    snakes[i] = new Snake(other.snakes[i]);
+                }
+            }
+        }
+    }
+
     public Difficulty getDifficulty(){
         return difficulty;
     }
     public void setDifficulty(Difficulty difficulty) {
         this.difficulty = difficulty;
     }    
-    public Point[][] getBoard() {
-        return board;
-    }
-    public void setBoard(Point[][] board) {
-        this.board = board;
-    }    
     public Snake[] getSnakes() {
         return snakes;
     }
@@ -94,4 +105,10 @@ public class GameState implements Serializable {
     public void setLastUpdateTime(long lastUpdateTime){
         this.lastUpdateTime = lastUpdateTime;
         }
+    public int getTick(){
+        return tick;
+    }
+    public void setTick(int tick){
+        this.tick = tick;
+    }
 }
\ No newline at end of file
@@ -6,7 +6,7 @@ import java.io.Serializable;
 public class Message implements Serializable {
     private static final long serialVersionUID = 1L;
     public enum Type {
-        // Mensajes de cliente al servidor
+        // Mensajes de cliente al servidor (MessageCodec.decodeFromClient solo acepta estos: no cambiar el orden)
         CONNECT,
         DISCONNECT,
         MOVE_UP,
@@ -14,14 +14,27 @@ public class Message implements Serializable {
         MOVE_LEFT,
         MOVE_RIGHT,
         SET_DIFFICULTY,
-        START_GAME,        
+        START_GAME,
+        STATE_ACK,          // último tick de estado recibido por el cliente (-1 = cambió de sala)
+        LIST_ROOMS,
+        CREATE_ROOM,        // nombre, tamaño y cupo de la sala; el creador entra a ella
+        JOIN_ROOM,          // id de la sala, -1 = cualquiera con lugar
+        LEAVE_ROOM,
+        LOCKSTEP_HASH,      // tick y hash del estado simulado (tick -1 = pide el estado completo)
         // Mensajes de servidor al cliente
         CONNECTION_ACCEPTED,
         CONNECTION_REJECTED,
         GAME_STATE,
+        GAME_STATE_DELTA,   // cambios respecto al último estado confirmado
         GAME_OVER,
         PLAYER_JOINED,
         PLAYER_LEFT,
+        ROOM_LIST,
+        ROOM_JOINED,        // id de la sala y número de jugador dentro de ella
+        MINIMAP,            // resumen del tablero entero en salas grandes
+        UDP_TOKEN,          // clave que el cliente manda por UDP para recibir ahí los estados
+        LOCKSTEP_TICK,      // entradas de un tick en las salas lockstep (TickInputs)
+        LOCKSTEP_SYNC,      // estado completo de la simulación para empezar o corregir (Simulation)
         ERROR
     }
     
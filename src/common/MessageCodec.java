@@ -0,0 +1,660 @@
+package common;
+
+import java.awt.Color;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Codificación binaria de los mensajes
+// Trama: [int largo][byte versión][byte tipo][contenido], el largo no se cuenta a sí mismo
+public final class MessageCodec {
+    public static final int PROTOCOL_VERSION = 10;
+    public static final int LENGTH_SIZE = 4;
+    public static final int HEADER_SIZE = LENGTH_SIZE + 2;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    // Tramas del cliente al servidor (sin el largo): la más grande es CREATE_ROOM, con un nombre de hasta
+    // RoomSettings.MAX_NAME_LENGTH caracteres
+    public static final int MAX_CLIENT_FRAME_SIZE = 256;
+
+    // Capacidades que se negocian en el CONNECT (bits)
+    public static final int CAP_DELTA = 1;      // acepta GAME_STATE_DELTA y confirma con STATE_ACK
+    public static final int CAP_UDP = 2;        // puede recibir los estados por UDP (requiere CAP_DELTA)
+    public static final int CAP_LOCKSTEP = 4;   // puede simular las salas lockstep (LOCKSTEP_TICK/SYNC/HASH)
+    public static final int CAPABILITIES = CAP_DELTA | CAP_UDP | CAP_LOCKSTEP;
+
+    // Datagrama de estado: [int secuencia][int sala][trama completa]; el cliente descarta secuencias viejas
+    public static final int DATAGRAM_HEADER_SIZE = 8;
+    public static final int MAX_DATAGRAM_SIZE = 8192; // las tramas más grandes van por TCP
+
+    private static final Message.Type[] TYPES = Message.Type.values();
+    private static final int LAST_CLIENT_TYPE = Message.Type.LOCKSTEP_HASH.ordinal(); // los anteriores van del cliente al servidor
+    private static final GameState.Difficulty[] DIFFICULTIES = GameState.Difficulty.values();
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+    private static final Food.FoodType[] FOOD_TYPES = Food.FoodType.values();
+
+    private MessageCodec() {
+    }
+
+    // Tamaño total de la trama, incluyendo el largo
+    public static int encodedSize(Message message) {
+        return HEADER_SIZE + payloadSize(message);
+    }
+
+    public static ByteBuffer encode(Message message) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(message));
+        encode(message, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    // Escribe la trama completa en el buffer a partir de su posición actual
+    public static void encode(Message message, ByteBuffer out) {
+        int payload = payloadSize(message);
+        out.putInt(payload + 2);
+        out.put((byte) PROTOCOL_VERSION);
+        out.put((byte) message.getType().ordinal());
+        switch (message.getType()) {
+            case CONNECT:
+                out.putInt(intData(message));
+                break;
+            case CONNECTION_ACCEPTED:
+                out.putInt(message.getPlayerId());
+                out.putInt(intData(message));
+                break;
+            case SET_DIFFICULTY:
+                out.put((byte) ((GameState.Difficulty) message.getData()).ordinal());
+                break;
+            case PLAYER_JOINED:
+            case PLAYER_LEFT:
+            case STATE_ACK:
+            case JOIN_ROOM:
+            case UDP_TOKEN:
+            case MOVE_UP:
+            case MOVE_DOWN:
+            case MOVE_LEFT:
+            case MOVE_RIGHT:
+                // Los movimientos llevan el número de secuencia de la entrada
+                out.putInt(intData(message));
+                break;
+            case ROOM_JOINED:
+                out.putInt(message.getPlayerId());
+                out.putInt(intData(message));
+                break;
+            case CONNECTION_REJECTED:
+            case ERROR:
+                putString(out, String.valueOf(message.getData()));
+                break;
+            case CREATE_ROOM:
+                putRoomSettings(out, (RoomSettings) message.getData());
+                break;
+            case ROOM_LIST:
+                putRoomList(out, roomList(message));
+                break;
+            case MINIMAP:
+                putMinimap(out, (Minimap) message.getData());
+                break;
+            case GAME_STATE:
+            case GAME_OVER:
+                putGameState(out, (GameState) message.getData());
+                break;
+            case GAME_STATE_DELTA:
+                putDelta(out, (StateDelta) message.getData());
+                break;
+            case LOCKSTEP_TICK:
+                putTickInputs(out, (TickInputs) message.getData());
+                break;
+            case LOCKSTEP_SYNC:
+                putSimulation(out, (Simulation) message.getData());
+                break;
+            case LOCKSTEP_HASH: {
+                int[] hash = (int[]) message.getData();
+                out.putInt(hash[0]);
+                out.putInt(hash[1]);
+                break;
+            }
+            default:
+                // DISCONNECT, START_GAME no llevan contenido
+                break;
+        }
+    }
+
+    // Decodifica una trama sin el campo de largo (empieza en la versión)
+    public static Message decode(ByteBuffer frame) throws ProtocolException {
+        return decode(frame, false);
+    }
+
+    // Igual que decode, pero rechaza por el tipo, antes de leer el contenido, los mensajes que solo manda el servidor
+    // (un LOCKSTEP_SYNC o un GAME_STATE falso haría reservar tableros enteros sin pasar por el límite de mensajes)
+    public static Message decodeFromClient(ByteBuffer frame) throws ProtocolException {
+        return decode(frame, true);
+    }
+
+    private static Message decode(ByteBuffer frame, boolean fromClient) throws ProtocolException {
+        try {
+            int version = frame.get() & 0xFF;
+            if (version != PROTOCOL_VERSION) {
+                throw new ProtocolException("Versión de protocolo no soportada: " + version);
+            }
+            int typeIndex = frame.get() & 0xFF;
+            if (typeIndex >= TYPES.length) {
+                throw new ProtocolException("Tipo de mensaje desconocido: " + typeIndex);
+            }
+            Message.Type type = TYPES[typeIndex];
+            if (fromClient && typeIndex > LAST_CLIENT_TYPE) {
+                throw new ProtocolException("Mensaje no permitido desde el cliente: " + type);
+            }
+            switch (type) {
+                case CONNECT:
+                    return new Message(type, frame.getInt());
+                case CONNECTION_ACCEPTED:
+                case ROOM_JOINED: {
+                    int playerId = frame.getInt();
+                    return new Message(type, frame.getInt(), playerId);
+                }
+                case SET_DIFFICULTY:
+                    return new Message(type, DIFFICULTIES[frame.get()]);
+                case PLAYER_JOINED:
+                case PLAYER_LEFT:
+                case STATE_ACK:
+                case JOIN_ROOM:
+                case UDP_TOKEN:
+                case MOVE_UP:
+                case MOVE_DOWN:
+                case MOVE_LEFT:
+                case MOVE_RIGHT:
+                    return new Message(type, frame.getInt());
+                case CONNECTION_REJECTED:
+                case ERROR:
+                    return new Message(type, getString(frame));
+                case CREATE_ROOM:
+                    return new Message(type, getRoomSettings(frame));
+                case ROOM_LIST:
+                    return new Message(type, getRoomList(frame));
+                case MINIMAP:
+                    return new Message(type, getMinimap(frame));
+                case GAME_STATE:
+                case GAME_OVER:
+                    return new Message(type, getGameState(frame));
+                case GAME_STATE_DELTA:
+                    return new Message(type, getDelta(frame));
+                case LOCKSTEP_TICK:
+                    return new Message(type, getTickInputs(frame));
+                case LOCKSTEP_SYNC:
+                    return new Message(type, getSimulation(frame));
+                case LOCKSTEP_HASH: {
+                    int tick = frame.getInt();
+                    return new Message(type, new int[] {tick, frame.getInt()});
+                }
+                default:
+                    return new Message(type);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new ProtocolException("Trama mal formada");
+        }
+    }
+
+    public static void writeFrame(DataOutputStream out, Message message) throws IOException {
+        ByteBuffer buffer = encode(message);
+        out.write(buffer.array(), 0, buffer.limit());
+    }
+
+    public static Message readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 2 || length > MAX_FRAME_SIZE) {
+            throw new ProtocolException("Largo de trama inválido: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return decode(ByteBuffer.wrap(frame));
+    }
+
+    private static int payloadSize(Message message) {
+        switch (message.getType()) {
+            case CONNECT:
+            case PLAYER_JOINED:
+            case PLAYER_LEFT:
+            case STATE_ACK:
+            case JOIN_ROOM:
+            case UDP_TOKEN:
+            case MOVE_UP:
+            case MOVE_DOWN:
+            case MOVE_LEFT:
+            case MOVE_RIGHT:
+                return 4;
+            case CONNECTION_ACCEPTED:
+            case ROOM_JOINED:
+            case LOCKSTEP_HASH:
+                return 8;
+            case SET_DIFFICULTY:
+                return 1;
+            case CONNECTION_REJECTED:
+            case ERROR:
+                return stringSize(String.valueOf(message.getData()));
+            case CREATE_ROOM:
+                return stringSize(((RoomSettings) message.getData()).getName()) + 2 + 2 + 2 + 1;
+            case MINIMAP:
+                return 8 + ((Minimap) message.getData()).getHeads().length;
+            case ROOM_LIST: {
+                int size = 2;
+                for (RoomInfo room : roomList(message)) {
+                    size += 4 + stringSize(room.getName()) + 2 + 2 + 2 + 2 + 1 + 1;
+                }
+                return size;
+            }
+            case GAME_STATE:
+            case GAME_OVER:
+                return gameStateSize((GameState) message.getData());
+            case GAME_STATE_DELTA:
+                return deltaSize((StateDelta) message.getData());
+            case LOCKSTEP_TICK:
+                return tickInputsSize((TickInputs) message.getData());
+            case LOCKSTEP_SYNC:
+                return 2 + 2 + 2 + 4 + 4 + 8 + 4 + ((Simulation) message.getData()).keyframeSize();
+            default:
+                return 0;
+        }
+    }
+
+    private static int intData(Message message) {
+        Object data = message.getData();
+        return data instanceof Integer ? (Integer) data : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<RoomInfo> roomList(Message message) {
+        return (List<RoomInfo>) message.getData();
+    }
+
+    private static int stringSize(String text) {
+        return 2 + text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Sala nueva: nombre, ancho, alto, máximo de jugadores y lockstep
+    private static void putRoomSettings(ByteBuffer out, RoomSettings settings) {
+        putString(out, settings.getName() == null ? "" : settings.getName());
+        out.putShort((short) settings.getWidth());
+        out.putShort((short) settings.getHeight());
+        out.putShort((short) settings.getMaxPlayers());
+        out.put((byte) (settings.isLockstep() ? 1 : 0));
+    }
+
+    private static RoomSettings getRoomSettings(ByteBuffer in) {
+        String name = getString(in);
+        int width = in.getShort() & 0xFFFF;
+        int height = in.getShort() & 0xFFFF;
+        int maxPlayers = in.getShort() & 0xFFFF;
+        return new RoomSettings(name, width, height, maxPlayers, in.get() != 0);
+    }
+
+    // Minimapa: tamaño del tablero, regiones y cabezas por región
+    private static void putMinimap(ByteBuffer out, Minimap minimap) {
+        out.putShort((short) minimap.getBoardWidth());
+        out.putShort((short) minimap.getBoardHeight());
+        out.putShort((short) minimap.getCols());
+        out.putShort((short) minimap.getRows());
+        out.put(minimap.getHeads());
+    }
+
+    private static Minimap getMinimap(ByteBuffer in) throws ProtocolException {
+        int boardWidth = in.getShort() & 0xFFFF;
+        int boardHeight = in.getShort() & 0xFFFF;
+        int cols = in.getShort() & 0xFFFF;
+        int rows = in.getShort() & 0xFFFF;
+        if ((long) cols * rows > in.remaining()) {
+            throw new ProtocolException("Minimapa inválido: " + cols + "x" + rows);
+        }
+        byte[] heads = new byte[cols * rows];
+        in.get(heads);
+        return new Minimap(boardWidth, boardHeight, cols, rows, heads);
+    }
+
+    // Salas: id, nombre, jugadores, máximo, tamaño, si están en juego y si son lockstep
+    private static void putRoomList(ByteBuffer out, List<RoomInfo> rooms) {
+        out.putShort((short) rooms.size());
+        for (RoomInfo room : rooms) {
+            out.putInt(room.getId());
+            putString(out, room.getName());
+            out.putShort((short) room.getPlayers());
+            out.putShort((short) room.getMaxPlayers());
+            out.putShort((short) room.getWidth());
+            out.putShort((short) room.getHeight());
+            out.put((byte) (room.isGameRunning() ? 1 : 0));
+            out.put((byte) (room.isLockstep() ? 1 : 0));
+        }
+    }
+
+    private static List<RoomInfo> getRoomList(ByteBuffer in) {
+        int count = in.getShort() & 0xFFFF;
+        List<RoomInfo> rooms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = in.getInt();
+            String name = getString(in);
+            int players = in.getShort() & 0xFFFF;
+            int maxPlayers = in.getShort() & 0xFFFF;
+            int width = in.getShort() & 0xFFFF;
+            int height = in.getShort() & 0xFFFF;
+            boolean running = in.get() != 0;
+            rooms.add(new RoomInfo(id, name, players, maxPlayers, width, height, running, in.get() != 0));
+        }
+        return rooms;
+    }
+
+    private static void putString(ByteBuffer out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Estado: tick, dificultad, corriendo, tamaño, hora, comidas (x, y, tipo) y serpientes
+    // Serpientes: cantidad de lugares y solo las presentes con su lugar (en salas grandes casi todos están vacíos);
+    // cada cuerpo va como cadena de direcciones (BodyChain), 2 bits por segmento
+    private static int gameStateSize(GameState state) {
+        int size = 4 + 1 + 1 + 2 + 2 + 8;
+        size += 2 + state.getFoods().size() * 5;
+        size += 2 + 2;
+        Snake[] snakes = state.getSnakes();
+        if (snakes != null) {
+            for (Snake snake : snakes) {
+                if (snake != null) {
+                    size += 2 + snakeSize(snake);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static int snakeSize(Snake snake) {
+        return 2 + 4 + 1 + 1 + 4 + 4 + BodyChain.encodedSize(snake.getSegments());
+    }
+
+    private static void putGameState(ByteBuffer out, GameState state) {
+        out.putInt(state.getTick());
+        out.put((byte) state.getDifficulty().ordinal());
+        out.put((byte) (state.isGameRunning() ? 1 : 0));
+        out.putShort((short) state.getBoardWidth());
+        out.putShort((short) state.getBoardHeight());
+        out.putLong(state.getLastUpdateTime());
+        List<Food> foods = state.getFoods();
+        out.putShort((short) foods.size());
+        for (Food food : foods) {
+            out.putShort((short) food.getX());
+            out.putShort((short) food.getY());
+            out.put((byte) food.getType().ordinal());
+        }
+        Snake[] snakes = state.getSnakes();
+        int slots = snakes == null ? 0 : snakes.length;
+        int present = 0;
+        for (int i = 0; i < slots; i++) {
+            if (snakes[i] != null) {
+                present++;
+            }
+        }
+        out.putShort((short) slots);
+        out.putShort((short) present);
+        for (int i = 0; i < slots; i++) {
+            if (snakes[i] != null) {
+                out.putShort((short) i);
+                putSnake(out, snakes[i]);
+            }
+        }
+    }
+
+    private static void putSnake(ByteBuffer out, Snake snake) {
+        out.putShort((short) snake.getPlayerId());
+        out.putInt(snake.getColor().getRGB());
+        out.put((byte) (snake.isAlive() ? 1 : 0));
+        out.put((byte) snake.getDirection().ordinal());
+        out.putInt(snake.getScore());
+        out.putInt(snake.getInputSeq());
+        BodyChain.write(out, snake.getSegments());
+    }
+
+    private static GameState getGameState(ByteBuffer in) throws ProtocolException {
+        int tick = in.getInt();
+        GameState.Difficulty difficulty = DIFFICULTIES[in.get()];
+        boolean running = in.get() != 0;
+        int width = in.getShort();
+        int height = in.getShort();
+        GameState state = new GameState(width, height);
+        state.setTick(tick);
+        state.setDifficulty(difficulty);
+        state.setGameRunning(running);
+        state.setLastUpdateTime(in.getLong());
+        int foodCount = in.getShort() & 0xFFFF;
+        List<Food> foods = new ArrayList<>(foodCount);
+        for (int i = 0; i < foodCount; i++) {
+            int x = in.getShort();
+            int y = in.getShort();
+            foods.add(new Food(x, y, FOOD_TYPES[in.get()]));
+        }
+        state.setFoods(foods);
+        int slots = in.getShort() & 0xFFFF;
+        int present = in.getShort() & 0xFFFF;
+        Snake[] snakes = new Snake[slots];
+        for (int i = 0; i < present; i++) {
+            int slot = in.getShort() & 0xFFFF;
+            if (slot >= slots) {
+                throw new ProtocolException("Lugar de serpiente inválido: " + slot);
+            }
+            snakes[slot] = getSnake(in);
+        }
+        state.setSnakes(snakes);
+        return state;
+    }
+
+    private static Snake getSnake(ByteBuffer in) throws ProtocolException {
+        int playerId = in.getShort();
+        Color color = new Color(in.getInt(), true);
+        boolean alive = in.get() != 0;
+        Snake.Direction direction = DIRECTIONS[in.get()];
+        int score = in.getInt();
+        int inputSeq = in.getInt();
+        SnakeBody body = BodyChain.read(in);
+        Snake snake = new Snake(playerId, color, body, direction);
+        snake.setAlive(alive);
+        snake.setScore(score);
+        snake.setInputSeq(inputSeq);
+        return snake;
+    }
+
+    // Delta: ticks, cabecera del estado, comidas quitadas/agregadas y cambios por serpiente
+    private static int deltaSize(StateDelta delta) {
+        int size = 4 + 4 + 1 + 1 + 8;
+        size += 2 + delta.getRemovedFoods().length * 4;
+        size += 2 + delta.getAddedFoods().size() * 5;
+        size += 2;
+        for (StateDelta.SnakeChange change : delta.getSnakes()) {
+            size += 1;
+            if (change.getKind() == StateDelta.FULL) {
+                size += snakeSize(change.getSnake());
+            } else if (change.getKind() == StateDelta.CHANGED) {
+                size += 2 + 1 + 1 + 4 + 4 + 4 + 4 + change.getNewHeads().length * 4;
+            }
+        }
+        return size;
+    }
+
+    private static void putDelta(ByteBuffer out, StateDelta delta) {
+        out.putInt(delta.getBaseTick());
+        out.putInt(delta.getTick());
+        out.put((byte) delta.getDifficulty().ordinal());
+        out.put((byte) (delta.isGameRunning() ? 1 : 0));
+        out.putLong(delta.getLastUpdateTime());
+        out.putShort((short) delta.getRemovedFoods().length);
+        for (int cell : delta.getRemovedFoods()) {
+            out.putInt(cell);
+        }
+        out.putShort((short) delta.getAddedFoods().size());
+        for (Food food : delta.getAddedFoods()) {
+            out.putShort((short) food.getX());
+            out.putShort((short) food.getY());
+            out.put((byte) food.getType().ordinal());
+        }
+        out.putShort((short) delta.getSnakes().length);
+        for (StateDelta.SnakeChange change : delta.getSnakes()) {
+            out.put(change.getKind());
+            if (change.getKind() == StateDelta.FULL) {
+                putSnake(out, change.getSnake());
+            } else if (change.getKind() == StateDelta.CHANGED) {
+                out.putShort((short) change.getPlayerId());
+                out.put((byte) (change.isAlive() ? 1 : 0));
+                out.put((byte) change.getDirection().ordinal());
+                out.putInt(change.getScore());
+                out.putInt(change.getInputSeq());
+                out.putInt(change.getTailsRemoved());
+                out.putInt(change.getNewHeads().length);
+                for (int head : change.getNewHeads()) {
+                    out.putInt(head);
+                }
+            }
+        }
+    }
+
+    private static StateDelta getDelta(ByteBuffer in) throws ProtocolException {
+        int baseTick = in.getInt();
+        StateDelta delta = new StateDelta(baseTick, in.getInt());
+        delta.setDifficulty(DIFFICULTIES[in.get()]);
+        delta.setGameRunning(in.get() != 0);
+        delta.setLastUpdateTime(in.getLong());
+        int[] removed = new int[in.getShort() & 0xFFFF];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = in.getInt();
+        }
+        delta.setRemovedFoods(removed);
+        int added = in.getShort() & 0xFFFF;
+        List<Food> foods = new ArrayList<>(added);
+        for (int i = 0; i < added; i++) {
+            int x = in.getShort();
+            int y = in.getShort();
+            foods.add(new Food(x, y, FOOD_TYPES[in.get()]));
+        }
+        delta.setAddedFoods(foods);
+        StateDelta.SnakeChange[] changes = new StateDelta.SnakeChange[in.getShort() & 0xFFFF];
+        for (int i = 0; i < changes.length; i++) {
+            byte kind = in.get();
+            if (kind == StateDelta.FULL) {
+                changes[i] = StateDelta.SnakeChange.full(getSnake(in));
+            } else if (kind == StateDelta.CHANGED) {
+                int playerId = in.getShort();
+                boolean alive = in.get() != 0;
+                Snake.Direction direction = DIRECTIONS[in.get()];
+                int score = in.getInt();
+                int inputSeq = in.getInt();
+                int tailsRemoved = in.getInt();
+                int count = in.getInt();
+                if (count < 0 || count > in.remaining() / 4) {
+                    throw new ProtocolException("Cantidad de cabezas inválida: " + count);
+                }
+                int[] heads = new int[count];
+                for (int j = 0; j < count; j++) {
+                    heads[j] = in.getInt();
+                }
+                changes[i] = StateDelta.SnakeChange.changed(playerId, alive, direction, score, inputSeq, tailsRemoved, heads);
+            } else {
+                changes[i] = StateDelta.SnakeChange.absent();
+            }
+        }
+        delta.setSnakes(changes);
+        return delta;
+    }
+
+    // Entradas de un tick: tick, jugadores, hora, cambios de la sala, entradas y comidas que aparecieron
+    private static int tickInputsSize(TickInputs inputs) {
+        return 4 + 2 + 8 + 2 + inputs.getEventCount() * 5 + 2 + inputs.getInputCount() * 7 + 2 + inputs.getSpawnCount() * 5;
+    }
+
+    private static void putTickInputs(ByteBuffer out, TickInputs inputs) {
+        out.putInt(inputs.getTick());
+        out.putShort((short) inputs.getPlayers());
+        out.putLong(inputs.getTime());
+        out.putShort((short) inputs.getEventCount());
+        for (int i = 0; i < inputs.getEventCount(); i++) {
+            out.put(inputs.getEventKind(i));
+            out.putInt(inputs.getEventValue(i));
+        }
+        out.putShort((short) inputs.getInputCount());
+        for (int i = 0; i < inputs.getInputCount(); i++) {
+            out.putShort((short) inputs.getInputPlayer(i));
+            out.put((byte) inputs.getInputDirection(i).ordinal());
+            out.putInt(inputs.getInputSeq(i));
+        }
+        out.putShort((short) inputs.getSpawnCount());
+        for (int i = 0; i < inputs.getSpawnCount(); i++) {
+            out.putInt(inputs.getSpawnCell(i));
+            out.put((byte) inputs.getSpawnType(i).ordinal());
+        }
+    }
+
+    private static TickInputs getTickInputs(ByteBuffer in) {
+        TickInputs inputs = new TickInputs();
+        inputs.setTick(in.getInt());
+        inputs.setPlayers(in.getShort() & 0xFFFF);
+        inputs.setTime(in.getLong());
+        int events = in.getShort() & 0xFFFF;
+        for (int i = 0; i < events; i++) {
+            byte kind = in.get();
+            inputs.addEvent(kind, in.getInt());
+        }
+        int count = in.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int playerId = in.getShort() & 0xFFFF;
+            Snake.Direction direction = DIRECTIONS[in.get()];
+            inputs.addInput(playerId, direction, in.getInt());
+        }
+        count = in.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int cell = in.getInt();
+            inputs.addSpawn(cell, FOOD_TYPES[in.get()]);
+        }
+        return inputs;
+    }
+
+    // Simulación completa: tamaño, cupo, comidas, hora y su keyframe (Simulation.writeKeyframe)
+    private static void putSimulation(ByteBuffer out, Simulation sim) {
+        out.putShort((short) sim.getWidth());
+        out.putShort((short) sim.getHeight());
+        out.putShort((short) sim.getMaxPlayers());
+        out.putInt(sim.getMaxFoods());
+        out.putInt(sim.getFoodTtlTicks());
+        out.putLong(sim.getGameState().getLastUpdateTime());
+        out.putInt(sim.keyframeSize());
+        sim.writeKeyframe(out);
+    }
+
+    private static Simulation getSimulation(ByteBuffer in) throws ProtocolException {
+        int width = in.getShort() & 0xFFFF;
+        int height = in.getShort() & 0xFFFF;
+        int maxPlayers = in.getShort() & 0xFFFF;
+        int maxFoods = in.getInt();
+        int foodTtlTicks = in.getInt();
+        long time = in.getLong();
+        if (width < RoomSettings.MIN_SIDE || width > RoomSettings.MAX_SIDE || height < RoomSettings.MIN_SIDE
+                || height > RoomSettings.MAX_SIDE || maxPlayers < 1 || maxPlayers > RoomSettings.MAX_PLAYERS_LIMIT
+                || maxFoods < 1 || maxFoods > 65535) {
+            throw new ProtocolException("Simulación inválida: " + width + "x" + height);
+        }
+        int size = in.getInt();
+        if (size < 0 || size > in.remaining()) {
+            throw new ProtocolException("Keyframe inválido: " + size);
+        }
+        ByteBuffer keyframe = in.slice();
+        keyframe.limit(size);
+        Simulation sim = new Simulation(width, height, maxPlayers, maxFoods, foodTtlTicks);
+        sim.restoreKeyframe(keyframe);
+        sim.getGameState().setLastUpdateTime(time);
+        in.position(in.position() + size);
+        return sim;
+    }
+}
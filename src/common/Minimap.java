@@ -0,0 +1,38 @@
+package common;
+
+// Resumen grueso del tablero entero: cuántas cabezas vivas hay en cada región
+// Va aparte del estado, que en tableros grandes solo trae lo que rodea a cada jugador
+public class Minimap {
+    private final int boardWidth;
+    private final int boardHeight;
+    private final int cols;
+    private final int rows;
+    private final byte[] heads; // por región, fila por fila; satura en 255
+
+    public Minimap(int boardWidth, int boardHeight, int cols, int rows, byte[] heads) {
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.cols = cols;
+        this.rows = rows;
+        this.heads = heads;
+    }
+
+    public int getBoardWidth() {
+        return boardWidth;
+    }
+    public int getBoardHeight() {
+        return boardHeight;
+    }
+    public int getCols() {
+        return cols;
+    }
+    public int getRows() {
+        return rows;
+    }
+    public byte[] getHeads() {
+        return heads;
+    }
+    public int getHeads(int col, int row) {
+        return heads[row * cols + col] & 0xFF;
+    }
+}
@@ -0,0 +1,153 @@
+package common;
+
+import java.util.Random;
+
+// Rejilla de ocupación del tablero indexada por y * width + x
+// Cada celda guarda el id del jugador dueño (> 0), una pared, una comida o vacío
+// Una comida se guarda como FOOD - lugar, así la celda lleva directo a su comida
+// Además lleva el conjunto de celdas vacías (arreglo con borrado por intercambio + posición de cada celda)
+// para elegir una celda libre al azar en O(1)
+public class OccupancyGrid {
+    public static final int EMPTY = 0;
+    public static final int WALL = -1;
+    public static final int FOOD = -2;  // comida en el lugar 0; valores menores son los lugares siguientes
+
+    private final int width;
+    private final int height;
+    private final int[] cells;
+    // Capa fija: lo que queda en la celda cuando se libera (pared o vacío)
+    private final int[] base;
+    // Celdas vacías: freeCells[0..freeCount) y freePos[celda] = su lugar en freeCells (-1 si no está)
+    private final int[] freeCells;
+    private final int[] freePos;
+    private int freeCount;
+
+    public OccupancyGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cells = new int[width * height];
+        this.base = new int[width * height];
+        this.freeCells = new int[width * height];
+        this.freePos = new int[width * height];
+        rebuildFree();
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public int get(int x, int y) {
+        return cells[y * width + x];
+    }
+
+    // Marca la celda como ocupada por una serpiente o por comida
+    public void occupy(int x, int y, int value) {
+        set(y * width + x, value);
+    }
+
+    // Devuelve la celda a su valor base (pared o vacío)
+    public void release(int x, int y) {
+        int i = y * width + x;
+        set(i, base[i]);
+    }
+
+    // Libera la celda solo si sigue perteneciendo al dueño indicado
+    public void releaseIfOwner(int x, int y, int owner) {
+        int i = y * width + x;
+        if (cells[i] == owner) {
+            set(i, base[i]);
+        }
+    }
+
+    public void setWall(int x, int y, boolean wall) {
+        int i = y * width + x;
+        int value = wall ? WALL : EMPTY;
+        if (cells[i] == base[i]) {
+            set(i, value);
+        }
+        base[i] = value;
+    }
+
+    // Limpia todo lo dinámico y deja solo la capa base
+    public void clear() {
+        System.arraycopy(base, 0, cells, 0, cells.length);
+        rebuildFree();
+    }
+
+    // Celda vacía al azar (índice y * width + x), o -1 si el tablero está lleno
+    public int randomFreeCell(Random random) {
+        return freeCount == 0 ? -1 : freeCells[random.nextInt(freeCount)];
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    public int xOf(int index) {
+        return index % width;
+    }
+    public int yOf(int index) {
+        return index / width;
+    }
+
+    // Toda escritura pasa por aquí para mantener el conjunto de celdas vacías
+    private void set(int i, int value) {
+        int old = cells[i];
+        cells[i] = value;
+        if (old == EMPTY && value != EMPTY) {
+            removeFree(i);
+        } else if (old != EMPTY && value == EMPTY) {
+            addFree(i);
+        }
+    }
+
+    private void addFree(int i) {
+        freePos[i] = freeCount;
+        freeCells[freeCount++] = i;
+    }
+
+    // Borrado por intercambio: la última celda libre ocupa el lugar de la quitada
+    private void removeFree(int i) {
+        int pos = freePos[i];
+        int last = freeCells[--freeCount];
+        freeCells[pos] = last;
+        freePos[last] = pos;
+        freePos[i] = -1;
+    }
+
+    private void rebuildFree() {
+        freeCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == EMPTY) {
+                addFree(i);
+            } else {
+                freePos[i] = -1;
+            }
+        }
+    }
+
+    public boolean isSnake(int value) {
+        return value > 0;
+    }
+
+    public static boolean isFood(int value) {
+        return value <= FOOD;
+    }
+    public static int foodValue(int slot) {
+        return FOOD - slot;
+    }
+    public static int foodSlot(int value) {
+        return FOOD - value;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+    public int getHeight() {
+        return height;
+    }
+}
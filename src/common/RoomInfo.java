@@ -0,0 +1,56 @@
+package common;
+
+// Resumen de una sala para la lista de salas del cliente
+public class RoomInfo {
+    private final int id;
+    private final String name;
+    private final int players;
+    private final int maxPlayers;
+    private final int width;
+    private final int height;
+    private final boolean gameRunning;
+    private final boolean lockstep;
+
+    public RoomInfo(int id, String name, int players, int maxPlayers, int width, int height, boolean gameRunning,
+                    boolean lockstep) {
+        this.id = id;
+        this.name = name;
+        this.players = players;
+        this.maxPlayers = maxPlayers;
+        this.width = width;
+        this.height = height;
+        this.gameRunning = gameRunning;
+        this.lockstep = lockstep;
+    }
+
+    public int getId() {
+        return id;
+    }
+    public String getName() {
+        return name;
+    }
+    public int getPlayers() {
+        return players;
+    }
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+    public int getWidth() {
+        return width;
+    }
+    public int getHeight() {
+        return height;
+    }
+    public boolean isGameRunning() {
+        return gameRunning;
+    }
+    public boolean isLockstep() {
+        return lockstep;
+    }
+
+    @Override
+    public String toString() {
+        return "Sala " + id + " - " + name + " " + width + "x" + height + " (" + players + "/" + maxPlayers + ")"
+                + (lockstep ? " lockstep" : "") + (gameRunning ? " en juego" : "");
+    }
+}
@@ -0,0 +1,60 @@
+package common;
+
+// Configuración de una sala nueva: nombre, tamaño del tablero, cupo de jugadores y modo lockstep
+public class RoomSettings {
+    public static final int DEFAULT_WIDTH = 40;
+    public static final int DEFAULT_HEIGHT = 30;
+    public static final int DEFAULT_MAX_PLAYERS = 4;
+    // Límites del modo mundo grande
+    public static final int MIN_SIDE = 20;
+    public static final int MAX_SIDE = 2048;
+    public static final int MAX_PLAYERS_LIMIT = 1024;
+    public static final int MAX_NAME_LENGTH = 32;
+
+    private final String name;
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    // El servidor solo reenvía las entradas de cada tick y cada cliente simula la partida (tableros de una vista)
+    private final boolean lockstep;
+
+    public RoomSettings(String name) {
+        this(name, DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_MAX_PLAYERS);
+    }
+
+    public RoomSettings(String name, int width, int height, int maxPlayers) {
+        this(name, width, height, maxPlayers, false);
+    }
+
+    public RoomSettings(String name, int width, int height, int maxPlayers, boolean lockstep) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.maxPlayers = maxPlayers;
+        this.lockstep = lockstep;
+    }
+
+    // Copia con los valores dentro de los límites
+    public RoomSettings clamped() {
+        return new RoomSettings(name,
+                Math.max(MIN_SIDE, Math.min(MAX_SIDE, width)),
+                Math.max(MIN_SIDE, Math.min(MAX_SIDE, height)),
+                Math.max(1, Math.min(MAX_PLAYERS_LIMIT, maxPlayers)), lockstep);
+    }
+
+    public String getName() {
+        return name;
+    }
+    public int getWidth() {
+        return width;
+    }
+    public int getHeight() {
+        return height;
+    }
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+    public boolean isLockstep() {
+        return lockstep;
+    }
+}
@@ -0,0 +1,739 @@
+package common;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+// Simulación de una partida: serpientes, comidas con sus vencimientos y giros guardados de cada jugador
+// Es determinista: con el mismo estado y los mismos TickInputs da el mismo resultado en cualquier máquina,
+// así que la usan el motor del servidor, las grabaciones y los clientes de las salas lockstep
+// Lo que sale al azar (dónde aparece la comida, dónde nace una serpiente) lo decide solo el servidor
+// y viaja en los TickInputs o en el estado completo (keyframe)
+public final class Simulation {
+    public static final int HASH_INTERVAL = 20;        // ticks entre hashes de estado en las salas lockstep
+    private static final int FOOD_WHEEL_SLOTS = 256;   // mayor que el TTL: cada ranura vence entera
+    private static final int CELLS_PER_FOOD = 400;     // en tableros grandes el tope de comida crece con el área
+    private static final int MAX_FOODS_LIMIT = 65535;  // lo que entra en el protocolo
+    public static final int TURN_BUFFER = 2;           // giros guardados por jugador (dos teclas rápidas)
+    private static final int SPAWN_SEARCH_RADIUS = 16; // distancia máxima para correr un punto de inicio bloqueado
+    private static final Color[] BASE_COLORS = {Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW};
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+    private static final Food.FoodType[] FOOD_TYPES = Food.FoodType.values();
+    private static final GameState.Difficulty[] DIFFICULTIES = GameState.Difficulty.values();
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    private final GameState gameState;
+    private final OccupancyGrid grid;
+    private final Random random = new Random();
+    // Comidas por lugar (la rejilla guarda el lugar en la celda) y sus vencimientos
+    private final Food[] foodSlots;
+    private final int[] foodCell;    // lugar -> celda
+    private final int[] listIndex;   // lugar -> posición en gameState.getFoods()
+    private final int[] listSlot;    // posición en la lista -> lugar
+    private final int[] freeSlots;
+    private int freeSlotCount;
+    private final TimingWheel foodExpiry;
+    private final int maxFoods;
+    private final int foodTtlTicks;
+    private final Snake.Direction[][] turns;
+    private final int[][] turnSeqs;   // secuencia de la última entrada que cubre cada giro guardado
+    private final int[] turnCount;
+    private final int[] inputSeqs;    // última entrada confirmada por jugador (se manda en su serpiente)
+    private int tick;
+    private int aliveSnakes;
+    private ByteBuffer hashBuffer;
+
+    // maxFoods es el tope pedido: en tableros grandes se agranda con el área
+    public Simulation(int width, int height, int maxPlayers, int maxFoods, int foodTtlTicks) {
+        this.width = width;
+        this.height = height;
+        this.maxPlayers = maxPlayers;
+        this.maxFoods = Math.min(MAX_FOODS_LIMIT, Math.max(Math.max(1, maxFoods), width * height / CELLS_PER_FOOD));
+        this.foodTtlTicks = Math.max(1, foodTtlTicks);
+        gameState = new GameState(width, height);
+        grid = new OccupancyGrid(width, height);
+        foodSlots = new Food[this.maxFoods];
+        foodCell = new int[this.maxFoods];
+        listIndex = new int[this.maxFoods];
+        listSlot = new int[this.maxFoods];
+        freeSlots = new int[this.maxFoods];
+        for (int slot = this.maxFoods - 1; slot >= 0; slot--) {
+            freeSlots[freeSlotCount++] = slot;
+        }
+        foodExpiry = new TimingWheel(FOOD_WHEEL_SLOTS, this.maxFoods);
+        turns = new Snake.Direction[maxPlayers][TURN_BUFFER];
+        turnSeqs = new int[maxPlayers][TURN_BUFFER];
+        turnCount = new int[maxPlayers];
+        inputSeqs = new int[maxPlayers];
+        initializeBoard();
+    }
+
+    // Semilla de lo que decide el servidor en esta partida
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    private void initializeBoard() {
+        // Marcar las paredes segun la dificultad actual
+        boolean walls = gameState.getDifficulty() != GameState.Difficulty.EASY;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid.setWall(x, y, walls && isWall(x, y));
+            }
+        }
+    }
+
+    // Un tick entero con lo que trae inputs (grabaciones y clientes lockstep); el servidor hace los mismos
+    // pasos por separado porque decide las comidas y las entradas en el momento
+    public void step(TickInputs inputs) {
+        for (int i = 0; i < inputs.getEventCount(); i++) {
+            if (inputs.getEventKind(i) == TickInputs.REMOVE) {
+                removePlayer(inputs.getEventValue(i));
+            } else if (inputs.getEventKind(i) == TickInputs.DIFFICULTY) {
+                setDifficulty(DIFFICULTIES[inputs.getEventValue(i)]);
+            }
+        }
+        expireFoods();
+        for (int i = 0; i < inputs.getInputCount(); i++) {
+            applyInput(inputs.getInputPlayer(i), inputs.getInputDirection(i), inputs.getInputSeq(i));
+        }
+        applyTurns();
+        update(inputs.getPlayers());
+        for (int i = 0; i < inputs.getSpawnCount(); i++) {
+            placeFood(inputs.getSpawnCell(i), inputs.getSpawnType(i));
+        }
+        endTick();
+    }
+
+    // Vencer las comidas de este tick: solo se mira una ranura de la rueda
+    public void expireFoods() {
+        foodExpiry.advance(this::expireFood);
+    }
+
+    public void endTick() {
+        tick++;
+        gameState.setTick(tick);
+    }
+
+    // Mueve las serpientes vivas; devuelve true si la partida terminó en este tick
+    // players: jugadores en la sala (con uno solo la partida sigue hasta que muere)
+    public boolean update(int players) {
+        Snake[] snakes = gameState.getSnakes();
+        if (snakes == null) {
+            return false;
+        }
+        // Mover todas las serpientes
+        for (Snake snake : snakes) {
+            if (snake != null && snake.isAlive()) {
+                snake.move();
+                // Verificar colisiones
+                if (checkCollisions(snake)) {
+                    snake.setAlive(false);
+                    continue;
+                }
+                // Verificar si come alguna fruta (solo se busca si la celda tiene comida)
+                Point head = snake.getHead();
+                Food eatenFood = null;
+                int cell = grid.get(head.x, head.y);
+                if (OccupancyGrid.isFood(cell)) {
+                    eatenFood = removeFood(OccupancyGrid.foodSlot(cell));
+                }
+                grid.occupy(head.x, head.y, snake.getPlayerId());
+
+                if (eatenFood != null) {
+                    snake.grow(eatenFood);
+                } else {
+                    int tail = snake.getSegments().tail();
+                    if (snake.removeTail()) {
+                        grid.releaseIfOwner(SnakeBody.unpackX(tail), SnakeBody.unpackY(tail), snake.getPlayerId());
+                    }
+                }
+            }
+        }
+
+        // Verificar si el juego debe acabar
+        int alivePlayers = 0;
+        for (Snake snake : snakes) {
+            if (snake != null && snake.isAlive()) {
+                alivePlayers++;
+            }
+        }
+        aliveSnakes = alivePlayers;
+
+        // Solo terminar si no hay jugadores vivos, o si solo queda 1 vivo (para mas de un jugador)
+        if (gameState.isGameRunning() && (alivePlayers == 0 || (alivePlayers == 1 && players > 1))) {
+            gameState.setGameRunning(false);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean checkCollisions(Snake snake) {
+        Point head = snake.getHead();
+        // Choque con bordes
+        if (head.x < 0 || head.x >= width ||
+            head.y < 0 || head.y >= height) {
+            return true;
+        }
+        int cell = grid.get(head.x, head.y);
+        // Choque con paredes
+        if (cell == OccupancyGrid.WALL) {
+            return true;
+        }
+        // Choque consigo mismo o con otras serpientes vivas
+        if (grid.isSnake(cell)) {
+            Snake owner = getSnake(cell);
+            return owner == snake || (owner != null && owner.isAlive());
+        }
+        return false;
+    }
+
+    public Snake getSnake(int playerId) {
+        Snake[] snakes = gameState.getSnakes();
+        if (snakes != null && playerId > 0 && playerId <= snakes.length) {
+            return snakes[playerId - 1];
+        }
+        return null;
+    }
+
+    private boolean isWall(int x, int y) {
+        // Pared que sale del borde arriba
+        boolean topWall = (x == width/2 && y >= 0 && y <= 8);
+        // Pared que sale del borde abajo
+        boolean bottomWall = (x == width/2 && y >= height-9 && y < height);
+        // Pared que sale del borde izquierdo
+        boolean leftWall = (y == height/2 && x >= 0 && x <= 10);
+        // Pared que sale del borde derecho
+        boolean rightWall = (y == height/2 && x >= width-11 && x < width);
+        // Obstáculo central
+        boolean centerBlock = (x >= width/2-1 && x <= width/2+1 && y >= height/2-1 && y <= height/2+1);
+
+        return topWall || bottomWall || leftWall || rightWall || centerBlock;
+    }
+
+    // Comida nueva en una celda libre al azar; se anota en spawns (puede ser null) para repetirla en otro lado
+    public void generateFood(TickInputs spawns) {
+        if (freeSlotCount == 0) {
+            return;
+        }
+        // Una celda libre no tiene serpiente, comida ni pared; se elige de una sola vez
+        int cell = grid.randomFreeCell(random);
+        if (cell < 0) {
+            return; // tablero lleno
+        }
+        // Generar puntaje de comida random
+        Food.FoodType foodType;
+        int randomValue = random.nextInt(100);
+        if (randomValue < 60) {
+            foodType = Food.FoodType.SMALL;
+        } else if (randomValue < 90) {
+            foodType = Food.FoodType.MEDIUM;
+        } else {
+            foodType = Food.FoodType.LARGE;
+        }
+        if (spawns != null) {
+            spawns.addSpawn(cell, foodType);
+        }
+        placeFood(cell, foodType);
+    }
+
+    // Pone la comida en la celda con el primer lugar libre
+    public void placeFood(int cell, Food.FoodType foodType) {
+        Food newFood = new Food(grid.xOf(cell), grid.yOf(cell), foodType);
+        int slot = freeSlots[--freeSlotCount];
+        List<Food> foods = gameState.getFoods();
+        foodSlots[slot] = newFood;
+        foodCell[slot] = cell;
+        listIndex[slot] = foods.size();
+        listSlot[foods.size()] = slot;
+        foods.add(newFood); // Agregar a la lista en lugar de reemplazar
+        foodExpiry.schedule(slot, foodTtlTicks);
+        grid.occupy(newFood.getX(), newFood.getY(), OccupancyGrid.foodValue(slot));
+    }
+
+    // Saca la comida del lugar (sin tocar la rejilla); devuelve la comida o null
+    // En la lista la última comida ocupa el hueco, así quitar es O(1)
+    private Food removeFood(int slot) {
+        Food food = foodSlots[slot];
+        if (food == null) {
+            return null;
+        }
+        foodSlots[slot] = null;
+        foodExpiry.cancel(slot);
+        List<Food> foods = gameState.getFoods();
+        int index = listIndex[slot];
+        int last = foods.size() - 1;
+        if (index != last) {
+            int movedSlot = listSlot[last];
+            foods.set(index, foods.get(last));
+            listSlot[index] = movedSlot;
+            listIndex[movedSlot] = index;
+        }
+        foods.remove(last);
+        freeSlots[freeSlotCount++] = slot;
+        return food;
+    }
+
+    public void expireFood(int slot) {
+        int cell = foodCell[slot];
+        if (removeFood(slot) != null) {
+            grid.release(grid.xOf(cell), grid.yOf(cell));
+        }
+    }
+
+    // Guarda la entrada de una serpiente viva; devuelve false si no había a quién aplicarla
+    public boolean applyInput(int playerId, Snake.Direction direction, int seq) {
+        Snake snake = getSnake(playerId);
+        if (snake == null || !snake.isAlive()) {
+            return false;
+        }
+        bufferTurn(playerId - 1, snake, direction, seq);
+        return true;
+    }
+
+    // Aplica un giro guardado por serpiente
+    public void applyTurns() {
+        Snake[] snakes = gameState.getSnakes();
+        if (snakes == null) {
+            return;
+        }
+        for (int i = 0; i < turnCount.length && i < snakes.length; i++) {
+            if (turnCount[i] > 0) {
+                Snake.Direction next = turns[i][0];
+                inputSeqs[i] = turnSeqs[i][0];
+                System.arraycopy(turns[i], 1, turns[i], 0, TURN_BUFFER - 1);
+                System.arraycopy(turnSeqs[i], 1, turnSeqs[i], 0, TURN_BUFFER - 1);
+                turnCount[i]--;
+                if (snakes[i] != null && snakes[i].isAlive()) {
+                    snakes[i].setDirection(next);
+                }
+            }
+            if (snakes[i] != null) {
+                snakes[i].setInputSeq(inputSeqs[i]);
+            }
+        }
+    }
+
+    // Una entrada que no cambia nada se confirma junto con el giro anterior (o enseguida si no hay giros esperando)
+    private void bufferTurn(int slot, Snake snake, Snake.Direction direction, int seq) {
+        int at = queueTurn(turns[slot], turnCount[slot], snake.getDirection(), direction);
+        if (at < 0) {
+            skipInput(slot, seq);
+            return;
+        }
+        turnSeqs[slot][at] = seq;
+        if (at == turnCount[slot]) {
+            turnCount[slot]++;
+        }
+    }
+
+    // Guarda el giro en turns (count ocupados) si es válido respecto al último guardado (o a la dirección actual);
+    // con el buffer lleno el último giro reemplaza al que estaba al final
+    // Devuelve la posición de la entrada (count = se agregó) o -1 si no cambia nada; la usa también la predicción del cliente
+    public static int queueTurn(Snake.Direction[] turns, int count, Snake.Direction current, Snake.Direction direction) {
+        Snake.Direction last = count > 0 ? turns[count - 1] : current;
+        if (direction == last || isOpposite(direction, last)) {
+            return -1;
+        }
+        if (count == turns.length) {
+            Snake.Direction before = count > 1 ? turns[count - 2] : current;
+            if (direction != before && !isOpposite(direction, before)) {
+                turns[count - 1] = direction;
+            }
+            return count - 1;
+        }
+        turns[count] = direction;
+        return count;
+    }
+
+    private void skipInput(int slot, int seq) {
+        if (turnCount[slot] > 0) {
+            turnSeqs[slot][turnCount[slot] - 1] = seq;
+        } else {
+            inputSeqs[slot] = seq;
+        }
+    }
+
+    private static boolean isOpposite(Snake.Direction a, Snake.Direction b) {
+        return a.getDx() == -b.getDx() && a.getDy() == -b.getDy();
+    }
+
+    // Saca la serpiente del jugador y libera sus celdas; repetirlo no cambia nada
+    public void removePlayer(int playerId) {
+        Snake[] snakes = gameState.getSnakes();
+        if (snakes != null && playerId > 0 && playerId <= snakes.length) {
+            Snake snake = snakes[playerId - 1];
+            if (snake != null) {
+                // Liberar las celdas que ocupaba la serpiente
+                SnakeBody body = snake.getSegments();
+                for (int i = 0; i < body.size(); i++) {
+                    int x = body.getX(i);
+                    int y = body.getY(i);
+                    if (grid.isInside(x, y)) {
+                        grid.releaseIfOwner(x, y, playerId);
+                    }
+                }
+            }
+            snakes[playerId - 1] = null;
+        }
+        if (playerId > 0 && playerId <= maxPlayers) {
+            turnCount[playerId - 1] = 0;
+            // El lugar lo puede ocupar otro cliente con su propia secuencia
+            inputSeqs[playerId - 1] = 0;
+        }
+    }
+
+    public void setDifficulty(GameState.Difficulty difficulty) {
+        gameState.setDifficulty(difficulty);
+        initializeBoard();
+    }
+
+    // Tablero de una partida nueva con las serpientes de estos jugadores, cada una en su lugar
+    public void resetBoard(int[] playerIds) {
+        Snake[] snakes = new Snake[maxPlayers];
+        grid.clear();
+        for (int id : playerIds) {
+            if (id < 1 || id > maxPlayers) {
+                continue;
+            }
+            Point startPos = getStartPosition(id - 1);
+            if (startPos == null) {
+                continue; // no quedó lugar para este jugador
+            }
+            snakes[id - 1] = new Snake(id, startPos, colorFor(id));
+            snakes[id - 1].setInputSeq(inputSeqs[id - 1]);
+            SnakeBody body = snakes[id - 1].getSegments();
+            for (int j = 0; j < body.size(); j++) {
+                grid.occupy(body.getX(j), body.getY(j), id);
+            }
+        }
+        gameState.setSnakes(snakes);
+        int alive = 0;
+        for (Snake snake : snakes) {
+            if (snake != null) {
+                alive++;
+            }
+        }
+        aliveSnakes = alive;
+        // Los giros de la partida anterior no cuentan
+        Arrays.fill(turnCount, 0);
+        // Conservar las frutas que no quedaron debajo de una serpiente
+        for (int slot = 0; slot < foodSlots.length; slot++) {
+            Food food = foodSlots[slot];
+            if (food == null) {
+                continue;
+            }
+            if (grid.get(food.getX(), food.getY()) != OccupancyGrid.EMPTY) {
+                removeFood(slot);
+            } else {
+                grid.occupy(food.getX(), food.getY(), OccupancyGrid.foodValue(slot));
+            }
+        }
+    }
+
+    // Puntos de inicio en una cuadrícula pareja para el cupo de la sala (columnas según la forma del tablero);
+    // si el punto está bloqueado se busca el libre más cercano
+    private Point getStartPosition(int playerIndex) {
+        int cols = (int) Math.max(1, Math.min(maxPlayers, Math.round(Math.sqrt(maxPlayers * (double) width / height))));
+        int rows = (maxPlayers + cols - 1) / cols;
+        int col = playerIndex % cols;
+        int row = playerIndex / cols;
+        int startX = (2 * col + 1) * width / (2 * cols);
+        int startY = (2 * row + 1) * height / (2 * rows);
+        for (int radius = 0; radius <= SPAWN_SEARCH_RADIUS; radius++) {
+            for (int dy = -radius; dy <= radius; dy++) {
+                for (int dx = -radius; dx <= radius; dx++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dy)) == radius && canSpawnAt(startX + dx, startY + dy)) {
+                        return new Point(startX + dx, startY + dy);
+                    }
+                }
+            }
+        }
+        // Tablero muy lleno: probar celdas libres al azar
+        for (int attempt = 0; attempt < 64; attempt++) {
+            int cell = grid.randomFreeCell(random);
+            if (cell < 0) {
+                break;
+            }
+            if (canSpawnAt(grid.xOf(cell), grid.yOf(cell))) {
+                return new Point(grid.xOf(cell), grid.yOf(cell));
+            }
+        }
+        return null;
+    }
+
+    // La serpiente nace mirando a la derecha: cabeza, dos segmentos a la izquierda y la celda de adelante libres
+    private boolean canSpawnAt(int x, int y) {
+        if (x - 2 < 0 || x + 1 >= width || y < 0 || y >= height) {
+            return false;
+        }
+        for (int dx = -2; dx <= 1; dx++) {
+            if (grid.get(x + dx, y) != OccupancyGrid.EMPTY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Los cuatro primeros jugadores conservan sus colores; el resto se reparte por el círculo de tonos
+    private static Color colorFor(int playerId) {
+        if (playerId <= BASE_COLORS.length) {
+            return BASE_COLORS[playerId - 1];
+        }
+        float hue = (float) ((playerId * 0.6180339887) % 1.0);
+        return Color.getHSBColor(hue, 0.75f, 0.95f);
+    }
+
+    // Estado completo de la simulación: lo que no sale de la dificultad (paredes) ni de la grilla,
+    // que se rearma con los cuerpos y las comidas
+    // [int tick][byte dificultad][byte corriendo]
+    // serpientes: [short n] por cada una [short lugar][int color][byte viva][byte dirección][byte próxima]
+    //             [int puntaje][int entrada][int crecimiento pendiente][cuerpo (BodyChain)]
+    // giros: [short n] por jugador con giros o entradas [short lugar][int entrada][byte n] y n veces [byte dirección][int entrada]
+    // comidas en el orden de la lista: [short n] [short lugar][int celda][byte tipo][int ticks de vida]
+    // orden de vencimiento (rueda): [short n][short lugar]; lugares libres (pila): [short n][short lugar]
+    public int keyframeSize() {
+        int size = 4 + 1 + 1 + 2;
+        Snake[] snakes = gameState.getSnakes();
+        if (snakes != null) {
+            for (Snake snake : snakes) {
+                if (snake != null) {
+                    size += 2 + 4 + 1 + 1 + 1 + 4 + 4 + 4 + BodyChain.encodedSize(snake.getSegments());
+                }
+            }
+        }
+        size += 2;
+        for (int i = 0; i < maxPlayers; i++) {
+            if (turnCount[i] > 0 || inputSeqs[i] != 0) {
+                size += 2 + 4 + 1 + turnCount[i] * 5;
+            }
+        }
+        int foods = gameState.getFoods().size();
+        return size + 2 + foods * 11 + 2 + foods * 2 + 2 + freeSlotCount * 2;
+    }
+
+    public void writeKeyframe(ByteBuffer out) {
+        out.putInt(tick);
+        out.put((byte) gameState.getDifficulty().ordinal());
+        out.put((byte) (gameState.isGameRunning() ? 1 : 0));
+        Snake[] snakes = gameState.getSnakes();
+        int present = 0;
+        int slots = snakes == null ? 0 : snakes.length;
+        for (int i = 0; i < slots; i++) {
+            if (snakes[i] != null) {
+                present++;
+            }
+        }
+        out.putShort((short) present);
+        for (int i = 0; i < slots; i++) {
+            Snake snake = snakes[i];
+            if (snake != null) {
+                out.putShort((short) i);
+                out.putInt(snake.getColor().getRGB());
+                out.put((byte) (snake.isAlive() ? 1 : 0));
+                out.put((byte) snake.getDirection().ordinal());
+                out.put((byte) snake.getNextDirection().ordinal());
+                out.putInt(snake.getScore());
+                out.putInt(snake.getInputSeq());
+                out.putInt(snake.getPendingGrowth());
+                BodyChain.write(out, snake.getSegments());
+            }
+        }
+        int turnSlots = 0;
+        for (int i = 0; i < maxPlayers; i++) {
+            if (turnCount[i] > 0 || inputSeqs[i] != 0) {
+                turnSlots++;
+            }
+        }
+        out.putShort((short) turnSlots);
+        for (int i = 0; i < maxPlayers; i++) {
+            if (turnCount[i] > 0 || inputSeqs[i] != 0) {
+                out.putShort((short) i);
+                out.putInt(inputSeqs[i]);
+                out.put((byte) turnCount[i]);
+                for (int j = 0; j < turnCount[i]; j++) {
+                    out.put((byte) turns[i][j].ordinal());
+                    out.putInt(turnSeqs[i][j]);
+                }
+            }
+        }
+        List<Food> foods = gameState.getFoods();
+        out.putShort((short) foods.size());
+        for (int i = 0; i < foods.size(); i++) {
+            int slot = listSlot[i];
+            out.putShort((short) slot);
+            out.putInt(foodCell[slot]);
+            out.put((byte) foodSlots[slot].getType().ordinal());
+            out.putInt(foodExpiry.remaining(slot));
+        }
+        out.putShort((short) foods.size());
+        foodExpiry.forEachScheduled(slot -> out.putShort((short) slot));
+        out.putShort((short) freeSlotCount);
+        for (int i = 0; i < freeSlotCount; i++) {
+            out.putShort((short) freeSlots[i]);
+        }
+    }
+
+    // Deja la simulación en el estado de un keyframe; la grilla se rearma con las serpientes muertas primero
+    // (su cabeza no llegó a ocupar la celda donde chocó) y las vivas encima, como quedan en el juego
+    public void restoreKeyframe(ByteBuffer in) throws ProtocolException {
+        tick = in.getInt();
+        gameState.setTick(tick);
+        gameState.setDifficulty(DIFFICULTIES[in.get()]);
+        gameState.setGameRunning(in.get() != 0);
+        initializeBoard();
+        grid.clear();
+        Snake[] snakes = new Snake[maxPlayers];
+        int present = in.getShort() & 0xFFFF;
+        for (int n = 0; n < present; n++) {
+            int slot = in.getShort() & 0xFFFF;
+            if (slot >= maxPlayers) {
+                throw new ProtocolException("Lugar de serpiente inválido: " + slot);
+            }
+            Color color = new Color(in.getInt(), true);
+            boolean alive = in.get() != 0;
+            Snake.Direction direction = DIRECTIONS[in.get()];
+            Snake.Direction next = DIRECTIONS[in.get()];
+            int score = in.getInt();
+            int inputSeq = in.getInt();
+            int pendingGrowth = in.getInt();
+            Snake snake = new Snake(slot + 1, color, BodyChain.read(in), direction);
+            snake.setDirection(next);
+            snake.setAlive(alive);
+            snake.setScore(score);
+            snake.setInputSeq(inputSeq);
+            snake.setPendingGrowth(pendingGrowth);
+            snakes[slot] = snake;
+        }
+        int alive = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (Snake snake : snakes) {
+                if (snake == null || snake.isAlive() != (pass == 1)) {
+                    continue;
+                }
+                alive += pass;
+                SnakeBody body = snake.getSegments();
+                for (int j = snake.isAlive() ? 0 : 1; j < body.size(); j++) {
+                    if (grid.isInside(body.getX(j), body.getY(j))) {
+                        grid.occupy(body.getX(j), body.getY(j), snake.getPlayerId());
+                    }
+                }
+            }
+        }
+        gameState.setSnakes(snakes);
+        aliveSnakes = alive;
+        Arrays.fill(turnCount, 0);
+        Arrays.fill(inputSeqs, 0);
+        int turnSlots = in.getShort() & 0xFFFF;
+        for (int n = 0; n < turnSlots; n++) {
+            int slot = in.getShort() & 0xFFFF;
+            if (slot >= maxPlayers) {
+                throw new ProtocolException("Lugar de jugador inválido: " + slot);
+            }
+            inputSeqs[slot] = in.getInt();
+            turnCount[slot] = in.get();
+            if (turnCount[slot] < 0 || turnCount[slot] > TURN_BUFFER) {
+                throw new ProtocolException("Giros inválidos: " + turnCount[slot]);
+            }
+            for (int j = 0; j < turnCount[slot]; j++) {
+                turns[slot][j] = DIRECTIONS[in.get()];
+                turnSeqs[slot][j] = in.getInt();
+            }
+        }
+        Arrays.fill(foodSlots, null);
+        foodExpiry.clear();
+        List<Food> foods = gameState.getFoods();
+        foods.clear();
+        int[] remaining = new int[maxFoods];
+        int foodCount = in.getShort() & 0xFFFF;
+        for (int i = 0; i < foodCount; i++) {
+            int slot = in.getShort() & 0xFFFF;
+            int cell = in.getInt();
+            if (slot >= maxFoods || cell < 0 || cell >= width * height) {
+                throw new ProtocolException("Comida inválida: " + slot);
+            }
+            Food food = new Food(grid.xOf(cell), grid.yOf(cell), FOOD_TYPES[in.get()]);
+            remaining[slot] = in.getInt();
+            foodSlots[slot] = food;
+            foodCell[slot] = cell;
+            listIndex[slot] = i;
+            listSlot[i] = slot;
+            foods.add(food);
+            grid.occupy(food.getX(), food.getY(), OccupancyGrid.foodValue(slot));
+        }
+        // Agendadas al revés del recorrido de la rueda: cada ranura queda en el mismo orden y vence igual
+        int[] expiryOrder = new int[in.getShort() & 0xFFFF];
+        for (int i = 0; i < expiryOrder.length; i++) {
+            expiryOrder[i] = in.getShort() & 0xFFFF;
+        }
+        for (int i = expiryOrder.length - 1; i >= 0; i--) {
+            int slot = expiryOrder[i];
+            if (slot >= maxFoods || foodSlots[slot] == null) {
+                throw new ProtocolException("Vencimiento inválido: " + slot);
+            }
+            foodExpiry.schedule(slot, remaining[slot]);
+        }
+        freeSlotCount = in.getShort() & 0xFFFF;
+        if (freeSlotCount + foodCount != maxFoods) {
+            throw new ProtocolException("Lugares de comida inconsistentes");
+        }
+        for (int i = 0; i < freeSlotCount; i++) {
+            freeSlots[i] = in.getShort() & 0xFFFF;
+        }
+    }
+
+    // Hash del estado completo (CRC32 del keyframe): dos simulaciones con el mismo hash en el mismo tick coinciden
+    public int stateHash() {
+        int size = keyframeSize();
+        if (hashBuffer == null || hashBuffer.capacity() < size) {
+            hashBuffer = ByteBuffer.allocate(Math.max(size, 1024));
+        }
+        hashBuffer.clear();
+        writeKeyframe(hashBuffer);
+        CRC32 crc = new CRC32();
+        crc.update(hashBuffer.array(), 0, hashBuffer.position());
+        return (int) crc.getValue();
+    }
+
+    public GameState getGameState() {
+        return gameState;
+    }
+    public OccupancyGrid getGrid() {
+        return grid;
+    }
+    // Comida en el lugar que guarda la grilla (null si el lugar está libre)
+    public Food getFood(int slot) {
+        return foodSlots[slot];
+    }
+    public int getTick() {
+        return tick;
+    }
+    public void setTick(int tick) {
+        this.tick = tick;
+        gameState.setTick(tick);
+    }
+    public int getAliveSnakes() {
+        return aliveSnakes;
+    }
+    public int getWidth() {
+        return width;
+    }
+    public int getHeight() {
+        return height;
+    }
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+    public int getMaxFoods() {
+        return maxFoods;
+    }
+    public int getFoodTtlTicks() {
+        return foodTtlTicks;
+    }
+}
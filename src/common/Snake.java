@@ -3,7 +3,6 @@ package common;
 import java.io.Serializable;
 import java.awt.Point;
 import java.awt.Color;
-import java.util.ArrayList;
 import java.util.List;
 
 // Clase representa una serpiente
@@ -28,22 +27,24 @@ public class Snake implements Serializable {
         }
     }
     
-    private List<Point> body;
+    private SnakeBody body;
+    private int pendingGrowth; // segmentos que faltan crecer
     private Direction direction;
     private Direction nextDirection;
     private Color color;
     private int playerId;
     private boolean alive;
     private int score;
+    private int inputSeq; // última entrada del jugador que el servidor ya tuvo en cuenta (predicción del cliente)
     
     public Snake(int playerId, Point startPosition, Color color) {
         this.playerId = playerId;
-        this.body = new ArrayList<>();
+        this.body = new SnakeBody();
         // Comienza serpiente con tamaño 3 hacia la izquierda
         // Cabeza en startPosition, cuerpo se exitende hacia la izquierda
-        this.body.add(new Point(startPosition.x, startPosition.y));     // Cabeza
-        this.body.add(new Point(startPosition.x - 1, startPosition.y)); // Cuerpo
-        this.body.add(new Point(startPosition.x - 2, startPosition.y)); // Cuerpo        
+        this.body.pushTail(startPosition.x, startPosition.y);     // Cabeza
+        this.body.pushTail(startPosition.x - 1, startPosition.y); // Cuerpo
+        this.body.pushTail(startPosition.x - 2, startPosition.y); // Cuerpo        
         this.direction = Direction.RIGHT;
         this.nextDirection = Direction.RIGHT;
         this.color = color;
@@ -51,6 +52,30 @@ public class Snake implements Serializable {
         this.score = 0;
     }
     
+    // Serpiente armada a partir de un cuerpo ya existente (al decodificar)
+    public Snake(int playerId, Color color, SnakeBody body, Direction direction) {
+        this.playerId = playerId;
+        this.body = body;
+        this.direction = direction;
+        this.nextDirection = direction;
+        this.color = color;
+        this.alive = true;
+        this.score = 0;
+    }
+    
+    // Copia independiente de otra serpiente
+    public Snake(Snake other) {
+        this.playerId = other.playerId;
+        this.body = new SnakeBody(other.body);
+        this.pendingGrowth = other.pendingGrowth;
+        this.direction = other.direction;
+        this.nextDirection = other.nextDirection;
+        this.color = other.color;
+        this.alive = other.alive;
+        this.score = other.score;
+        this.inputSeq = other.inputSeq;
+    }
+    
     // Movimiento hacia donde ve la serpiente
     public void move() {
         if (!alive) return;        
@@ -59,13 +84,10 @@ public class Snake implements Serializable {
             direction = nextDirection;
         }        
         // Calcular nueva posición de la cabeza
-        Point head = body.get(0);
-        Point newHead = new Point(
-            head.x + direction.getDx(),
-            head.y + direction.getDy()
-        );        
+        int head = body.head();
         // Agregar nueva cabeza
-        body.add(0, newHead);
+        body.pushHead(SnakeBody.unpackX(head) + direction.getDx(),
+                      SnakeBody.unpackY(head) + direction.getDy());
     }
     
     // Crecimiento de la serpiente
@@ -79,21 +101,22 @@ public class Snake implements Serializable {
         // Aumentamos el score según el tipo de comida
         score += food.getPoints();
         
-        // Crecemos segmentos adicionales si es necesario
-        for (int i = 1; i < food.getGrowth(); i++) {
-            // Duplicamos el último segmento para hacer crecer la serpiente
-            if (!body.isEmpty()) {
-                Point lastSegment = body.get(body.size() - 1);
-                body.add(new Point(lastSegment.x, lastSegment.y));
-            }
-        }
+        // Este tick ya crece 1 (no se quita la cola), el resto queda pendiente
+        pendingGrowth += food.getGrowth() - 1;
     }
     
-    // Quita la cola de la serpiente
-    public void removeTail() {
+    // Quita la cola de la serpiente, salvo que tenga crecimiento pendiente
+    // Devuelve true si la cola realmente se quitó
+    public boolean removeTail() {
+        if (pendingGrowth > 0) {
+            pendingGrowth--;
+            return false;
+        }
         if (body.size() > 1) {
-            body.remove(body.size() - 1);
+            body.popTail();
+            return true;
         }
+        return false;
     }
     
     // Verificación de movimiento
@@ -110,39 +133,50 @@ public class Snake implements Serializable {
     
     // Verificación si la serpiente choca consigo misma
     public boolean checkSelfCollision() {
-        Point head = body.get(0);
         // Empezar desde el índice 1 para verificar colisión de cabeza con cuerpo
-        for (int i = 1; i < body.size(); i++) {
-            if (head.equals(body.get(i))) {
-                return true;
-            }
-        }
-        return false;
+        return body.contains(body.head(), 1);
     }
     
     // Verificación si la serpiente chocha con otra
     public boolean checkCollisionWith(Snake other) {
-        Point head = body.get(0);
-        for (Point segment : other.body) {
-            if (head.equals(segment)) {
-                return true;
-            }
-        }
-        return false;
+        return other.body.contains(body.head(), 0);
     }
     
+    // Vista de solo lectura del cuerpo
     public List<Point> getBody(){
+        return body.asList();
+    }
+    public SnakeBody getSegments(){
         return body;
     }
     public Point getHead(){
-        return body.isEmpty() ? null : body.get(0);
+        if (body.isEmpty()) {
+            return null;
+        }
+        int head = body.head();
+        return new Point(SnakeBody.unpackX(head), SnakeBody.unpackY(head));
+    }    
+    public int getPendingGrowth(){
+        return pendingGrowth;
+    }
+    public void setPendingGrowth(int pendingGrowth){
+        this.pendingGrowth = pendingGrowth;
     }    
     public Direction getDirection(){
         return direction;
     }
+    // Dirección que tomará en el próximo move()
+    public Direction getNextDirection(){
+        return nextDirection;
+    }
     public void setDirection(Direction direction){
         this.nextDirection = direction;
     }
+    // Fija la dirección actual sin pasar por el siguiente move() (al reconstruir estados)
+    public void resetDirection(Direction direction){
+        this.direction = direction;
+        this.nextDirection = direction;
+    }
     public Color getColor(){
         return color;
     }
@@ -164,4 +198,10 @@ public class Snake implements Serializable {
     public void setScore(int score){
         this.score = score;
     }
+    public int getInputSeq(){
+        return inputSeq;
+    }
+    public void setInputSeq(int inputSeq){
+        this.inputSeq = inputSeq;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package common;
+
+import java.io.Serializable;
+import java.awt.Point;
+import java.util.AbstractList;
+import java.util.List;
+
+// Cuerpo de la serpiente como buffer circular de coordenadas empaquetadas en int
+// Índice 0 = cabeza, size()-1 = cola. Agregar cabeza y quitar cola es O(1)
+public class SnakeBody implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] cells;
+    private int head;   // posición de la cabeza dentro del arreglo
+    private int size;
+    private int headSeq; // cantidad total de cabezas agregadas con pushHead
+
+    public SnakeBody() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public SnakeBody(int capacity) {
+        int c = INITIAL_CAPACITY;
+        while (c < capacity) {
+            c <<= 1;
+        }
+        this.cells = new int[c];
+    }
+
+    // Copia de otro cuerpo (mantiene el orden cabeza -> cola)
+    public SnakeBody(SnakeBody other) {
+        this(other.size);
+        for (int i = 0; i < other.size; i++) {
+            cells[i] = other.getPacked(i);
+        }
+        this.head = 0;
+        this.size = other.size;
+        this.headSeq = other.headSeq;
+    }
+
+    // x en los 16 bits altos, y en los 16 bits bajos (ambos con signo)
+    public static int pack(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+    public static int unpackX(int packed) {
+        return packed >> 16;
+    }
+    public static int unpackY(int packed) {
+        return (short) packed;
+    }
+
+    public void pushHead(int x, int y) {
+        if (size == cells.length) {
+            grow();
+        }
+        head = (head - 1) & (cells.length - 1);
+        cells[head] = pack(x, y);
+        size++;
+        headSeq++;
+    }
+
+    // Agrega un segmento detrás de la cola (usado al construir el cuerpo inicial)
+    public void pushTail(int x, int y) {
+        if (size == cells.length) {
+            grow();
+        }
+        cells[(head + size) & (cells.length - 1)] = pack(x, y);
+        size++;
+    }
+
+    // Quita la cola y devuelve su coordenada empaquetada
+    public int popTail() {
+        int tail = getPacked(size - 1);
+        size--;
+        return tail;
+    }
+
+    private void grow() {
+        int[] bigger = new int[cells.length << 1];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = getPacked(i);
+        }
+        cells = bigger;
+        head = 0;
+    }
+
+    public int getPacked(int index) {
+        return cells[(head + index) & (cells.length - 1)];
+    }
+    public int getX(int index) {
+        return unpackX(getPacked(index));
+    }
+    public int getY(int index) {
+        return unpackY(getPacked(index));
+    }
+    public int head() {
+        return getPacked(0);
+    }
+    public int tail() {
+        return getPacked(size - 1);
+    }
+    public int size() {
+        return size;
+    }
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    // Número de secuencia de la cabeza; el segmento i tiene headSeq - 1 - i
+    public int getHeadSeq() {
+        return headSeq;
+    }
+    // Número de secuencia de la cola (crece con cada popTail)
+    public int getTailSeq() {
+        return headSeq - size;
+    }
+
+    public boolean contains(int packed, int fromIndex) {
+        for (int i = fromIndex; i < size; i++) {
+            if (getPacked(i) == packed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Vista de solo lectura; crea los Point al recorrerla
+    public List<Point> asList() {
+        return new AbstractList<Point>() {
+            @Override
+            public Point get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Índice: " + index);
+                }
+                int packed = getPacked(index);
+                return new Point(unpackX(packed), unpackY(packed));
+            }
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
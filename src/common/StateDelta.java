@@ -0,0 +1,195 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Cambios de un estado respecto a otro que el cliente ya confirmó (baseTick)
+// Por serpiente: cabezas nuevas, colas quitadas, vida, dirección y puntaje
+public class StateDelta {
+    public static final byte ABSENT = 0;  // no hay serpiente en ese lugar
+    public static final byte FULL = 1;    // serpiente completa (nueva o reiniciada)
+    public static final byte CHANGED = 2; // solo los cambios de cabeza y cola
+
+    // Cambios de una serpiente
+    public static class SnakeChange {
+        private final byte kind;
+        private final Snake snake;        // solo para FULL
+        private final int playerId;
+        private final boolean alive;
+        private final Snake.Direction direction;
+        private final int score;
+        private final int inputSeq;
+        private final int tailsRemoved;
+        private final int[] newHeads;     // de la más vieja a la más nueva
+
+        private SnakeChange(byte kind, Snake snake, int playerId, boolean alive,
+                            Snake.Direction direction, int score, int inputSeq, int tailsRemoved, int[] newHeads) {
+            this.kind = kind;
+            this.snake = snake;
+            this.playerId = playerId;
+            this.alive = alive;
+            this.direction = direction;
+            this.score = score;
+            this.inputSeq = inputSeq;
+            this.tailsRemoved = tailsRemoved;
+            this.newHeads = newHeads;
+        }
+
+        public static SnakeChange absent() {
+            return new SnakeChange(ABSENT, null, 0, false, null, 0, 0, 0, null);
+        }
+        public static SnakeChange full(Snake snake) {
+            return new SnakeChange(FULL, snake, snake.getPlayerId(), snake.isAlive(),
+                                   snake.getDirection(), snake.getScore(), snake.getInputSeq(), 0, null);
+        }
+        public static SnakeChange changed(int playerId, boolean alive, Snake.Direction direction,
+                                          int score, int inputSeq, int tailsRemoved, int[] newHeads) {
+            return new SnakeChange(CHANGED, null, playerId, alive, direction, score, inputSeq, tailsRemoved, newHeads);
+        }
+
+        public byte getKind() {
+            return kind;
+        }
+        public Snake getSnake() {
+            return snake;
+        }
+        public int getPlayerId() {
+            return playerId;
+        }
+        public boolean isAlive() {
+            return alive;
+        }
+        public Snake.Direction getDirection() {
+            return direction;
+        }
+        public int getScore() {
+            return score;
+        }
+        public int getInputSeq() {
+            return inputSeq;
+        }
+        public int getTailsRemoved() {
+            return tailsRemoved;
+        }
+        public int[] getNewHeads() {
+            return newHeads;
+        }
+    }
+
+    private int baseTick;
+    private int tick;
+    private GameState.Difficulty difficulty;
+    private boolean gameRunning;
+    private long lastUpdateTime;
+    private int[] removedFoods;   // celdas empaquetadas
+    private List<Food> addedFoods;
+    private SnakeChange[] snakes;
+
+    public StateDelta(int baseTick, int tick) {
+        this.baseTick = baseTick;
+        this.tick = tick;
+        this.removedFoods = new int[0];
+        this.addedFoods = new ArrayList<>();
+        this.snakes = new SnakeChange[0];
+    }
+
+    // Arma el estado nuevo a partir de la base; devuelve null si la base no corresponde
+    public GameState applyTo(GameState base) {
+        if (base == null || base.getTick() != baseTick) {
+            return null;
+        }
+        GameState state = new GameState(base.getBoardWidth(), base.getBoardHeight());
+        state.setTick(tick);
+        state.setDifficulty(difficulty);
+        state.setGameRunning(gameRunning);
+        state.setLastUpdateTime(lastUpdateTime);
+
+        Set<Integer> removed = new HashSet<>();
+        for (int cell : removedFoods) {
+            removed.add(cell);
+        }
+        List<Food> foods = new ArrayList<>(base.getFoods().size() + addedFoods.size());
+        for (Food food : base.getFoods()) {
+            if (!removed.contains(SnakeBody.pack(food.getX(), food.getY()))) {
+                foods.add(food);
+            }
+        }
+        foods.addAll(addedFoods);
+        state.setFoods(foods);
+
+        Snake[] baseSnakes = base.getSnakes();
+        Snake[] result = new Snake[snakes.length];
+        for (int i = 0; i < snakes.length; i++) {
+            SnakeChange change = snakes[i];
+            if (change.getKind() == FULL) {
+                result[i] = change.getSnake();
+            } else if (change.getKind() == CHANGED) {
+                Snake previous = baseSnakes != null && i < baseSnakes.length ? baseSnakes[i] : null;
+                if (previous == null || previous.getPlayerId() != change.getPlayerId()
+                        || previous.getSegments().size() <= change.getTailsRemoved()) {
+                    return null;
+                }
+                Snake snake = new Snake(previous);
+                SnakeBody body = snake.getSegments();
+                for (int j = 0; j < change.getTailsRemoved(); j++) {
+                    body.popTail();
+                }
+                for (int head : change.getNewHeads()) {
+                    body.pushHead(SnakeBody.unpackX(head), SnakeBody.unpackY(head));
+                }
+                snake.setAlive(change.isAlive());
+                snake.setScore(change.getScore());
+                snake.setInputSeq(change.getInputSeq());
+                snake.resetDirection(change.getDirection());
+                result[i] = snake;
+            }
+        }
+        state.setSnakes(result);
+        return state;
+    }
+
+    public int getBaseTick() {
+        return baseTick;
+    }
+    public int getTick() {
+        return tick;
+    }
+    public GameState.Difficulty getDifficulty() {
+        return difficulty;
+    }
+    public void setDifficulty(GameState.Difficulty difficulty) {
+        this.difficulty = difficulty;
+    }
+    public boolean isGameRunning() {
+        return gameRunning;
+    }
+    public void setGameRunning(boolean gameRunning) {
+        this.gameRunning = gameRunning;
+    }
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+    public void setLastUpdateTime(long lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+    public int[] getRemovedFoods() {
+        return removedFoods;
+    }
+    public void setRemovedFoods(int[] removedFoods) {
+        this.removedFoods = removedFoods;
+    }
+    public List<Food> getAddedFoods() {
+        return addedFoods;
+    }
+    public void setAddedFoods(List<Food> addedFoods) {
+        this.addedFoods = addedFoods;
+    }
+    public SnakeChange[] getSnakes() {
+        return snakes;
+    }
+    public void setSnakes(SnakeChange[] snakes) {
+        this.snakes = snakes;
+    }
+}
@@ -0,0 +1,110 @@
+package common;
+
+import java.util.Arrays;
+
+// Lo que hace avanzar la simulación un tick: cambios de la sala desde el tick anterior (jugadores que salieron,
+// dificultad), las entradas que llegaron a serpientes vivas y las comidas que aparecieron
+// Lo arma el motor del servidor en cada tick; lo repiten las grabaciones y los clientes de las salas lockstep
+// Se reutiliza de un tick al siguiente
+public final class TickInputs {
+    public static final byte REMOVE = 1;      // valor: número de jugador
+    public static final byte DIFFICULTY = 2;  // valor: ordinal de la dificultad
+
+    private int tick;
+    private int players;   // jugadores en la sala (con uno solo la partida sigue hasta que muere)
+    private long time;     // hora del servidor, solo para dibujar (no entra en la simulación)
+    private int eventCount;
+    private byte[] eventKinds = new byte[4];
+    private int[] eventValues = new int[4];
+    private int inputCount;
+    private int[] inputPlayers = new int[16];
+    private Snake.Direction[] inputDirections = new Snake.Direction[16];
+    private int[] inputSeqs = new int[16];
+    private int spawnCount;
+    private int[] spawnCells = new int[8];
+    private Food.FoodType[] spawnTypes = new Food.FoodType[8];
+
+    public void clear() {
+        eventCount = 0;
+        inputCount = 0;
+        spawnCount = 0;
+    }
+
+    public void addEvent(byte kind, int value) {
+        if (eventCount == eventKinds.length) {
+            eventKinds = Arrays.copyOf(eventKinds, eventCount * 2);
+            eventValues = Arrays.copyOf(eventValues, eventCount * 2);
+        }
+        eventKinds[eventCount] = kind;
+        eventValues[eventCount++] = value;
+    }
+
+    public void addInput(int playerId, Snake.Direction direction, int seq) {
+        if (inputCount == inputPlayers.length) {
+            inputPlayers = Arrays.copyOf(inputPlayers, inputCount * 2);
+            inputDirections = Arrays.copyOf(inputDirections, inputCount * 2);
+            inputSeqs = Arrays.copyOf(inputSeqs, inputCount * 2);
+        }
+        inputPlayers[inputCount] = playerId;
+        inputDirections[inputCount] = direction;
+        inputSeqs[inputCount++] = seq;
+    }
+
+    public void addSpawn(int cell, Food.FoodType type) {
+        if (spawnCount == spawnCells.length) {
+            spawnCells = Arrays.copyOf(spawnCells, spawnCount * 2);
+            spawnTypes = Arrays.copyOf(spawnTypes, spawnCount * 2);
+        }
+        spawnCells[spawnCount] = cell;
+        spawnTypes[spawnCount++] = type;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+    public void setTick(int tick) {
+        this.tick = tick;
+    }
+    public int getPlayers() {
+        return players;
+    }
+    public void setPlayers(int players) {
+        this.players = players;
+    }
+    public long getTime() {
+        return time;
+    }
+    public void setTime(long time) {
+        this.time = time;
+    }
+    public int getEventCount() {
+        return eventCount;
+    }
+    public byte getEventKind(int i) {
+        return eventKinds[i];
+    }
+    public int getEventValue(int i) {
+        return eventValues[i];
+    }
+    public int getInputCount() {
+        return inputCount;
+    }
+    public int getInputPlayer(int i) {
+        return inputPlayers[i];
+    }
+    public Snake.Direction getInputDirection(int i) {
+        return inputDirections[i];
+    }
+    public int getInputSeq(int i) {
+        return inputSeqs[i];
+    }
+    public int getSpawnCount() {
+        return spawnCount;
+    }
+    public int getSpawnCell(int i) {
+        return spawnCells[i];
+    }
+    public Food.FoodType getSpawnType(int i) {
+        return spawnTypes[i];
+    }
+}
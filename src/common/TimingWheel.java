@@ -0,0 +1,121 @@
+package common;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Rueda de tiempos con hash para vencimientos medidos en ticks
+// Cada elemento es un id entero (una comida) y va en la ranura (tick de vencimiento % ranuras);
+// las ranuras son listas doblemente enlazadas sobre arreglos, agendar y cancelar son O(1)
+// Cada tick solo se recorre la ranura actual; con plazos menores que la cantidad de ranuras todo lo que está ahí vence
+class TimingWheel {
+    private static final int NONE = -1;
+
+    private final int mask;
+    private final int[] slotHead;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] slotOf;  // ranura donde está cada id, NONE si no está agendado
+    private final int[] rounds;  // vueltas completas que faltan (solo si el plazo supera la rueda)
+    private long tick;
+
+    public TimingWheel(int slots, int capacity) {
+        int size = 1;
+        while (size < slots) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.slotHead = new int[size];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.slotOf = new int[capacity];
+        this.rounds = new int[capacity];
+        Arrays.fill(slotHead, NONE);
+        Arrays.fill(slotOf, NONE);
+    }
+
+    // Agenda el id para vencer dentro de delayTicks ticks (al menos 1); reemplaza un plazo anterior
+    public void schedule(int id, int delayTicks) {
+        cancel(id);
+        int delay = Math.max(1, delayTicks);
+        long expiry = tick + delay;
+        int slot = (int) (expiry & mask);
+        rounds[id] = (delay - 1) / (mask + 1);
+        slotOf[id] = slot;
+        prev[id] = NONE;
+        next[id] = slotHead[slot];
+        if (slotHead[slot] != NONE) {
+            prev[slotHead[slot]] = id;
+        }
+        slotHead[slot] = id;
+    }
+
+    public void cancel(int id) {
+        int slot = slotOf[id];
+        if (slot == NONE) {
+            return;
+        }
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            slotHead[slot] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+        slotOf[id] = NONE;
+    }
+
+    public boolean isScheduled(int id) {
+        return slotOf[id] != NONE;
+    }
+
+    // Ticks que le faltan al id para vencer (el delay con que se agendaría de nuevo); 0 si no está agendado
+    public int remaining(int id) {
+        int slot = slotOf[id];
+        if (slot == NONE) {
+            return 0;
+        }
+        return (int) ((slot - tick - 1) & mask) + 1 + rounds[id] * (mask + 1);
+    }
+
+    // Avanza un tick y entrega los ids que vencen
+    public void advance(IntConsumer onExpire) {
+        tick++;
+        int slot = (int) (tick & mask);
+        int id = slotHead[slot];
+        while (id != NONE) {
+            int following = next[id];
+            if (rounds[id] > 0) {
+                rounds[id]--;
+            } else {
+                cancel(id);
+                onExpire.accept(id);
+            }
+            id = following;
+        }
+    }
+
+    // Recorre lo agendado ranura por ranura desde la que vence primero, cada una desde el último agendado;
+    // el orden no depende del tick absoluto, así que una rueda rearmada en otro tick lo repite
+    public void forEachScheduled(IntConsumer action) {
+        for (int i = 1; i <= slotHead.length; i++) {
+            int slot = (int) ((tick + i) & mask);
+            for (int id = slotHead[slot]; id != NONE; id = next[id]) {
+                action.accept(id);
+            }
+        }
+    }
+
+    // Quita todo lo agendado
+    public void clear() {
+        for (int slot = 0; slot < slotHead.length; slot++) {
+            int id = slotHead[slot];
+            while (id != NONE) {
+                int following = next[id];
+                slotOf[id] = NONE;
+                id = following;
+            }
+            slotHead[slot] = NONE;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package server;
+
+import common.*;
+import java.net.InetSocketAddress;
+
+// Clase que administra la comunicación con un cliente
+class ClientHandler {
+    // Límite de mensajes por conexión (cubeta de fichas): ráfaga máxima y fichas por segundo
+    private static final double BUCKET_CAPACITY = 20;
+    private static final double TOKENS_PER_SECOND = 30;
+    private static final int MAX_DROPPED = 500; // descartados sin que la cubeta se llene antes de cortar la conexión
+    // Sin confirmaciones durante este tiempo mientras se manda por UDP: los datagramas no llegan, se vuelve a TCP
+    private static final long DATAGRAM_SILENCE_NANOS = 2_000_000_000L;
+    private final Connection connection;
+    private final GameServer server;
+    private final FramePool framePool;
+    private int capabilities;
+    private volatile boolean handshakeDone;
+    // Sala actual y número de jugador dentro de ella (cambian juntos, bajo el lock del cliente)
+    private Room room;
+    private volatile int playerId = -1;
+    private volatile int ackedTick = -1; // último estado que el cliente confirmó
+    // Los ACK que llegan antes del STATE_ACK -1 son de la sala anterior y se ignoran
+    private volatile boolean ackSynced;
+    // Solo los toca el hilo de red de la conexión
+    private double tokens = BUCKET_CAPACITY;
+    private long lastRefill = System.nanoTime();
+    private int dropped;
+    // Estados por UDP: clave que el cliente anuncia y dirección desde la que lo hizo (null = por TCP)
+    private int datagramToken;
+    private volatile InetSocketAddress datagramAddress;
+    private volatile boolean datagramsFailed;
+    private volatile long lastAckNanos;
+    private int datagramSeq;         // bajo el lock del cliente
+    private long lastDatagramNanos;  // bajo el lock del cliente
+
+    public ClientHandler(Connection connection, GameServer server, FramePool framePool) {
+        this.connection = connection;
+        this.server = server;
+        this.framePool = framePool;
+    }
+
+    public void receive(Message message) {
+        if (handshakeDone) {
+            handleMessage(message);
+        } else {
+            handshake(message);
+        }
+    }
+
+    // El primer mensaje debe ser CONNECT (la versión de protocolo ya se validó al decodificar)
+    private void handshake(Message connect) {
+        if (connect.getType() != Message.Type.CONNECT) {
+            connection.sendAndClose(framePool.encode(new Message(Message.Type.CONNECTION_REJECTED, "Se esperaba CONNECT")));
+            return;
+        }
+        capabilities = (Integer) connect.getData() & MessageCodec.CAPABILITIES;
+        DatagramServer datagrams = server.getDatagrams();
+        // Por UDP hacen falta las confirmaciones para saber si llegan; sin ellas o sin puerto UDP, todo por TCP
+        if ((capabilities & MessageCodec.CAP_DELTA) == 0 || datagrams == null) {
+            capabilities &= ~MessageCodec.CAP_UDP;
+        }
+        handshakeDone = true;
+        // El número de jugador se asigna al entrar a una sala
+        sendMessage(new Message(Message.Type.CONNECTION_ACCEPTED, capabilities, 0));
+        if ((capabilities & MessageCodec.CAP_UDP) != 0) {
+            datagramToken = datagrams.register(this);
+            sendMessage(new Message(Message.Type.UDP_TOKEN, datagramToken));
+        }
+    }
+    
+    // El cliente anunció su clave por UDP (hilo de red); se repite como keepalive y puede cambiar de dirección
+    public void bindDatagrams(InetSocketAddress address) {
+        if (datagramsFailed || address.equals(datagramAddress)) {
+            return;
+        }
+        if (datagramAddress == null) {
+            lastAckNanos = System.nanoTime();
+            System.out.println("Cliente " + connection.getAddress() + " recibe los estados por UDP desde " + address);
+        }
+        datagramAddress = address;
+    }
+    
+    // Conexión cerrada: la clave deja de valer
+    public void closeDatagrams() {
+        DatagramServer datagrams = server.getDatagrams();
+        if (datagramToken != 0 && datagrams != null) {
+            datagrams.unregister(datagramToken);
+        }
+        datagramAddress = null;
+    }
+
+    // Repone las fichas según el tiempo pasado y consume una; false si no había
+    private boolean takeToken() {
+        long now = System.nanoTime();
+        tokens = Math.min(BUCKET_CAPACITY, tokens + (now - lastRefill) * TOKENS_PER_SECOND / 1e9);
+        lastRefill = now;
+        if (tokens == BUCKET_CAPACITY) {
+            dropped = 0; // el cliente se calmó
+        }
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    private void handleMessage(Message message) {
+        // Los ACK acompañan a los estados que manda el servidor, no cuentan para el límite
+        if (message.getType() != Message.Type.STATE_ACK) {
+            if (!takeToken()) {
+                server.getMetrics().messagesDropped.increment();
+                if (++dropped > MAX_DROPPED) {
+                    System.err.println("Cliente " + connection.getAddress() + " inunda de mensajes, se desconecta");
+                    cleanup();
+                }
+                return;
+            }
+        }
+        switch (message.getType()) {
+            case LIST_ROOMS:
+                sendMessage(new Message(Message.Type.ROOM_LIST, server.listRooms()));
+                break;
+            case CREATE_ROOM:
+                server.createRoom(this, (RoomSettings) message.getData());
+                break;
+            case JOIN_ROOM:
+                server.joinRoom(this, (Integer) message.getData());
+                break;
+            case LEAVE_ROOM:
+                server.leaveRoom(this);
+                break;
+            case STATE_ACK: {
+                int tick = (Integer) message.getData();
+                lastAckNanos = System.nanoTime();
+                if (tick < 0) {
+                    // El cliente ya vio ROOM_JOINED y descartó sus estados viejos
+                    ackSynced = true;
+                    ackedTick = -1;
+                } else if (ackSynced) {
+                    ackedTick = Math.max(ackedTick, tick);
+                }
+                break;
+            }
+            case DISCONNECT:
+                cleanup();
+                break;
+            default:
+                Room current = getRoom();
+                if (current != null) {
+                    current.handleMessage(this, message);
+                }
+                break;
+        }
+    }
+
+    // Pasa a la sala indicada; los estados de la sala anterior que no salieron se descartan
+    public synchronized void enterRoom(Room newRoom, int newPlayerId) {
+        room = newRoom;
+        playerId = newPlayerId;
+        ackSynced = false;
+        ackedTick = -1;
+        connection.dropPendingState();
+        // Dentro del lock: ROOM_JOINED sale antes que cualquier estado de la sala nueva
+        sendMessage(new Message(Message.Type.ROOM_JOINED, newRoom.getId(), newPlayerId));
+    }
+
+    // Deja la sala actual; devuelve la sala que tenía (o null)
+    public synchronized Room exitRoom() {
+        Room previous = room;
+        room = null;
+        connection.dropPendingState();
+        return previous;
+    }
+
+    public void sendMessage(Message message) {
+        sendFrame(framePool.encode(message));
+    }
+
+    // Encola una trama de control ya codificada; la conexión suelta la referencia al terminar de escribirla
+    public void sendFrame(SharedFrame frame) {
+        if (!handshakeDone) {
+            frame.release();
+            return;
+        }
+        connection.send(frame);
+    }
+
+    // Trama de una sala: solo se envía si el cliente sigue en ella
+    public synchronized void sendFrame(SharedFrame frame, Room from) {
+        if (room != from) {
+            frame.release();
+            return;
+        }
+        sendFrame(frame);
+    }
+
+    // Entradas de un tick lockstep: por el carril de control (en orden y sin reemplazos), sale en el flush del tick
+    public synchronized void sendTickFrame(SharedFrame frame, Room from) {
+        if (!handshakeDone || room != from) {
+            frame.release();
+            return;
+        }
+        connection.enqueueControl(frame);
+    }
+
+    // Estado del tick: por UDP si el cliente se anunció y la trama entra en un datagrama;
+    // si no, por TCP, donde reemplaza al anterior si todavía no salió y se escribe en el flush del tick
+    public synchronized void sendState(SharedFrame frame, Room from) {
+        if (!handshakeDone || room != from) {
+            frame.release();
+            return;
+        }
+        InetSocketAddress address = datagramAddress;
+        if (address != null && datagramsWorking()
+                && server.getDatagrams().send(address, ++datagramSeq, from.getId(), frame)) {
+            frame.release();
+            return;
+        }
+        connection.sendState(frame);
+    }
+    
+    // Los estados por UDP se confirman por TCP; si las confirmaciones se cortan, el cliente no los recibe
+    private boolean datagramsWorking() {
+        long now = System.nanoTime();
+        // Después de una pausa sin estados (partida terminada) se empieza a contar de nuevo
+        if (now - lastDatagramNanos > DATAGRAM_SILENCE_NANOS) {
+            lastAckNanos = now;
+        }
+        lastDatagramNanos = now;
+        if (now - lastAckNanos <= DATAGRAM_SILENCE_NANOS) {
+            return true;
+        }
+        datagramsFailed = true;
+        datagramAddress = null;
+        System.out.println("Cliente " + connection.getAddress() + " no confirma los estados por UDP, vuelven a TCP");
+        return false;
+    }
+
+    public void cleanup() {
+        // Al cerrarse la conexión llega onClose y se saca al cliente
+        connection.close();
+    }
+
+    public synchronized Room getRoom() {
+        return room;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public boolean isHandshakeDone() {
+        return handshakeDone;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public boolean supportsDeltas() {
+        return (capabilities & MessageCodec.CAP_DELTA) != 0;
+    }
+
+    public boolean supportsLockstep() {
+        return (capabilities & MessageCodec.CAP_LOCKSTEP) != 0;
+    }
+
+    public int getAckedTick() {
+        return ackedTick;
+    }
+}
@@ -0,0 +1,340 @@
+package server;
+
+import common.Message;
+import common.MessageCodec;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Conexión no bloqueante de un cliente, atendida siempre por el mismo EventLoop
+// Lee tramas completas (largo + contenido) y escribe las tramas encoladas cuando el socket lo permite
+// Salida en dos carriles: mensajes de control en orden (acotados) y un único estado pendiente,
+// que se reemplaza por el más nuevo si el cliente no alcanzó a recibirlo
+class Connection implements EventLoop.Selectable {
+    private static final int READ_BUFFER_SIZE = 4096; // entra cualquier trama del cliente con su largo
+    private static final int MAX_CONTROL_FRAMES = 256; // más que esto: el cliente no está leyendo
+    private static final int MAX_GATHER = 32;          // tramas por write()
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final NetworkListener listener;
+    private final InetAddress address;
+    private SelectionKey key;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    // Carriles de salida (cualquier hilo encola)
+    private final Queue<SharedFrame> control = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger controlCount = new AtomicInteger();
+    private final AtomicReference<SharedFrame> latestState = new AtomicReference<>();
+    // Tramas que se están escribiendo (solo el hilo del loop)
+    private final ArrayDeque<SharedFrame> writing = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> views = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private SharedFrame stateFrame; // estado que ya pasó a escribirse
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean closeAfterFlush;
+    private volatile Object attachment;
+    // Tráfico de esta conexión; solo los escribe el hilo del loop
+    private final ServerMetrics metrics;
+    private volatile long bytesSent;
+    private volatile long bytesReceived;
+    private volatile long messagesSent;
+    private volatile long messagesReceived;
+
+    Connection(SocketChannel channel, EventLoop loop, NetworkListener listener, ServerMetrics metrics) {
+        this.channel = channel;
+        this.loop = loop;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.address = channel.socket().getInetAddress();
+    }
+
+    // Se corre en el hilo del loop
+    void register() {
+        try {
+            key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+        } catch (ClosedChannelException e) {
+            closed.set(true);
+            return;
+        }
+        listener.onOpen(this);
+    }
+
+    // Encola un mensaje de control (el que llama le pasa su referencia) y lo escribe enseguida
+    public void send(SharedFrame frame) {
+        enqueueControl(frame);
+        loop.wakeup();
+    }
+
+    // Encola un mensaje de control sin despertar al loop (se escribe en el próximo flush)
+    public void enqueueControl(SharedFrame frame) {
+        if (closed.get()) {
+            frame.release();
+            return;
+        }
+        if (controlCount.incrementAndGet() > MAX_CONTROL_FRAMES) {
+            frame.release();
+            System.err.println("Cliente " + address + " no lee sus mensajes, se desconecta");
+            close();
+            return;
+        }
+        control.offer(frame);
+        afterEnqueue();
+    }
+
+    // Deja el estado como el próximo a enviar; si había otro sin empezar a escribir, se descarta
+    public void sendState(SharedFrame frame) {
+        if (closed.get()) {
+            frame.release();
+            return;
+        }
+        SharedFrame older = latestState.getAndSet(frame);
+        if (older != null) {
+            older.release();
+        }
+        afterEnqueue();
+    }
+
+    // Descarta el estado pendiente que todavía no empezó a escribirse
+    public void dropPendingState() {
+        SharedFrame older = latestState.getAndSet(null);
+        if (older != null) {
+            older.release();
+        }
+    }
+
+    private void afterEnqueue() {
+        if (closed.get()) {
+            // Se cerró mientras encolábamos: el cierre puede no haberla visto
+            loop.execute(this::releaseOutbound);
+            return;
+        }
+        scheduleFlush();
+    }
+
+    // Manda la trama y cierra cuando termine de escribirse
+    public void sendAndClose(SharedFrame frame) {
+        closeAfterFlush = true;
+        // Ya no se leen más tramas de este cliente
+        if (key != null && key.isValid()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+        send(frame);
+    }
+
+    // Se anota una sola escritura por conexión hasta que el loop la atienda
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.executeLater(this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        if (!closed.get()) {
+            writePending();
+        }
+    }
+
+    @Override
+    public void onReady(SelectionKey key) {
+        if (key.isReadable()) {
+            read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            writePending();
+        }
+    }
+
+    @Override
+    public void onLoopClosed() {
+        closeNow();
+    }
+
+    private void read() {
+        try {
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                closeNow();
+                return;
+            }
+            bytesReceived += n;
+            metrics.bytesReceived.add(n);
+            readBuffer.flip();
+            while (readBuffer.remaining() >= MessageCodec.LENGTH_SIZE) {
+                int length = readBuffer.getInt(readBuffer.position());
+                // Se rechaza con solo ver el largo: el buffer nunca crece por lo que anuncia el cliente
+                if (length < 2 || length > MessageCodec.MAX_CLIENT_FRAME_SIZE) {
+                    throw new ProtocolException("Largo de trama inválido: " + length);
+                }
+                if (readBuffer.remaining() < MessageCodec.LENGTH_SIZE + length) {
+                    break;
+                }
+                ByteBuffer frame = readBuffer.duplicate();
+                frame.position(readBuffer.position() + MessageCodec.LENGTH_SIZE);
+                frame.limit(frame.position() + length);
+                readBuffer.position(frame.limit());
+                Message message = MessageCodec.decodeFromClient(frame);
+                messagesReceived++;
+                metrics.messagesReceived.increment();
+                listener.onMessage(this, message);
+                if (closed.get()) {
+                    return;
+                }
+            }
+            readBuffer.compact();
+        } catch (ProtocolException e) {
+            listener.onInvalidFrame(this, e);
+            if (!closeAfterFlush) {
+                closeNow();
+            }
+        } catch (IOException e) {
+            // Cliente desconectado
+            closeNow();
+        }
+    }
+
+    // Pasa lo encolado a la lista de escritura: primero control, después el estado más nuevo
+    private void collectPending() {
+        SharedFrame frame;
+        while ((frame = control.poll()) != null) {
+            controlCount.decrementAndGet();
+            writing.add(frame);
+            views.add(frame.view());
+        }
+        // Mientras un estado se está escribiendo los nuevos se siguen reemplazando en latestState
+        if (stateFrame == null) {
+            frame = latestState.getAndSet(null);
+            if (frame != null) {
+                stateFrame = frame;
+                writing.add(frame);
+                views.add(frame.view());
+            }
+        }
+    }
+
+    private void writePending() {
+        try {
+            collectPending();
+            while (!views.isEmpty()) {
+                // Varias tramas en una sola llamada al sistema
+                int count = 0;
+                for (ByteBuffer view : views) {
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                    gather[count++] = view;
+                }
+                long written = channel.write(gather, 0, count);
+                bytesSent += written;
+                metrics.bytesSent.add(written);
+                // Soltar las tramas que terminaron de escribirse
+                while (!views.isEmpty() && !views.peek().hasRemaining()) {
+                    views.poll();
+                    messagesSent++;
+                    metrics.messagesSent.increment();
+                    SharedFrame frame = writing.poll();
+                    if (frame == stateFrame) {
+                        stateFrame = null;
+                    }
+                    frame.release();
+                }
+                if (!views.isEmpty()) {
+                    // El socket está lleno: seguir cuando se pueda escribir
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                collectPending();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closeAfterFlush) {
+                closeNow();
+            }
+        } catch (IOException e) {
+            closeNow();
+        }
+    }
+
+    // Se puede llamar desde cualquier hilo
+    public void close() {
+        if (loop.inLoop()) {
+            closeNow();
+        } else {
+            loop.execute(this::closeNow);
+        }
+    }
+
+    private void closeNow() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignorar errores al cerrar
+        }
+        releaseOutbound();
+        listener.onClose(this);
+    }
+
+    private void releaseOutbound() {
+        SharedFrame frame;
+        while ((frame = writing.poll()) != null) {
+            frame.release();
+        }
+        views.clear();
+        stateFrame = null;
+        while ((frame = control.poll()) != null) {
+            controlCount.decrementAndGet();
+            frame.release();
+        }
+        frame = latestState.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    // Tramas encoladas que todavía no empezaron a escribirse
+    public int getQueueDepth() {
+        return controlCount.get() + (latestState.get() != null ? 1 : 0);
+    }
+    public long getBytesSent() {
+        return bytesSent;
+    }
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+    public long getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    public InetAddress getAddress() {
+        return address;
+    }
+    public boolean isClosed() {
+        return closed.get();
+    }
+    public Object getAttachment() {
+        return attachment;
+    }
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+}
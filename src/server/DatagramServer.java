@@ -0,0 +1,124 @@
+package server;
+
+import common.MessageCodec;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Canal UDP para los estados de cada tick, en el mismo puerto que el TCP
+// Un estado perdido no frena a los siguientes (en TCP esperan la retransmisión): cada datagrama lleva
+// un número de secuencia por cliente y una trama completa, el cliente descarta los viejos o desordenados
+// Los clientes se anuncian mandando por UDP la clave que recibieron por TCP (UDP_TOKEN)
+class DatagramServer implements EventLoop.Selectable {
+    private static final int RECEIVE_BUFFER_SIZE = 64;
+    // Fracción de datagramas de estado que se descartan a propósito, para probar pérdidas (-Dsnake.udpLoss=0.2)
+    private static final double SIMULATED_LOSS = Double.parseDouble(System.getProperty("snake.udpLoss", "0"));
+
+    private final DatagramChannel channel;
+    private final ServerMetrics metrics;
+    private final Map<Integer, ClientHandler> tokens = new ConcurrentHashMap<>();
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+    // Cada hilo que envía (ticks y vistas) arma sus datagramas en su propio buffer
+    private final ThreadLocal<ByteBuffer> sendBuffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MessageCodec.MAX_DATAGRAM_SIZE));
+
+    DatagramServer(int port, ServerMetrics metrics) throws IOException {
+        this.metrics = metrics;
+        this.channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        channel.configureBlocking(false);
+    }
+
+    // Se corre en el hilo del loop
+    void register(EventLoop loop) {
+        try {
+            channel.register(loop.selector(), SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            System.err.println("Error registrando el socket UDP: " + e.getMessage());
+        }
+    }
+
+    // Clave nueva (distinta de 0 y de las que están en uso) para un cliente
+    public int register(ClientHandler client) {
+        while (true) {
+            int token = ThreadLocalRandom.current().nextInt();
+            if (token != 0 && tokens.putIfAbsent(token, client) == null) {
+                return token;
+            }
+        }
+    }
+
+    public void unregister(int token) {
+        tokens.remove(token);
+    }
+
+    // Anuncios de los clientes: [int clave]; el remitente pasa a ser la dirección de sus estados
+    @Override
+    public void onReady(SelectionKey key) {
+        try {
+            SocketAddress sender;
+            while ((sender = channel.receive(receiveBuffer)) != null) {
+                receiveBuffer.flip();
+                if (receiveBuffer.remaining() == 4) {
+                    metrics.bytesReceived.add(4);
+                    ClientHandler client = tokens.get(receiveBuffer.getInt());
+                    if (client != null) {
+                        client.bindDatagrams((InetSocketAddress) sender);
+                    }
+                }
+                receiveBuffer.clear();
+            }
+        } catch (IOException e) {
+            System.err.println("Error leyendo del socket UDP: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onLoopClosed() {
+        close();
+    }
+
+    // Manda la trama por UDP si entra en un datagrama; false si hay que mandarla por TCP
+    // Un datagrama que el socket no pudo aceptar (buffer lleno) se da por perdido, como en la red
+    public boolean send(InetSocketAddress to, int seq, int roomId, SharedFrame frame) {
+        if (frame.size() + MessageCodec.DATAGRAM_HEADER_SIZE > MessageCodec.MAX_DATAGRAM_SIZE) {
+            return false;
+        }
+        if (SIMULATED_LOSS > 0 && ThreadLocalRandom.current().nextDouble() < SIMULATED_LOSS) {
+            metrics.datagramsLost.increment();
+            return true;
+        }
+        ByteBuffer buffer = sendBuffers.get();
+        buffer.clear();
+        buffer.putInt(seq);
+        buffer.putInt(roomId);
+        buffer.put(frame.view());
+        buffer.flip();
+        try {
+            int sent = channel.send(buffer, to);
+            if (sent == 0) {
+                metrics.datagramsLost.increment();
+            } else {
+                metrics.bytesSent.add(sent);
+                metrics.datagramsSent.increment();
+            }
+        } catch (IOException e) {
+            metrics.datagramsLost.increment();
+        }
+        return true;
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package server;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Hilo de red: un Selector que atiende muchas conexiones sin bloquear
+// Otros hilos le pasan trabajo con execute(), que se corre entre cada select()
+class EventLoop implements Runnable {
+    // Lo que se registra en el selector (conexiones y el aceptador)
+    interface Selectable {
+        void onReady(SelectionKey key);
+        void onLoopClosed();
+    }
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        selector.wakeup();
+    }
+
+    // Encola sin despertar al selector; se corre en el próximo wakeup() o evento de red
+    public void executeLater(Runnable task) {
+        tasks.offer(task);
+    }
+
+    public void wakeup() {
+        if (!tasks.isEmpty()) {
+            selector.wakeup();
+        }
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    public Selector selector() {
+        return selector;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        ((Selectable) key.attachment()).onReady(key);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error en " + thread.getName() + ": " + e.getMessage());
+            }
+        }
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+            ((Selectable) key.attachment()).onLoopClosed();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error en " + thread.getName() + ": " + e);
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public void join(long millis) throws InterruptedException {
+        thread.join(millis);
+    }
+}
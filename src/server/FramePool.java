@@ -0,0 +1,89 @@
+package server;
+
+import common.Message;
+import common.MessageCodec;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Pool de buffers para las tramas salientes, por tamaños potencia de 2
+// Las tramas más grandes que la clase mayor se crean y se descartan sin pool
+class FramePool {
+    private static final int MIN_SHIFT = 8;   // 256 bytes
+    private static final int MAX_SHIFT = 20;  // 1 MB
+    private static final int MAX_PER_CLASS = 256;
+
+    private final boolean direct;
+    private final ConcurrentLinkedQueue<SharedFrame>[] free;
+    private final AtomicIntegerArray freeCounts;
+    private final LatencyHistogram encodeTimes; // tiempo de codificación de cada mensaje
+
+    public FramePool(boolean direct) {
+        this(direct, new LatencyHistogram());
+    }
+
+    @SuppressWarnings("unchecked")
+    public FramePool(boolean direct, LatencyHistogram encodeTimes) {
+        this.direct = direct;
+        this.encodeTimes = encodeTimes;
+        this.free = (ConcurrentLinkedQueue<SharedFrame>[]) new ConcurrentLinkedQueue<?>[MAX_SHIFT - MIN_SHIFT + 1];
+        this.freeCounts = new AtomicIntegerArray(free.length);
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    // Codifica el mensaje una sola vez; el que llama es dueño de una referencia
+    public SharedFrame encode(Message message) {
+        long start = System.nanoTime();
+        SharedFrame frame = acquire(MessageCodec.encodedSize(message));
+        ByteBuffer buffer = frame.buffer();
+        MessageCodec.encode(message, buffer);
+        buffer.flip();
+        encodeTimes.record(System.nanoTime() - start);
+        return frame;
+    }
+
+    public SharedFrame acquire(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass >= free.length) {
+            SharedFrame frame = new SharedFrame(allocate(size), this);
+            frame.reset();
+            return frame;
+        }
+        SharedFrame frame = free[sizeClass].poll();
+        if (frame != null) {
+            freeCounts.decrementAndGet(sizeClass);
+        } else {
+            frame = new SharedFrame(allocate(1 << (sizeClass + MIN_SHIFT)), this);
+        }
+        frame.reset();
+        return frame;
+    }
+
+    void recycle(SharedFrame frame) {
+        int capacity = frame.buffer().capacity();
+        int sizeClass = sizeClass(capacity);
+        // Las tramas grandes creadas sin pool se descartan
+        if (sizeClass >= free.length || capacity != 1 << (sizeClass + MIN_SHIFT)) {
+            return;
+        }
+        if (freeCounts.incrementAndGet(sizeClass) <= MAX_PER_CLASS) {
+            free[sizeClass].offer(frame);
+        } else {
+            freeCounts.decrementAndGet(sizeClass);
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static int sizeClass(int size) {
+        int shift = MIN_SHIFT;
+        while ((1 << shift) < size && shift <= MAX_SHIFT) {
+            shift++;
+        }
+        return shift - MIN_SHIFT;
+    }
+}
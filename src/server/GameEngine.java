@@ -0,0 +1,637 @@
+package server;
+
+import common.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Motor del juego de una sala; sus ticks corren en el pool de ticks compartido por todas las salas
+// Cada tick tiene un plazo absoluto (plazo anterior + período), así el tiempo de trabajo no se acumula
+// Sin partida en curso la sala queda estacionada: no tiene ningún tick agendado
+// El tamaño del tablero y el cupo de jugadores vienen de la sala (hasta mundos de miles de celdas por lado)
+// En tableros más grandes que la vista cada jugador recibe solo lo que rodea a su cabeza, más un minimapa del total
+// La partida en sí es una Simulation determinista: el motor le pasa las entradas y decide las comidas, y junta
+// lo de cada tick en un TickInputs que se graba (ReplayRecorder) y, en las salas lockstep, se reenvía tal cual
+// para que cada cliente simule el estado en lugar de recibirlo
+class GameEngine {
+    private static final int BASE_GAME_SPEED = 150; // ms entre cada actualización
+    private static final long FOOD_GENERATION_INTERVAL = 3000; // cada 3 segundos aparece una nueva comida 
+    private static final int KEYFRAME_INTERVAL = 40; // cada cuantos ticks se manda el estado completo a todos
+    private static final int MAX_CATCH_UP_TICKS = 3; // atrasos mayores se saltan en lugar de recuperarse
+    public static final int DEFAULT_MAX_FOODS = 8;     // comidas a la vez en el tablero
+    public static final int DEFAULT_FOOD_TTL_TICKS = 120; // ticks que dura una comida sin comerse
+    private static final int FOOD_SPAWN_DIVISOR = 16;  // en cada intervalo aparece 1/16 del tope (al menos 1)
+    private static final int AOI_MARGIN = 4;           // celdas extra alrededor de la vista del cliente
+    private static final int AOI_WIDTH = RoomSettings.DEFAULT_WIDTH + 2 * AOI_MARGIN;
+    private static final int AOI_HEIGHT = RoomSettings.DEFAULT_HEIGHT + 2 * AOI_MARGIN;
+    private static final int MINIMAP_INTERVAL = 10;    // ticks entre minimapas
+    private static final int MINIMAP_MAX_SIDE = 48;    // regiones en el lado más largo
+    private static final int VIEWS_PER_TASK = 32;      // jugadores por tarea al armar las vistas en paralelo
+    private static final int PARALLEL_VIEWS_FROM = 64; // con menos jugadores se arman en el hilo del tick
+    private static final int HASH_HISTORY = 16;        // hashes lockstep guardados para comparar con los clientes
+    // Semilla fija para todas las partidas (-Dsnake.seed=N); sin ella cada partida sortea la suya
+    private static final Long FIXED_SEED = Long.getLong("snake.seed");
+    private final Room room;
+    private final FramePool framePool;
+    private final NetworkServer network;
+    private final ServerMetrics metrics;
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    private final boolean interestManaged; // tablero más grande que la vista: estado por jugador
+    private final boolean lockstep;        // solo se reenvían las entradas, cada cliente simula
+    private final Simulation sim;
+    private final GameState gameState;     // los de la simulación
+    private final OccupancyGrid grid;
+    private long seed; // semilla de la partida actual
+    private long lastFoodGenerationTime;
+    private SnapshotHistory history;
+    // Entradas de los hilos de red; solo el tick las consume
+    private final Queue<PlayerInput> inputs = new ConcurrentLinkedQueue<>();
+    private final int maxInputsPerTick;
+    // Lo que hizo avanzar la simulación desde el tick anterior: cambios de la sala, entradas y comidas
+    private final TickInputs current = new TickInputs();
+    // Hashes del estado cada HASH_INTERVAL ticks (lockstep), por tick / HASH_INTERVAL en anillo
+    private final int[] hashTicks = new int[HASH_HISTORY];
+    private final int[] hashes = new int[HASH_HISTORY];
+    private int matchId; // cambia en cada partida, invalida las bases anteriores
+    private ScheduledExecutorService scheduler;
+    private ExecutorService snapshotPool;
+    private ReplayStore replays;      // null = sin grabación
+    private ReplayRecorder recorder;  // grabación de la partida en curso
+    private ScheduledFuture<?> nextTick;
+    private int tickGeneration; // invalida un tick agendado que se reemplazó o canceló
+    private long periodNanos;
+    private long nextDeadline;  // System.nanoTime() en el que debe arrancar el próximo tick
+    private volatile boolean parked = true;
+    private final TickStats stats = new TickStats();
+    private volatile boolean stopped;
+    private volatile int aliveSnakes; // para las métricas, se actualiza en cada tick
+    
+    public GameEngine(Room room, FramePool framePool, NetworkServer network, ServerMetrics metrics,
+                      RoomSettings settings, int maxFoods, int foodTtlTicks) {
+        this.room = room;
+        this.framePool = framePool;
+        this.network = network;
+        this.metrics = metrics;
+        this.width = settings.getWidth();
+        this.height = settings.getHeight();
+        this.maxPlayers = settings.getMaxPlayers();
+        this.interestManaged = width > AOI_WIDTH || height > AOI_HEIGHT;
+        // En tableros más grandes que la vista cada cliente necesitaría el mundo entero: ahí no hay lockstep
+        this.lockstep = settings.isLockstep() && !interestManaged;
+        sim = new Simulation(width, height, maxPlayers, maxFoods, foodTtlTicks);
+        gameState = sim.getGameState();
+        grid = sim.getGrid();
+        maxInputsPerTick = Math.max(256, maxPlayers * 4);
+        seed = nextSeed();
+        sim.setSeed(seed);
+        history = new SnapshotHistory();
+        lastFoodGenerationTime = System.currentTimeMillis();
+        Arrays.fill(hashTicks, -1);
+    }
+    
+    private static long nextSeed() {
+        return FIXED_SEED != null ? FIXED_SEED : ThreadLocalRandom.current().nextLong();
+    }
+    
+    private static final class PlayerInput {
+        final int playerId;
+        final Snake.Direction direction;
+        final int seq;
+        PlayerInput(int playerId, Snake.Direction direction, int seq) {
+            this.playerId = playerId;
+            this.direction = direction;
+            this.seq = seq;
+        }
+    }
+    
+    // Los ticks corren en el pool compartido; la sala arranca estacionada hasta START_GAME
+    public synchronized void start(ScheduledExecutorService scheduler, ExecutorService snapshotPool, ReplayStore replays) {
+        this.scheduler = scheduler;
+        this.snapshotPool = snapshotPool;
+        this.replays = replays;
+    }
+    
+    public synchronized void stop() {
+        stopped = true;
+        cancelNextTick();
+        finishRecording();
+        if (!parked) {
+            System.out.println("Sala " + room.getId() + " detenida: " + stats);
+        }
+    }
+    
+    static long periodFor(GameState.Difficulty difficulty) {
+        return (long) (TimeUnit.MILLISECONDS.toNanos(BASE_GAME_SPEED) / difficulty.getSpeedMultiplier());
+    }
+    
+    private void cancelNextTick() {
+        tickGeneration++;
+        if (nextTick != null) {
+            nextTick.cancel(false);
+            nextTick = null;
+        }
+    }
+    
+    // Agenda el tick para el plazo absoluto; si ya pasó corre enseguida
+    private void scheduleAtDeadline() {
+        if (stopped || scheduler == null) {
+            return;
+        }
+        final int generation = tickGeneration;
+        long delay = Math.max(0, nextDeadline - System.nanoTime());
+        nextTick = scheduler.schedule(() -> runTick(generation), delay, TimeUnit.NANOSECONDS);
+    }
+    
+    private void unpark() {
+        if (!parked || stopped) {
+            return;
+        }
+        parked = false;
+        stats.reset();
+        periodNanos = periodFor(gameState.getDifficulty());
+        nextDeadline = System.nanoTime() + periodNanos;
+        scheduleAtDeadline();
+    }
+    
+    private void park() {
+        parked = true;
+        cancelNextTick();
+        System.out.println("Sala " + room.getId() + " en espera: " + stats);
+    }
+    
+    private synchronized void runTick(int generation) {
+        if (stopped || generation != tickGeneration) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            sim.expireFoods();
+            long updateStart = System.nanoTime();
+            drainInputs();
+            int players = room.getPlayerCount();
+            updateGame(players);                    
+            long foodStart = System.nanoTime();
+            // Generar nueva fruta cada 3 segundos
+            long currentTime = System.currentTimeMillis();
+            if (currentTime - lastFoodGenerationTime >= FOOD_GENERATION_INTERVAL) {
+                for (int i = Math.max(1, sim.getMaxFoods() / FOOD_SPAWN_DIVISOR); i > 0; i--) {
+                    sim.generateFood(current);
+                }
+                lastFoodGenerationTime = currentTime;
+            }                    
+            long broadcastStart = System.nanoTime();
+            endTick(players, currentTime);
+            broadcastGameState();
+            metrics.updateTime.record(foodStart - updateStart);
+            metrics.foodTime.record((updateStart - start) + (broadcastStart - foodStart));
+            metrics.broadcastTime.record(System.nanoTime() - broadcastStart);
+            recordTick();
+        } catch (RuntimeException e) {
+            // Un error en una sala no debe frenar los ticks de las demás
+            System.err.println("Error en el tick de la sala " + room.getId() + ": " + e.getMessage());
+            // El tick quedó a medias: la grabación termina en el anterior (los clientes lockstep piden el estado)
+            finishRecording();
+        } finally {
+            current.clear();
+        }
+        long end = System.nanoTime();
+        stats.record(start - nextDeadline, end - start, periodNanos);
+        metrics.ticks.increment();
+        metrics.tickTime.record(end - start);
+        if (end - start > periodNanos) {
+            metrics.tickOverruns.increment();
+        }
+        if (!gameState.isGameRunning()) {
+            // Partida terminada: no se agenda nada hasta el próximo START_GAME
+            park();
+            return;
+        }
+        nextDeadline += periodNanos;
+        // Con poco atraso los ticks siguientes corren seguidos hasta alcanzar el plazo;
+        // con mucho se saltan los plazos perdidos para no correr una ráfaga de ticks
+        long behind = end - nextDeadline;
+        if (behind > MAX_CATCH_UP_TICKS * periodNanos) {
+            long missed = behind / periodNanos;
+            nextDeadline += missed * periodNanos;
+            stats.skip(missed);
+            metrics.ticksSkipped.add(missed);
+        }
+        scheduleAtDeadline();
+    }
+    
+    // players: jugadores en la sala (con uno solo la partida sigue hasta que muere)
+    private void updateGame(int players) {
+        boolean over = sim.update(players);
+        aliveSnakes = sim.getAliveSnakes();
+        if (over) {
+            room.broadcastMessage(new Message(Message.Type.GAME_OVER, gameState));
+        }
+    }
+    
+    // Cierra el tick: la simulación pasa al número siguiente y sus entradas quedan listas para grabar y reenviar
+    private void endTick(int players, long time) {
+        sim.endTick();
+        gameState.setLastUpdateTime(time);
+        current.setTick(sim.getTick());
+        current.setPlayers(players);
+        current.setTime(time);
+    }
+    
+    // Visibles en el paquete para los benchmarks (bench/)
+    boolean checkCollisions(Snake snake) {
+        return sim.checkCollisions(snake);
+    }
+    
+    // Comida nueva fuera del tick (benchmarks): no se graba ni se reenvía
+    void generateFood() {
+        sim.generateFood(null);
+    }
+    
+    void expireFood(int slot) {
+        sim.expireFood(slot);
+    }
+    
+    private void broadcastGameState() {
+        int tick = sim.getTick();
+        if (lockstep) {
+            relayInputs(tick);
+            return;
+        }
+        if (interestManaged) {
+            // Cada vista es distinta: no hay deltas compartidos, va el estado completo de la ventana
+            broadcastViews();
+            if (tick % MINIMAP_INTERVAL == 0) {
+                room.broadcastMessage(new Message(Message.Type.MINIMAP, buildMinimap()));
+            }
+            return;
+        }
+        history.record(gameState, matchId);
+        
+        // Cada trama se codifica una sola vez: los clientes con la misma base comparten el delta
+        // y el estado completo se arma solo si algún cliente lo necesita
+        boolean keyframe = tick % KEYFRAME_INTERVAL == 0;
+        SharedFrame fullState = null;
+        Map<Integer, SharedFrame> deltas = new HashMap<>();
+        try {
+            for (ClientHandler client : room.getMembers()) {
+                SharedFrame frame = null;
+                if (!keyframe && client.supportsDeltas()) {
+                    int baseTick = client.getAckedTick();
+                    frame = deltas.get(baseTick);
+                    if (frame == null) {
+                        StateDelta delta = history.diff(baseTick, gameState, matchId);
+                        if (delta != null) {
+                            frame = framePool.encode(new Message(Message.Type.GAME_STATE_DELTA, delta));
+                            deltas.put(baseTick, frame);
+                        }
+                    }
+                }
+                if (frame == null) {
+                    if (fullState == null) {
+                        // Se codifica en este mismo hilo, no hace falta copiar el estado
+                        fullState = framePool.encode(new Message(Message.Type.GAME_STATE, gameState));
+                    }
+                    frame = fullState;
+                }
+                client.sendState(frame.retain(), room);
+            }
+            // Una sola escritura por cliente en este tick
+            network.flush();
+        } finally {
+            // Soltar las referencias propias; cada trama vuelve al pool tras la última escritura
+            if (fullState != null) {
+                fullState.release();
+            }
+            for (SharedFrame frame : deltas.values()) {
+                frame.release();
+            }
+        }
+    }
+    
+    // Sala lockstep: una sola trama con las entradas del tick, igual para todos y sin estado que armar
+    // Va por el carril de control (en orden, sin reemplazos) y sale en el flush del tick
+    // Cada HASH_INTERVAL ticks se guarda el hash del estado para compararlo con el que calculan los clientes
+    private void relayInputs(int tick) {
+        if (tick % Simulation.HASH_INTERVAL == 0) {
+            int index = (tick / Simulation.HASH_INTERVAL) % HASH_HISTORY;
+            hashTicks[index] = tick;
+            hashes[index] = sim.stateHash();
+        }
+        SharedFrame frame = framePool.encode(new Message(Message.Type.LOCKSTEP_TICK, current));
+        try {
+            for (ClientHandler client : room.getMembers()) {
+                client.sendTickFrame(frame.retain(), room);
+            }
+            network.flush();
+        } finally {
+            frame.release();
+        }
+    }
+    
+    // Estado completo para un cliente lockstep: al entrar a la sala o cuando su simulación se desfasó
+    public synchronized void sendSync(ClientHandler client) {
+        if (lockstep) {
+            client.sendFrame(framePool.encode(new Message(Message.Type.LOCKSTEP_SYNC, sim)), room);
+        }
+    }
+    
+    // Hash que calculó un cliente lockstep; si no coincide con el guardado (o pide el estado con tick -1)
+    // recibe el estado completo. Los hashes demasiado viejos ya no se pueden comparar y se ignoran
+    public synchronized void checkHash(ClientHandler client, int tick, int hash) {
+        if (!lockstep) {
+            return;
+        }
+        if (tick >= 0) {
+            int index = (tick / Simulation.HASH_INTERVAL) % HASH_HISTORY;
+            if (hashTicks[index] != tick || hashes[index] == hash) {
+                return;
+            }
+        }
+        metrics.lockstepResyncs.increment();
+        sendSync(client);
+    }
+    
+    // Arma y envía la vista de cada jugador; con muchos jugadores se reparten en tareas por núcleo
+    // El tick espera a todas antes del flush, así el estado no cambia mientras se leen
+    private void broadcastViews() {
+        ClientHandler[] targets = room.getMembers().toArray(new ClientHandler[0]);
+        if (targets.length < PARALLEL_VIEWS_FROM || snapshotPool == null) {
+            new ViewBuilder().sendViews(targets, 0, targets.length);
+        } else {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int from = 0; from < targets.length; from += VIEWS_PER_TASK) {
+                int start = from;
+                int end = Math.min(targets.length, from + VIEWS_PER_TASK);
+                tasks.add(snapshotPool.submit(() -> new ViewBuilder().sendViews(targets, start, end)));
+            }
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    System.err.println("Error armando vistas de la sala " + room.getId() + ": " + e.getCause());
+                }
+            }
+        }
+        network.flush();
+    }
+    
+    // Vista de un jugador: ventana alrededor de su cabeza, buscada en la grilla de ocupación
+    // (cada celda dice qué comida o serpiente hay ahí, no se recorren todas las serpientes)
+    private final class ViewBuilder {
+        private final int[] seen = new int[maxPlayers + 1]; // marca por serpiente de la vista actual
+        private int stamp;
+        
+        void sendViews(ClientHandler[] targets, int from, int to) {
+            for (int i = from; i < to; i++) {
+                ClientHandler client = targets[i];
+                GameState view = buildView(client.getPlayerId());
+                client.sendState(framePool.encode(new Message(Message.Type.GAME_STATE, view)), room);
+            }
+        }
+        
+        private GameState buildView(int playerId) {
+            stamp++;
+            int viewWidth = Math.min(AOI_WIDTH, width);
+            int viewHeight = Math.min(AOI_HEIGHT, height);
+            Snake own = sim.getSnake(playerId);
+            int centerX = width / 2;
+            int centerY = height / 2;
+            if (own != null && own.getSegments().size() > 0) {
+                centerX = own.getSegments().getX(0);
+                centerY = own.getSegments().getY(0);
+            }
+            int left = Math.max(0, Math.min(width - viewWidth, centerX - viewWidth / 2));
+            int top = Math.max(0, Math.min(height - viewHeight, centerY - viewHeight / 2));
+            int right = left + viewWidth;
+            int bottom = top + viewHeight;
+            
+            Snake[] snakes = gameState.getSnakes();
+            Snake[] visible = new Snake[snakes.length];
+            List<Food> foods = new ArrayList<>();
+            // La propia serpiente siempre va, aunque esté muerta y fuera de la grilla
+            if (own != null) {
+                seen[playerId] = stamp;
+                visible[playerId - 1] = clip(own, left, top, right, bottom);
+            }
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    int value = grid.get(x, y);
+                    if (OccupancyGrid.isFood(value)) {
+                        Food food = sim.getFood(OccupancyGrid.foodSlot(value));
+                        if (food != null) {
+                            foods.add(food);
+                        }
+                    } else if (grid.isSnake(value) && value <= maxPlayers && seen[value] != stamp) {
+                        seen[value] = stamp;
+                        Snake snake = snakes[value - 1];
+                        if (snake != null) {
+                            visible[value - 1] = clip(snake, left, top, right, bottom);
+                        }
+                    }
+                }
+            }
+            
+            GameState view = new GameState(width, height);
+            view.setTick(gameState.getTick());
+            view.setDifficulty(gameState.getDifficulty());
+            view.setGameRunning(gameState.isGameRunning());
+            view.setLastUpdateTime(gameState.getLastUpdateTime());
+            view.setFoods(foods);
+            view.setSnakes(visible);
+            return view;
+        }
+        
+        // Copia de la serpiente con solo los segmentos dentro de la ventana (en orden cabeza -> cola)
+        private Snake clip(Snake snake, int left, int top, int right, int bottom) {
+            SnakeBody segments = snake.getSegments();
+            SnakeBody body = new SnakeBody();
+            for (int i = 0; i < segments.size(); i++) {
+                int x = segments.getX(i);
+                int y = segments.getY(i);
+                if (x >= left && x < right && y >= top && y < bottom) {
+                    body.pushTail(x, y);
+                }
+            }
+            Snake copy = new Snake(snake.getPlayerId(), snake.getColor(), body, snake.getDirection());
+            copy.setAlive(snake.isAlive());
+            copy.setScore(snake.getScore());
+            copy.setInputSeq(snake.getInputSeq());
+            return copy;
+        }
+    }
+    
+    // Vista de un jugador fuera del tick (benchmarks)
+    GameState buildView(int playerId) {
+        return new ViewBuilder().buildView(playerId);
+    }
+    
+    GameState getGameState() {
+        return gameState;
+    }
+    
+    OccupancyGrid getGrid() {
+        return grid;
+    }
+    
+    // Cabezas vivas por región del tablero; las regiones conservan la proporción del tablero
+    private Minimap buildMinimap() {
+        int cols;
+        int rows;
+        if (width >= height) {
+            cols = Math.min(MINIMAP_MAX_SIDE, width);
+            rows = Math.max(1, Math.round((float) cols * height / width));
+        } else {
+            rows = Math.min(MINIMAP_MAX_SIDE, height);
+            cols = Math.max(1, Math.round((float) rows * width / height));
+        }
+        byte[] heads = new byte[cols * rows];
+        Snake[] snakes = gameState.getSnakes();
+        if (snakes != null) {
+            for (Snake snake : snakes) {
+                if (snake == null || !snake.isAlive() || snake.getSegments().size() == 0) {
+                    continue;
+                }
+                int col = snake.getSegments().getX(0) * cols / width;
+                int row = snake.getSegments().getY(0) * rows / height;
+                int i = row * cols + col;
+                if ((heads[i] & 0xFF) < 255) {
+                    heads[i]++;
+                }
+            }
+        }
+        return new Minimap(width, height, cols, rows, heads);
+    }
+    
+    // Se llama desde los hilos de red: solo encola, la serpiente se toca en el tick
+    public void movePlayer(int playerId, Snake.Direction direction, int seq) {
+        if (!parked && playerId > 0 && playerId <= maxPlayers) {
+            inputs.offer(new PlayerInput(playerId, direction, seq));
+        }
+    }
+    
+    // Pasa las entradas encoladas a los giros de cada jugador y aplica uno por serpiente
+    // Las que llegan a una serpiente viva son las que se graban y se reenvían
+    private void drainInputs() {
+        PlayerInput input;
+        int drained = 0;
+        while (drained++ < maxInputsPerTick && (input = inputs.poll()) != null) {
+            if (sim.applyInput(input.playerId, input.direction, input.seq)) {
+                current.addInput(input.playerId, input.direction, input.seq);
+            }
+        }
+        sim.applyTurns();
+    }
+    
+    // Los cambios de la sala se aplican enseguida y viajan con el tick siguiente (repetirlos no cambia nada)
+    public synchronized void removePlayer(int playerId) {
+        sim.removePlayer(playerId);
+        current.addEvent(TickInputs.REMOVE, playerId);
+    }
+    
+    public synchronized void setDifficulty(GameState.Difficulty difficulty) {
+        sim.setDifficulty(difficulty);
+        current.addEvent(TickInputs.DIFFICULTY, difficulty.ordinal());
+        long newPeriod = periodFor(difficulty);
+        if (!parked && newPeriod != periodNanos) {
+            // El próximo tick ya usa la velocidad nueva: se reagenda desde el plazo del último
+            cancelNextTick();
+            nextDeadline += newPeriod - periodNanos;
+            periodNanos = newPeriod;
+            scheduleAtDeadline();
+        } else {
+            periodNanos = newPeriod;
+        }
+    }
+    
+    public synchronized void startGame() {
+        List<ClientHandler> members = room.getMembers();
+        int[] playerIds = new int[members.size()];
+        int count = 0;
+        for (ClientHandler client : members) {
+            if (count < playerIds.length) {
+                playerIds[count++] = client.getPlayerId();
+            }
+        }
+        // Una partida reiniciada sin terminar cierra su grabación; la nueva arranca con otra semilla
+        finishRecording();
+        seed = nextSeed();
+        sim.setSeed(seed);
+        resetBoard(Arrays.copyOf(playerIds, count));
+        sim.generateFood(null);
+        gameState.setGameRunning(true);
+        // Lo que pasó antes ya está en el estado inicial, que va entero a la grabación y a los clientes lockstep
+        current.clear();
+        startRecording();
+        if (lockstep) {
+            room.broadcastMessage(new Message(Message.Type.LOCKSTEP_SYNC, sim));
+        }
+        unpark();
+    }
+    
+    private void startRecording() {
+        if (replays == null) {
+            return;
+        }
+        recorder = replays.open(room.getId(), matchId, width, height, maxPlayers, sim.getMaxFoods(),
+                sim.getFoodTtlTicks(), seed, gameState.getDifficulty(), sim.getTick());
+        recorder.keyframe(sim.getTick(), sim.keyframeSize(), sim::writeKeyframe);
+    }
+    
+    // Al final del tick: sus entradas y comidas, y cada tanto el estado completo
+    private void recordTick() {
+        if (recorder == null) {
+            return;
+        }
+        int tick = sim.getTick();
+        recorder.tick(current);
+        if (!gameState.isGameRunning()) {
+            // El estado final también va como keyframe: el reproductor puede verificar la partida entera
+            if (!recorder.keyframeDue(tick)) {
+                recorder.keyframe(tick, sim.keyframeSize(), sim::writeKeyframe);
+            }
+            finishRecording();
+        } else if (recorder.keyframeDue(tick)) {
+            recorder.keyframe(tick, sim.keyframeSize(), sim::writeKeyframe);
+        }
+    }
+    
+    private void finishRecording() {
+        if (recorder != null) {
+            recorder.finish(sim.getTick());
+            recorder = null;
+        }
+    }
+    
+    // Tablero de una partida nueva con las serpientes de estos jugadores, cada una en su lugar
+    void resetBoard(int[] playerIds) {
+        sim.resetBoard(playerIds);
+        aliveSnakes = sim.getAliveSnakes();
+        matchId++;
+        // Las entradas de la partida anterior no cuentan
+        inputs.clear();
+    }
+    
+    public int getAliveSnakes() {
+        return aliveSnakes;
+    }
+    
+    public boolean isGameRunning() {
+        return gameState.isGameRunning();
+    }
+    
+    public boolean isLockstep() {
+        return lockstep;
+    }
+}
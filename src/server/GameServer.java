@@ -2,466 +2,286 @@ package server;
 
 import common.*;
 import java.io.*;
-import java.net.*;
-import java.awt.*;
+import java.net.ProtocolException;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-// Servidor del juego
+// Servidor del juego: varias salas, cada una con su motor
+// Los ticks de todas las salas corren en un pool fijo de hilos, uno por núcleo
+// Las vistas por jugador de las salas grandes se arman en otro pool, también uno por núcleo
 public class GameServer {
     private static final int DEFAULT_PORT = 12345;
-    private static final int MAX_PLAYERS = 4;
-    private static final int BOARD_WIDTH = 40;
-    private static final int BOARD_HEIGHT = 30;
-    private static final int BASE_GAME_SPEED = 150; // ms entre cada actualización    
-    private ServerSocket serverSocket;
-    private List<ClientHandler> clients;
-    private GameEngine gameEngine;
-    private boolean running;
-    private ExecutorService threadPool;
+    private static final int MAX_CONNECTIONS = 4000;
+    private static final int MAX_ROOMS = 1000;
+    private static final long MAX_TOTAL_CELLS = 64L * 1024 * 1024; // suma de tableros de todas las salas
+    // Comida por sala: máximo en el tablero y ticks de vida (-Dsnake.maxFoods=N, -Dsnake.foodTtl=N)
+    private static final int MAX_FOODS = Integer.getInteger("snake.maxFoods", GameEngine.DEFAULT_MAX_FOODS);
+    private static final int FOOD_TTL_TICKS = Integer.getInteger("snake.foodTtl", GameEngine.DEFAULT_FOOD_TTL_TICKS);
+    // Segundos entre volcados de métricas a la salida (-Dsnake.metricsInterval=N, 0 = sin volcado)
+    private static final int METRICS_INTERVAL = Integer.getInteger("snake.metricsInterval", 60);
+    // Carpeta donde se graban las partidas (-Dsnake.replayDir=carpeta, sin ella no se graba)
+    private static final String REPLAY_DIR = System.getProperty("snake.replayDir");
+    private NetworkServer network;
+    private Set<ClientHandler> clients;
+    private Map<Integer, Room> rooms;
+    private AtomicInteger nextRoomId;
+    private AtomicLong totalCells;
+    private volatile boolean running;
+    private ScheduledExecutorService tickPool;
+    private ExecutorService snapshotPool;
+    // Buffers de las tramas salientes: cada mensaje se codifica una vez para todos
+    private final FramePool framePool;
+    // Contadores y tiempos, publicados por JMX
+    private final ServerMetrics metrics;
+    // Grabaciones de las partidas, null si no se graban
+    private ReplayStore replays;
     
     public GameServer(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
-        clients = new ArrayList<>();
-        threadPool = Executors.newCachedThreadPool();
+        // Pocos hilos de red fijos para todas las conexiones
+        int networkThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        clients = ConcurrentHashMap.newKeySet();
+        rooms = new ConcurrentHashMap<>();
+        metrics = new ServerMetrics(clients, rooms);
+        framePool = new FramePool(true, metrics.encodeTime);
+        network = new NetworkServer(port, networkThreads, new ServerListener(), metrics);
+        nextRoomId = new AtomicInteger(1);
+        totalCells = new AtomicLong();
+        tickPool = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+        // Aparte del de ticks: un tick espera a sus tareas sin ocupar los hilos donde corren
+        snapshotPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        metrics.register();
+        if (REPLAY_DIR != null) {
+            try {
+                replays = new ReplayStore(Paths.get(REPLAY_DIR));
+                System.out.println("Grabando partidas en " + REPLAY_DIR);
+            } catch (IOException e) {
+                System.err.println("No se pudo usar la carpeta de grabaciones " + REPLAY_DIR + ": " + e.getMessage());
+            }
+        }
+        if (METRICS_INTERVAL > 0) {
+            tickPool.scheduleAtFixedRate(() -> System.out.print(metrics.dump()),
+                    METRICS_INTERVAL, METRICS_INTERVAL, TimeUnit.SECONDS);
+        }
         running = true;        
-        gameEngine = new GameEngine();        
         System.out.println("Servidor Snake iniciado en puerto " + port);
         System.out.println("Esperando conexiones");
     }
     
     public void start() {
-        // Iniciar el motor del juego en un hilo separado
-        threadPool.submit(gameEngine);        
-        // Aceptar conexiones de clientes
-        while (running && !serverSocket.isClosed()) {
-            try {
-                Socket clientSocket = serverSocket.accept();                
-                if (clients.size() < MAX_PLAYERS) {
-                    ClientHandler client = new ClientHandler(clientSocket, clients.size() + 1);
-                    clients.add(client);
-                    threadPool.submit(client);                    
-                    System.out.println("Cliente conectado: " + clientSocket.getInetAddress() + " (Jugador " + client.getPlayerId() + ")");                    
-                    // Notificar sobre nuevo jugador
-                    broadcastMessage(new Message(Message.Type.PLAYER_JOINED, client.getPlayerId()));
-                } else {
-                    // Rechazar conexión si el servidor está lleno
-                    try (ObjectOutputStream out = new ObjectOutputStream(clientSocket.getOutputStream())) {
-                        out.writeObject(new Message(Message.Type.CONNECTION_REJECTED, "Servidor lleno"));
-                    }
-                    clientSocket.close();
-                }
-            } catch (IOException e) {
-                if (running) {
-                    System.err.println("Error aceptando conexión: " + e.getMessage());
-                }
-            }
+        // Los hilos de red aceptan y atienden a los clientes
+        network.start();
+        try {
+            network.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
     public void stop() {
         System.out.println("\nCerrando servidor...");
         running = false;        
+        // Desconectar a todos los jugadores
+        for (ClientHandler client : clients) {
+            client.cleanup();
+        }
+        // Cerrar socket del servidor y los hilos de red
+        if (network.isOpen()) {
+            network.stop();
+            System.out.println("Puerto liberado correctamente.");
+        }
+        clients.clear();
+        rooms.clear();
+        // Cerrar threads
+        metrics.unregister();
+        tickPool.shutdown();
         try {
-            // Desconectar a todos los jugadores
-            for (ClientHandler client : new ArrayList<>(clients)) {
-                client.cleanup();
+            if (!tickPool.awaitTermination(5, TimeUnit.SECONDS)) {
+                tickPool.shutdownNow();
             }
-            clients.clear();            
-            // Cerrar socket del servidor
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
-                System.out.println("Puerto liberado correctamente.");
-            }            
-            // Cerrar threads
-            threadPool.shutdown();
-            try {
-                if (!threadPool.awaitTermination(5, TimeUnit.SECONDS)) {
-                    threadPool.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                threadPool.shutdownNow();
-            }            
-            System.out.println("Servidor cerrado exitosamente.");            
-        } catch (IOException e) {
-            System.err.println("Error cerrando servidor: " + e.getMessage());
+        } catch (InterruptedException e) {
+            tickPool.shutdownNow();
+        }            
+        snapshotPool.shutdownNow();
+        if (replays != null) {
+            replays.close();
         }
+        System.out.println("Servidor cerrado exitosamente.");
     }
     
-    private void broadcastMessage(Message message) {
-        for (ClientHandler client : clients) {
-            client.sendMessage(message);
+    public List<RoomInfo> listRooms() {
+        List<RoomInfo> list = new ArrayList<>();
+        for (Room room : rooms.values()) {
+            list.add(room.info());
         }
+        list.sort(Comparator.comparingInt(RoomInfo::getId));
+        return list;
     }
     
-    private void removeClient(ClientHandler client) {
-        clients.remove(client);
-        gameEngine.removePlayer(client.getPlayerId());
-        broadcastMessage(new Message(Message.Type.PLAYER_LEFT, client.getPlayerId()));
-        System.out.println("Cliente desconectado: Jugador " + client.getPlayerId());
-    }
-    
-    // Clase que administra la comunicación con un cliente
-    private class ClientHandler implements Runnable {
-        private Socket socket;
-        private ObjectInputStream input;
-        private ObjectOutputStream output;
-        private int playerId;        
-        public ClientHandler(Socket socket, int playerId) throws IOException {
-            this.socket = socket;
-            this.playerId = playerId;
-            this.output = new ObjectOutputStream(socket.getOutputStream());
-            this.input = new ObjectInputStream(socket.getInputStream());
-            sendMessage(new Message(Message.Type.CONNECTION_ACCEPTED, playerId));
+    // Crea una sala nueva y mete en ella al cliente que la pidió
+    // Sin la capacidad lockstep el creador no podría jugar en ella: se crea una sala normal
+    public void createRoom(ClientHandler client, RoomSettings settings) {
+        if (settings.isLockstep() && !client.supportsLockstep()) {
+            settings = new RoomSettings(settings.getName(), settings.getWidth(), settings.getHeight(),
+                    settings.getMaxPlayers());
         }
-        
-        @Override
-        public void run() {
-            try {
-                Message message;
-                while ((message = (Message) input.readObject()) != null) {
-                    handleMessage(message);
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                // Cliente desconectado
-            } finally {
-                cleanup();
-            }
+        Room room = openRoom(settings);
+        if (room == null) {
+            client.sendMessage(new Message(Message.Type.ERROR, "No se pueden crear más salas"));
+            return;
         }
-        
-        private void handleMessage(Message message) {
-            switch (message.getType()) {
-                case MOVE_UP:
-                    gameEngine.movePlayer(playerId, Snake.Direction.UP);
-                    break;
-                case MOVE_DOWN:
-                    gameEngine.movePlayer(playerId, Snake.Direction.DOWN);
-                    break;
-                case MOVE_LEFT:
-                    gameEngine.movePlayer(playerId, Snake.Direction.LEFT);
-                    break;
-                case MOVE_RIGHT:
-                    gameEngine.movePlayer(playerId, Snake.Direction.RIGHT);
-                    break;
-                case SET_DIFFICULTY:
-                    if (message.getData() instanceof GameState.Difficulty) {
-                        gameEngine.setDifficulty((GameState.Difficulty) message.getData());
-                    }
-                    break;
-                case START_GAME:
-                    gameEngine.startGame();
-                    break;
-                case DISCONNECT:
-                    cleanup();
-                    break;
-            }
-        }
-        
-        public void sendMessage(Message message) {
-            try {
-                output.writeObject(message);
-                output.flush();
-            } catch (IOException e) {
-                // Error enviando mensaje, el cliente quizas está desconectado
-                cleanup();
-            }
-        }
-        
-        private void cleanup() {
-            try {
-                if (input != null) {
-                    input.close();
-                }
-                if (output != null) {
-                    output.close();
-                }
-                if (socket != null && !socket.isClosed()) {
-                    socket.close();
-                }
-            } catch (IOException e) {
-                // Ignorar errores al cerrar
-            }
-            removeClient(this);
-        }
-        
-        public int getPlayerId() {
-            return playerId;
+        leaveRoom(client);
+        if (room.join(client) < 0) {
+            client.sendMessage(new Message(Message.Type.ERROR, "No se pudo entrar a la sala"));
         }
     }
     
-    // Motor del juego que maneja la lógica
-    private class GameEngine implements Runnable {
-        private GameState gameState;
-        private Random random;
-        private long lastFoodGenerationTime;
-        private static final long FOOD_GENERATION_INTERVAL = 3000; // cada 3 segundos aparece una nueva comida 
-        
-        public GameEngine() {
-            gameState = new GameState(BOARD_WIDTH, BOARD_HEIGHT);
-            random = new Random();
-            lastFoodGenerationTime = System.currentTimeMillis();
-            initializeBoard();
+    // Entra a la sala pedida; con -1 busca cualquiera con lugar o crea una
+    public void joinRoom(ClientHandler client, int roomId) {
+        Room current = client.getRoom();
+        if (current != null && current.getId() == roomId) {
+            return;
         }
-        
-        private void initializeBoard() {
-            // Inicializar mapa vacio
-            Point[][] board = gameState.getBoard();
-            for (int y = 0; y < BOARD_HEIGHT; y++) {
-                for (int x = 0; x < BOARD_WIDTH; x++) {
-                    board[y][x] = null;
-                }
+        if (roomId >= 0) {
+            Room room = rooms.get(roomId);
+            if (room == null || room.isClosed()) {
+                client.sendMessage(new Message(Message.Type.ERROR, "La sala no existe"));
+                return;
             }
-        }
-        
-        @Override
-        public void run() {
-            while (running) {
-                if (gameState.isGameRunning()) {
-                    updateGame();                    
-                    // Generar nueva fruta cada 3 segundos
-                    long currentTime = System.currentTimeMillis();
-                    if (currentTime - lastFoodGenerationTime >= FOOD_GENERATION_INTERVAL) {
-                        generateFood();
-                        lastFoodGenerationTime = currentTime;
-                    }                    
-                    broadcastGameState();
-                } else {
-                    // Juego en pausa
-                }                
-                try {
-                    int sleepTime = (int)(BASE_GAME_SPEED / gameState.getDifficulty().getSpeedMultiplier());
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    break;
-                }
+            if (room.getPlayerCount() >= room.getMaxPlayers()) {
+                client.sendMessage(new Message(Message.Type.ERROR, "Sala llena"));
+                return;
             }
-        }
-        
-        private void updateGame() {
-            Snake[] snakes = gameState.getSnakes();
-            if (snakes == null) {
+            if (room.isLockstep() && !client.supportsLockstep()) {
+                client.sendMessage(new Message(Message.Type.ERROR, "La sala es lockstep y el cliente no la soporta"));
                 return;
-            }            
-            // Mover todas las serpientes
-            for (Snake snake : snakes) {
-                if (snake != null && snake.isAlive()) {
-                    snake.move();                    
-                    // Verificar colisiones
-                    if (checkCollisions(snake)) {
-                        snake.setAlive(false);
-                        continue;
-                    }                    
-                    // Verificar si come alguna fruta
-                    Food eatenFood = null;
-                    for (Food food : gameState.getFoods()) {
-                        if (food != null && snake.getHead().equals(food.getPosition())) {
-                            eatenFood = food;
-                            break;
-                        }
-                    }
-                    
-                    if (eatenFood != null) {
-                        snake.grow(eatenFood);
-                        gameState.getFoods().remove(eatenFood); // Remover la fruta comida
-                    } else {
-                        snake.removeTail();
-                    }
-                }
             }
-            
-            // Verificar si el juego debe acabar
-            int alivePlayers = 0;
-            for (Snake snake : snakes) {
-                if (snake != null && snake.isAlive()) {
-                    alivePlayers++;
-                }
+            leaveRoom(client);
+            if (room.join(client) < 0) {
+                client.sendMessage(new Message(Message.Type.ERROR, "Sala llena"));
             }
-            
-            // Solo terminar si no hay jugadores vivos
-            if (alivePlayers == 0) {
-                gameState.setGameRunning(false);
-                broadcastMessage(new Message(Message.Type.GAME_OVER, gameState));
+            return;
+        }
+        leaveRoom(client);
+        // Primero una sala esperando jugadores, si no una con lugar; las lockstep son partidas privadas
+        for (boolean waiting : new boolean[] {true, false}) {
+            for (Room room : rooms.values()) {
+                if (!room.isLockstep() && (!waiting || !room.info().isGameRunning()) && room.join(client) >= 0) {
+                    return;
+                }
             }
-            // Solo terminar si solo queda 1 vivo (para mas de un jugador)
-            else if (alivePlayers == 1 && clients.size() > 1) {
-                gameState.setGameRunning(false);
-                broadcastMessage(new Message(Message.Type.GAME_OVER, gameState));
+        }
+        createRoom(client, new RoomSettings(null));
+    }
+    
+    public void leaveRoom(ClientHandler client) {
+        Room room = client.exitRoom();
+        if (room != null && room.leave(client)) {
+            // Última persona en salir: se cierra la sala y su motor
+            if (rooms.remove(room.getId(), room)) {
+                totalCells.addAndGet(-room.getCellCount());
             }
+            System.out.println("Sala " + room.getId() + " cerrada");
         }
-        
-        private boolean checkCollisions(Snake snake) {
-            Point head = snake.getHead();            
-            // Choque con bordes
-            if (head.x < 0 || head.x >= BOARD_WIDTH || 
-                head.y < 0 || head.y >= BOARD_HEIGHT) {
-                return true;
-            }            
-            // Choque con paredes
-            if (gameState.getDifficulty() != GameState.Difficulty.EASY) {
-                if (checkWallCollision(head)) {
-                    return true;
-                }
-            }            
-            // Choque consigo mismo
-            if (snake.checkSelfCollision()) {
-                return true;
-            }            
-            // CHoque con otras serpientes
-            Snake[] snakes = gameState.getSnakes();
-            for (Snake other : snakes) {
-                if (other != null && other != snake && other.isAlive()) {
-                    if (snake.checkCollisionWith(other)) {
-                        return true;
-                    }
-                }
-            }            
-            return false;
+    }
+    
+    private Room openRoom(RoomSettings requested) {
+        if (rooms.size() >= MAX_ROOMS) {
+            return null;
         }
-        
-        private boolean checkWallCollision(Point point) {
-            // Pared que sale del borde arriba
-            boolean topWall = (point.x == BOARD_WIDTH/2 && point.y >= 0 && point.y <= 8);            
-            // Pared que sale del borde abajo  
-            boolean bottomWall = (point.x == BOARD_WIDTH/2 && point.y >= BOARD_HEIGHT-9 && point.y < BOARD_HEIGHT);            
-            // Pared que sale del borde izquierdo
-            boolean leftWall = (point.y == BOARD_HEIGHT/2 && point.x >= 0 && point.x <= 10);            
-            // Pared que sale del borde derecho
-            boolean rightWall = (point.y == BOARD_HEIGHT/2 && point.x >= BOARD_WIDTH-11 && point.x < BOARD_WIDTH);            
-            // Obstáculo central
-            boolean centerBlock = (point.x >= BOARD_WIDTH/2-1 && point.x <= BOARD_WIDTH/2+1 && point.y >= BOARD_HEIGHT/2-1 && point.y <= BOARD_HEIGHT/2+1);
-            
-            return topWall || bottomWall || leftWall || rightWall || centerBlock;
+        RoomSettings settings = requested.clamped();
+        long cells = (long) settings.getWidth() * settings.getHeight();
+        if (totalCells.addAndGet(cells) > MAX_TOTAL_CELLS) {
+            totalCells.addAndGet(-cells);
+            return null;
         }
-        
-        private void generateFood() {
-            Point foodPosition;
-            Snake[] snakes = gameState.getSnakes();    
-            do {
-                foodPosition = new Point(random.nextInt(BOARD_WIDTH), random.nextInt(BOARD_HEIGHT));
-            } while (isFoodOnSnake(foodPosition, snakes) || 
-                    isFoodOnExistingFood(foodPosition) ||
-                    (gameState.getDifficulty() != GameState.Difficulty.EASY && checkWallCollision(foodPosition)));
-            // Generar puntaje de comida random
-            Food.FoodType foodType;
-            int randomValue = random.nextInt(100);
-            if (randomValue < 60) {
-                foodType = Food.FoodType.SMALL;
-            } else if (randomValue < 90) {
-                foodType = Food.FoodType.MEDIUM;
-            } else {
-                foodType = Food.FoodType.LARGE;
-            }            
-            Food newFood = new Food(foodPosition, foodType);
-            gameState.getFoods().add(newFood); // Agregar a la lista en lugar de reemplazar
+        int id = nextRoomId.getAndIncrement();
+        String name = settings.getName();
+        if (name == null || name.trim().isEmpty()) {
+            name = "Sala " + id;
         }
-        
-        private boolean isFoodOnExistingFood(Point position) {
-            for (Food existingFood : gameState.getFoods()) {
-                if (existingFood.getPosition().equals(position)) {
-                    return true;
-                }
-            }
-            return false;
+        name = name.trim();
+        if (name.length() > RoomSettings.MAX_NAME_LENGTH) {
+            name = name.substring(0, RoomSettings.MAX_NAME_LENGTH);
         }
-        
-        private boolean isFoodOnSnake(Point foodPosition, Snake[] snakes) {
-            if (snakes == null) return false;            
-            for (Snake snake : snakes) {
-                if (snake != null) {
-                    for (Point segment : snake.getBody()) {
-                        if (segment.equals(foodPosition)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
+        settings = new RoomSettings(name, settings.getWidth(), settings.getHeight(), settings.getMaxPlayers(),
+                settings.isLockstep());
+        Room room = new Room(id, settings, framePool, network, metrics, MAX_FOODS, FOOD_TTL_TICKS);
+        rooms.put(id, room);
+        room.start(tickPool, snapshotPool, replays);
+        System.out.println("Sala " + id + " creada: " + name + " (" + settings.getWidth() + "x"
+                + settings.getHeight() + ", " + settings.getMaxPlayers() + " jugadores"
+                + (room.isLockstep() ? ", lockstep" : "") + ")");
+        return room;
+    }
+    
+    private void removeClient(ClientHandler client) {
+        if (!clients.remove(client)) {
+            return;
         }
-        
-        private void broadcastGameState() {
-            // crear un nuevo cliente
-            GameState freshGameState = new GameState(BOARD_WIDTH, BOARD_HEIGHT);
-            freshGameState.setDifficulty(gameState.getDifficulty());
-            freshGameState.setGameRunning(gameState.isGameRunning());
-            
-            // Clonar todas las frutas
-            java.util.List<Food> freshFoods = new java.util.ArrayList<>();
-            for (Food originalFood : gameState.getFoods()) {
-                if (originalFood != null) {
-                    freshFoods.add(new Food(originalFood.getPosition(), originalFood.getType()));
-                }
+        leaveRoom(client);
+        client.closeDatagrams();
+        System.out.println("Cliente desconectado: " + client.getConnection().getAddress());
+    }
+    
+    // Eventos de las conexiones, llegan desde los hilos de red
+    private class ServerListener implements NetworkListener {
+        @Override
+        public void onOpen(Connection connection) {
+            if (!running) {
+                connection.close();
+                return;
             }
-            freshGameState.setFoods(freshFoods);            
-            freshGameState.setLastUpdateTime(System.currentTimeMillis());            
-            // mostrar serpientes
-            Snake[] freshSnakes = new Snake[gameState.getSnakes().length];
-            for (int i = 0; i < gameState.getSnakes().length; i++) {
-                Snake originalSnake = gameState.getSnakes()[i];
-                if (originalSnake != null) {
-                    // Crear nueva serpiente
-                    Snake freshSnake = new Snake(originalSnake.getPlayerId(), 
-                                               new Point(0, 0),
-                                               originalSnake.getColor());
-                    freshSnake.getBody().clear();
-                    for (Point segment : originalSnake.getBody()) {
-                        freshSnake.getBody().add(new Point(segment.x, segment.y));
-                    }                    
-                    freshSnake.setAlive(originalSnake.isAlive());
-                    freshSnake.setScore(originalSnake.getScore());
-                    freshSnakes[i] = freshSnake;
+            synchronized (clients) {
+                if (clients.size() >= MAX_CONNECTIONS) {
+                    // Rechazar conexión si el servidor está lleno
+                    connection.sendAndClose(framePool.encode(new Message(Message.Type.CONNECTION_REJECTED, "Servidor lleno")));
+                    return;
                 }
+                ClientHandler client = new ClientHandler(connection, GameServer.this, framePool);
+                connection.setAttachment(client);
+                clients.add(client);
+                System.out.println("Cliente conectado: " + connection.getAddress());
             }
-            freshGameState.setSnakes(freshSnakes);            
-            broadcastMessage(new Message(Message.Type.GAME_STATE, freshGameState));
         }
         
-        public void movePlayer(int playerId, Snake.Direction direction) {
-            Snake[] snakes = gameState.getSnakes();
-            if (snakes != null && playerId > 0 && playerId <= snakes.length) {
-                Snake snake = snakes[playerId - 1];
-                if (snake != null && snake.isAlive()) {
-                    snake.setDirection(direction);
-                }
+        @Override
+        public void onMessage(Connection connection, Message message) {
+            ClientHandler client = (ClientHandler) connection.getAttachment();
+            if (client != null) {
+                client.receive(message);
             }
         }
         
-        public void removePlayer(int playerId) {
-            Snake[] snakes = gameState.getSnakes();
-            if (snakes != null && playerId > 0 && playerId <= snakes.length) {
-                snakes[playerId - 1] = null;
+        @Override
+        public void onInvalidFrame(Connection connection, ProtocolException error) {
+            ClientHandler client = (ClientHandler) connection.getAttachment();
+            if (client != null && !client.isHandshakeDone()) {
+                connection.sendAndClose(framePool.encode(new Message(Message.Type.CONNECTION_REJECTED, "Versión de protocolo incompatible")));
             }
         }
         
-        public void setDifficulty(GameState.Difficulty difficulty) {
-            gameState.setDifficulty(difficulty);
-        }
-        
-        public void startGame() {
-            // Inicializar serpientes para los jugadores conectados
-            Snake[] snakes = new Snake[MAX_PLAYERS];
-            Color[] colors = {Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW};            
-            for (int i = 0; i < clients.size(); i++) {
-                Point startPos = getStartPosition(i);
-                snakes[i] = new Snake(i + 1, startPos, colors[i]);
-            }            
-            gameState.setSnakes(snakes);
-            generateFood();
-            gameState.setGameRunning(true);
-        }
-        
-        private Point getStartPosition(int playerIndex) {
-            // Posiciones de inicio
-            switch (playerIndex) {
-                case 0: return new Point(10, 8);
-                case 1: return new Point(BOARD_WIDTH - 8, 8); 
-                case 2: return new Point(10, BOARD_HEIGHT - 8);
-                case 3: return new Point(BOARD_WIDTH - 8, BOARD_HEIGHT - 8);
-                default: return new Point(BOARD_WIDTH/2, BOARD_HEIGHT/2);
+        @Override
+        public void onClose(Connection connection) {
+            ClientHandler client = (ClientHandler) connection.getAttachment();
+            if (client != null) {
+                removeClient(client);
             }
         }
     }
     
+    // Canal UDP de estados; null si no se pudo abrir
+    public DatagramServer getDatagrams() {
+        return network.getDatagrams();
+    }
+    
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+    
     public static void main(String[] args) {
         int port = DEFAULT_PORT;
         
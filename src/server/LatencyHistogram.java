@@ -0,0 +1,114 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histograma de tiempos en nanosegundos, seguro entre hilos sin locks ni objetos nuevos al registrar
+// Barras log-lineales: 8 por cada potencia de 2, así el error de un percentil es de 12.5% como mucho
+public class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;   // ~18 minutos; lo que pase de ahí cae en la última barra
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    // Valores menores que 8 van directo; después, potencia de 2 y los 3 bits siguientes
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        value = Math.min(value, (1L << (MAX_EXPONENT + 1)) - 1);
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Mayor valor que entra en la barra
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    // Percentil aproximado en nanosegundos (límite superior de su barra, sin pasar del máximo visto)
+    public long percentile(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / (n * 1e3);
+    }
+    @Override
+    public double getP50Micros() {
+        return percentile(0.50) / 1e3;
+    }
+    @Override
+    public double getP90Micros() {
+        return percentile(0.90) / 1e3;
+    }
+    @Override
+    public double getP99Micros() {
+        return percentile(0.99) / 1e3;
+    }
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1e3;
+    }
+
+    // No es atómico respecto de los registros que lleguen mientras tanto
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d media=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                getCount(), getMeanMicros(), getP50Micros(), getP90Micros(), getP99Micros(), getMaxMicros());
+    }
+}
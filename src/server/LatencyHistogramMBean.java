@@ -0,0 +1,12 @@
+package server;
+
+// Vista JMX de un histograma de tiempos (en microsegundos, acumulado desde el inicio o el último reset)
+public interface LatencyHistogramMBean {
+    long getCount();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP90Micros();
+    double getP99Micros();
+    double getMaxMicros();
+    void reset();
+}
@@ -0,0 +1,13 @@
+package server;
+
+import common.Message;
+import java.net.ProtocolException;
+
+// Eventos de red que el servidor recibe desde los hilos de EventLoop
+interface NetworkListener {
+    void onOpen(Connection connection);
+    void onMessage(Connection connection, Message message);
+    // Trama que no se pudo decodificar; la conexión se cierra al volver
+    void onInvalidFrame(Connection connection, ProtocolException error);
+    void onClose(Connection connection);
+}
@@ -0,0 +1,123 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+// Transporte no bloqueante: unos pocos EventLoop atienden todas las conexiones
+// El primer loop también acepta conexiones nuevas y las reparte en ronda, y atiende el canal UDP de estados
+class NetworkServer implements EventLoop.Selectable {
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final NetworkListener listener;
+    private final ServerMetrics metrics;
+    private final DatagramServer datagrams; // null si no se pudo abrir el puerto UDP: todo va por TCP
+    private int nextLoop;
+
+    public NetworkServer(int port, int threads, NetworkListener listener, ServerMetrics metrics) throws IOException {
+        this.listener = listener;
+        this.metrics = metrics;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        DatagramServer udp = null;
+        try {
+            udp = new DatagramServer(port, metrics);
+        } catch (IOException e) {
+            System.err.println("No se pudo abrir el puerto UDP " + port + ", los estados irán por TCP: " + e.getMessage());
+        }
+        datagrams = udp;
+        loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop("red-" + i);
+        }
+    }
+
+    public void start() {
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+        loops[0].execute(() -> {
+            try {
+                serverChannel.register(loops[0].selector(), SelectionKey.OP_ACCEPT, this);
+            } catch (IOException e) {
+                System.err.println("Error registrando el socket del servidor: " + e.getMessage());
+            }
+            if (datagrams != null) {
+                datagrams.register(loops[0]);
+            }
+        });
+    }
+
+    // Aceptar todas las conexiones pendientes
+    @Override
+    public void onReady(SelectionKey key) {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                Connection connection = new Connection(channel, loop, listener, metrics);
+                loop.execute(connection::register);
+            }
+        } catch (IOException e) {
+            System.err.println("Error aceptando conexión: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onLoopClosed() {
+        close();
+    }
+
+    // Escribe lo encolado desde el último flush: un solo wakeup por loop
+    public void flush() {
+        for (EventLoop loop : loops) {
+            loop.wakeup();
+        }
+    }
+
+    public DatagramServer getDatagrams() {
+        return datagrams;
+    }
+
+    public boolean isOpen() {
+        return serverChannel.isOpen();
+    }
+
+    public void close() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Ignorar errores al cerrar
+        }
+        if (datagrams != null) {
+            datagrams.close();
+        }
+    }
+
+    // Cierra el socket del servidor y detiene los loops (cierran sus conexiones)
+    public void stop() {
+        close();
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        for (EventLoop loop : loops) {
+            loop.join(0);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package server;
+
+import common.Food;
+import common.GameState;
+import common.RoomSettings;
+import common.Simulation;
+import common.Snake;
+import common.TickInputs;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Lectura de una grabación (formato en ReplayRecorder): el archivo se mapea en memoria,
+// se salta al keyframe anterior al tick pedido con el índice y desde ahí se simulan los ticks grabados
+// con la misma Simulation que usa el servidor
+// Si falta el pie (el servidor se cortó) el índice se arma recorriendo el archivo
+class ReplayReader implements AutoCloseable {
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+    private static final Food.FoodType[] FOOD_TYPES = Food.FoodType.values();
+    private static final GameState.Difficulty[] DIFFICULTIES = GameState.Difficulty.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final int roomId;
+    private final int matchId;
+    private final RoomSettings settings;
+    private final int maxFoods;
+    private final int foodTtlTicks;
+    private final long seed;
+    private final GameState.Difficulty difficulty;
+    private final int startTick;
+    private final long startMillis;
+    private final int keyframeInterval;
+    private int[] keyframeTicks;
+    private long[] keyframeOffsets;
+    private int keyframes;
+    private int lastTick;
+    private final TickInputs record = new TickInputs(); // se reutiliza de un tick al siguiente
+
+    ReplayReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.limit() < ReplayRecorder.HEADER_SIZE || data.getInt(0) != ReplayRecorder.MAGIC) {
+            channel.close();
+            throw new ProtocolException("No es una grabación: " + file);
+        }
+        data.position(4);
+        short version = data.getShort();
+        if (version != ReplayRecorder.VERSION) {
+            channel.close();
+            throw new ProtocolException("Versión de grabación no soportada: " + version);
+        }
+        roomId = data.getInt();
+        matchId = data.getInt();
+        int width = data.getShort();
+        int height = data.getShort();
+        int maxPlayers = data.getShort();
+        settings = new RoomSettings("repetición", width, height, maxPlayers);
+        maxFoods = data.getInt();
+        foodTtlTicks = data.getInt();
+        seed = data.getLong();
+        difficulty = DIFFICULTIES[data.get()];
+        startTick = data.getInt();
+        startMillis = data.getLong();
+        keyframeInterval = data.getInt();
+        if (!readIndex()) {
+            scanIndex();
+        }
+    }
+
+    // Índice del pie: [long posición][int keyframes][int último tick][int MAGIC]
+    private boolean readIndex() {
+        int footer = data.limit() - ReplayRecorder.FOOTER_SIZE;
+        if (footer < ReplayRecorder.HEADER_SIZE || data.getInt(footer + 16) != ReplayRecorder.MAGIC) {
+            return false;
+        }
+        long indexOffset = data.getLong(footer);
+        keyframes = data.getInt(footer + 8);
+        lastTick = data.getInt(footer + 12);
+        if (indexOffset + (long) keyframes * ReplayRecorder.INDEX_ENTRY_SIZE != footer) {
+            return false;
+        }
+        keyframeTicks = new int[keyframes];
+        keyframeOffsets = new long[keyframes];
+        for (int i = 0; i < keyframes; i++) {
+            int entry = (int) indexOffset + i * ReplayRecorder.INDEX_ENTRY_SIZE;
+            keyframeTicks[i] = data.getInt(entry);
+            keyframeOffsets[i] = data.getLong(entry + 4);
+        }
+        return true;
+    }
+
+    // Grabación sin pie: se recorren los registros completos hasta donde se cortó
+    private void scanIndex() {
+        keyframeTicks = new int[16];
+        keyframeOffsets = new long[16];
+        keyframes = 0;
+        lastTick = startTick;
+        data.position(ReplayRecorder.HEADER_SIZE);
+        try {
+            while (data.hasRemaining()) {
+                int offset = data.position();
+                byte type = data.get();
+                if (type == ReplayRecorder.KEYFRAME) {
+                    int size = data.getInt();
+                    if (size > data.remaining()) {
+                        break;
+                    }
+                    if (keyframes == keyframeTicks.length) {
+                        keyframeTicks = Arrays.copyOf(keyframeTicks, keyframes * 2);
+                        keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+                    }
+                    keyframeTicks[keyframes] = data.getInt(data.position());
+                    keyframeOffsets[keyframes++] = offset;
+                    data.position(data.position() + size);
+                } else if (type == ReplayRecorder.TICK) {
+                    record.clear();
+                    readTick(data);
+                    lastTick = record.getTick();
+                } else if (type == ReplayRecorder.REMOVE) {
+                    data.getShort();
+                } else if (type == ReplayRecorder.DIFFICULTY) {
+                    data.get();
+                } else {
+                    break;
+                }
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            // Último registro cortado a la mitad
+        }
+    }
+
+    // Simulación vacía del tamaño de esta grabación
+    public Simulation createSimulation() {
+        return new Simulation(settings.getWidth(), settings.getHeight(), settings.getMaxPlayers(), maxFoods, foodTtlTicks);
+    }
+
+    // Deja la simulación en el keyframe más cercano antes del tick y devuelve la posición de lo que sigue;
+    // los keyframes están cada keyframeInterval ticks, así que el que sirve se calcula sin buscar
+    public int seek(Simulation sim, int tick) throws ProtocolException {
+        if (keyframes == 0) {
+            throw new ProtocolException("La grabación no tiene keyframes");
+        }
+        int index = Math.max(0, Math.min(keyframes - 1, (tick - startTick) / keyframeInterval));
+        // El último puede ser el del final de la partida, fuera del intervalo: se retrocede si se pasa del tick
+        while (index > 0 && keyframeTicks[index] > tick) {
+            index--;
+        }
+        ByteBuffer in = data.duplicate();
+        in.position((int) keyframeOffsets[index]);
+        if (in.get() != ReplayRecorder.KEYFRAME) {
+            throw new ProtocolException("Índice de keyframes inválido");
+        }
+        int size = in.getInt();
+        ByteBuffer keyframe = in.slice();
+        keyframe.limit(size);
+        sim.restoreKeyframe(keyframe);
+        return in.position() + size;
+    }
+
+    // Aplica a la simulación lo que sigue a la posición hasta el próximo tick inclusive; devuelve la posición
+    // siguiente, o -1 si la grabación terminó. Los keyframes del camino se pasan a verifier (puede ser null)
+    public int step(Simulation sim, int position, KeyframeVerifier verifier) throws ProtocolException {
+        ByteBuffer in = data.duplicate();
+        in.position(position);
+        record.clear();
+        try {
+            while (in.hasRemaining()) {
+                byte type = in.get();
+                switch (type) {
+                    case ReplayRecorder.TICK:
+                        readTick(in);
+                        if (record.getTick() != sim.getTick() + 1) {
+                            throw new ProtocolException("Tick " + record.getTick() + " fuera de orden");
+                        }
+                        sim.step(record);
+                        // El keyframe de este tick, si lo hay, va justo después
+                        if (in.hasRemaining() && in.get(in.position()) == ReplayRecorder.KEYFRAME) {
+                            in.get();
+                            skipKeyframe(in, verifier);
+                        }
+                        return in.position();
+                    case ReplayRecorder.REMOVE:
+                        record.addEvent(TickInputs.REMOVE, in.getShort());
+                        break;
+                    case ReplayRecorder.DIFFICULTY:
+                        record.addEvent(TickInputs.DIFFICULTY, DIFFICULTIES[in.get()].ordinal());
+                        break;
+                    case ReplayRecorder.KEYFRAME:
+                        skipKeyframe(in, verifier);
+                        break;
+                    default:
+                        return -1;
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            // Registro cortado (grabación sin terminar) o con un valor fuera de rango
+            return -1;
+        }
+        return -1;
+    }
+
+    private static void skipKeyframe(ByteBuffer in, KeyframeVerifier verifier) {
+        int size = in.getInt();
+        if (verifier != null) {
+            ByteBuffer keyframe = in.slice();
+            keyframe.limit(size);
+            verifier.check(keyframe);
+        }
+        in.position(in.position() + size);
+    }
+
+    // Keyframe grabado que se encontró al avanzar, para compararlo con el estado simulado
+    interface KeyframeVerifier {
+        void check(ByteBuffer keyframe);
+    }
+
+    // Deja en record las entradas y comidas del TICK (los cambios de la sala ya juntados se conservan)
+    private void readTick(ByteBuffer in) {
+        record.setTick(in.getInt());
+        record.setPlayers(in.getShort());
+        int count = in.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int playerId = in.getShort();
+            Snake.Direction direction = DIRECTIONS[in.get()];
+            record.addInput(playerId, direction, in.getInt());
+        }
+        count = in.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int cell = in.getInt();
+            record.addSpawn(cell, FOOD_TYPES[in.get()]);
+        }
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+    public int getMatchId() {
+        return matchId;
+    }
+    public RoomSettings getSettings() {
+        return settings;
+    }
+    public long getSeed() {
+        return seed;
+    }
+    public GameState.Difficulty getDifficulty() {
+        return difficulty;
+    }
+    public int getStartTick() {
+        return startTick;
+    }
+    public long getStartMillis() {
+        return startMillis;
+    }
+    public int getLastTick() {
+        return lastTick;
+    }
+    public int getKeyframes() {
+        return keyframes;
+    }
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,212 @@
+package server;
+
+import common.GameState;
+import common.TickInputs;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Grabación de una partida: semilla, entradas de cada tick (TickInputs) y cada tanto el estado completo (keyframe)
+// La usa solo el hilo del tick, bajo el lock del motor; los registros se juntan en memoria y se pasan
+// en bloques al hilo de ReplayStore, que los escribe con un FileChannel
+// Formato (big endian):
+//   cabecera: [int MAGIC][short VERSION][int sala][int partida][short ancho][short alto][short cupo]
+//             [int tope de comidas][int vida de la comida][long semilla][byte dificultad][int tick inicial]
+//             [long hora de inicio][int ticks entre keyframes]
+//   registros, cada uno con su tipo adelante:
+//     KEYFRAME [int largo][estado de la simulación (Simulation.writeKeyframe)]
+//     TICK [int tick][short jugadores en la sala][short n] n x [short jugador][byte dirección][int entrada]
+//          [short n] n x [int celda][byte tipo] (comidas que aparecieron)
+//     REMOVE [short jugador] y DIFFICULTY [byte dificultad]: cambios entre ticks, antes del TICK siguiente
+//     END [int último tick]
+//   índice: por keyframe [int tick][long posición]; al final [long posición del índice][int keyframes]
+//           [int último tick][int MAGIC]
+// Los keyframes van cada KEYFRAME_INTERVAL ticks desde el inicial (el de un tick se ubica sin buscar),
+// más uno con el estado final si la partida terminó entre dos
+class ReplayRecorder {
+    static final int MAGIC = 0x534E4B52; // "SNKR"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 4 + 2 + 4 + 4 + 2 + 2 + 2 + 4 + 4 + 8 + 1 + 4 + 8 + 4;
+    static final int INDEX_ENTRY_SIZE = 4 + 8;
+    static final int FOOTER_SIZE = 8 + 4 + 4 + 4;
+    static final byte KEYFRAME = 1;
+    static final byte TICK = 2;
+    static final byte REMOVE = 3;
+    static final byte DIFFICULTY = 4;
+    static final byte END = 5;
+    static final int KEYFRAME_INTERVAL = 100;
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final ReplayStore store;
+    private final Path file;
+    private final int startTick;
+    private ByteBuffer buffer = ByteBuffer.allocate(FLUSH_BYTES);
+    private long flushed;      // bytes ya pasados al hilo de escritura
+    private int[] keyframeTicks = new int[16];
+    private long[] keyframeOffsets = new long[16];
+    private int keyframes;
+    // Solo los toca el hilo de escritura
+    private FileChannel channel;
+    private boolean failed;
+
+    ReplayRecorder(ReplayStore store, Path file, int roomId, int matchId, int width, int height, int maxPlayers,
+                   int maxFoods, int foodTtlTicks, long seed, GameState.Difficulty difficulty, int startTick) {
+        this.store = store;
+        this.file = file;
+        this.startTick = startTick;
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putInt(roomId);
+        buffer.putInt(matchId);
+        buffer.putShort((short) width);
+        buffer.putShort((short) height);
+        buffer.putShort((short) maxPlayers);
+        buffer.putInt(maxFoods);
+        buffer.putInt(foodTtlTicks);
+        buffer.putLong(seed);
+        buffer.put((byte) difficulty.ordinal());
+        buffer.putInt(startTick);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putInt(KEYFRAME_INTERVAL);
+        store.execute(this::openFile);
+    }
+
+    // Un tick entero: primero los cambios de la sala (REMOVE, DIFFICULTY), después el TICK
+    public void tick(TickInputs inputs) {
+        ensure(inputs.getEventCount() * 5 + 1 + 4 + 2 + 2 + inputs.getInputCount() * 7 + 2 + inputs.getSpawnCount() * 5);
+        for (int i = 0; i < inputs.getEventCount(); i++) {
+            if (inputs.getEventKind(i) == TickInputs.REMOVE) {
+                buffer.put(REMOVE);
+                buffer.putShort((short) inputs.getEventValue(i));
+            } else if (inputs.getEventKind(i) == TickInputs.DIFFICULTY) {
+                buffer.put(DIFFICULTY);
+                buffer.put((byte) inputs.getEventValue(i));
+            }
+        }
+        buffer.put(TICK);
+        buffer.putInt(inputs.getTick());
+        buffer.putShort((short) inputs.getPlayers());
+        buffer.putShort((short) inputs.getInputCount());
+        for (int i = 0; i < inputs.getInputCount(); i++) {
+            buffer.putShort((short) inputs.getInputPlayer(i));
+            buffer.put((byte) inputs.getInputDirection(i).ordinal());
+            buffer.putInt(inputs.getInputSeq(i));
+        }
+        buffer.putShort((short) inputs.getSpawnCount());
+        for (int i = 0; i < inputs.getSpawnCount(); i++) {
+            buffer.putInt(inputs.getSpawnCell(i));
+            buffer.put((byte) inputs.getSpawnType(i).ordinal());
+        }
+        if (buffer.position() >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    public boolean keyframeDue(int tick) {
+        return (tick - startTick) % KEYFRAME_INTERVAL == 0;
+    }
+
+    public void keyframe(int tick, int size, Consumer<ByteBuffer> writer) {
+        ensure(1 + 4 + size);
+        if (keyframes == keyframeTicks.length) {
+            keyframeTicks = Arrays.copyOf(keyframeTicks, keyframes * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+        }
+        keyframeTicks[keyframes] = tick;
+        keyframeOffsets[keyframes++] = flushed + buffer.position();
+        buffer.put(KEYFRAME);
+        buffer.putInt(size);
+        int start = buffer.position();
+        writer.accept(buffer);
+        if (buffer.position() - start != size) {
+            throw new IllegalStateException("Keyframe de " + (buffer.position() - start) + " bytes, se esperaban " + size);
+        }
+        flush();
+    }
+
+    // Cierra la grabación: END, índice de keyframes y pie
+    public void finish(int lastTick) {
+        ensure(1 + 4 + keyframes * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+        buffer.put(END);
+        buffer.putInt(lastTick);
+        long indexOffset = flushed + buffer.position();
+        for (int i = 0; i < keyframes; i++) {
+            buffer.putInt(keyframeTicks[i]);
+            buffer.putLong(keyframeOffsets[i]);
+        }
+        buffer.putLong(indexOffset);
+        buffer.putInt(keyframes);
+        buffer.putInt(lastTick);
+        buffer.putInt(MAGIC);
+        flush();
+        store.execute(this::closeFile);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    // Pasa lo juntado al hilo de escritura
+    private void flush() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        ByteBuffer block = buffer;
+        block.flip();
+        flushed += block.remaining();
+        buffer = ByteBuffer.allocate(FLUSH_BYTES);
+        store.execute(() -> write(block));
+    }
+
+    private void openFile() {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void write(ByteBuffer block) {
+        if (failed) {
+            return;
+        }
+        try {
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void closeFile() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            if (!failed) {
+                System.out.println("Grabación escrita: " + file);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (!failed) {
+            failed = true;
+            System.err.println("No se pudo escribir la grabación " + file + ": " + e.getMessage());
+        }
+    }
+}
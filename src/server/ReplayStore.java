@@ -0,0 +1,53 @@
+package server;
+
+import common.GameState;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Carpeta de grabaciones de las partidas (-Dsnake.replayDir=carpeta)
+// Un solo hilo escribe los archivos de todas las salas: el tick solo arma los registros en memoria
+class ReplayStore {
+    private final Path directory;
+    private final ExecutorService writer;
+
+    ReplayStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Grabación nueva de una partida que arranca en startTick
+    public ReplayRecorder open(int roomId, int matchId, int width, int height, int maxPlayers, int maxFoods,
+                               int foodTtlTicks, long seed, GameState.Difficulty difficulty, int startTick) {
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        Path file = directory.resolve("sala" + roomId + "-" + stamp + "-partida" + matchId + ".replay");
+        return new ReplayRecorder(this, file, roomId, matchId, width, height, maxPlayers, maxFoods, foodTtlTicks,
+                seed, difficulty, startTick);
+    }
+
+    // Las tareas de un archivo corren en el orden en que se piden
+    void execute(Runnable task) {
+        writer.execute(task);
+    }
+
+    // Termina de escribir lo pendiente (las salas ya cerraron sus grabaciones)
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("Quedaron grabaciones sin terminar de escribir");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package server;
+
+import common.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Reproductor de grabaciones sin ventana: salta al tick pedido y simula hacia adelante
+// a la velocidad pedida (--speed 0 = sin pausas), mostrando puntajes y, en tableros chicos, el tablero
+// Con --verify compara cada keyframe grabado con el estado simulado (la simulación debe ser idéntica)
+// Ejemplo: java -cp bin server.ReplayViewer replays/sala1-....replay --from 500 --speed 20 --board true
+public class ReplayViewer {
+    private static final int MAX_BOARD_WIDTH = 120; // más ancho no se dibuja en la consola
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Uso: ReplayViewer archivo [--from tick] [--to tick] [--speed x] [--board true] [--verify true]");
+            System.exit(1);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Opción inválida: " + args[i]);
+                System.exit(1);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        try (ReplayReader reader = new ReplayReader(Paths.get(args[0]))) {
+            play(reader, options);
+        }
+    }
+
+    private static void play(ReplayReader reader, Map<String, String> options) throws Exception {
+        RoomSettings settings = reader.getSettings();
+        System.out.printf("Sala %d, partida %d, %s: tablero %dx%d, %d jugadores, semilla %d, dificultad %s%n",
+                reader.getRoomId(), reader.getMatchId(),
+                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(reader.getStartMillis())),
+                settings.getWidth(), settings.getHeight(), settings.getMaxPlayers(), reader.getSeed(),
+                reader.getDifficulty());
+        System.out.printf("Ticks %d a %d, %d keyframes (cada %d ticks)%n", reader.getStartTick(), reader.getLastTick(),
+                reader.getKeyframes(), reader.getKeyframeInterval());
+        int from = Integer.parseInt(options.getOrDefault("from", String.valueOf(reader.getStartTick())));
+        int to = Integer.parseInt(options.getOrDefault("to", String.valueOf(reader.getLastTick())));
+        double speed = Double.parseDouble(options.getOrDefault("speed", "1"));
+        boolean board = Boolean.parseBoolean(options.getOrDefault("board", "false")) && settings.getWidth() <= MAX_BOARD_WIDTH;
+        boolean verify = Boolean.parseBoolean(options.getOrDefault("verify", "false"));
+
+        Simulation sim = reader.createSimulation();
+        long seekStart = System.nanoTime();
+        int position = reader.seek(sim, from);
+        int keyframeTick = sim.getTick();
+        // Del keyframe al tick pedido se simula sin mostrar
+        while (position >= 0 && sim.getGameState().getTick() < from) {
+            position = reader.step(sim, position, null);
+        }
+        System.out.printf("Tick %d desde el keyframe del tick %d en %.2f ms%n", sim.getGameState().getTick(),
+                keyframeTick, (System.nanoTime() - seekStart) / 1e6);
+
+        KeyframeCheck check = verify ? new KeyframeCheck(sim) : null;
+        show(sim.getGameState(), board);
+        long start = System.nanoTime();
+        long next = start;
+        int ticks = 0;
+        while (position >= 0 && sim.getGameState().getTick() < to) {
+            position = reader.step(sim, position, check);
+            if (position < 0) {
+                break;
+            }
+            ticks++;
+            if (speed > 0) {
+                next += (long) (GameEngine.periodFor(sim.getGameState().getDifficulty()) / speed);
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            show(sim.getGameState(), board);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double played = ticks * GameEngine.periodFor(sim.getGameState().getDifficulty()) / 1e9;
+        System.out.printf("%d ticks en %.2f s (%.0f veces el tiempo real)%n", ticks, seconds,
+                seconds > 0 ? played / seconds : 0);
+        if (check != null) {
+            System.out.printf("Keyframes verificados: %d, distintos: %d%n", check.checked, check.mismatches);
+            if (check.mismatches > 0) {
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void show(GameState state, boolean board) {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("tick %6d  comidas %3d  ", state.getTick(), state.getFoods().size()));
+        Snake[] snakes = state.getSnakes();
+        if (snakes != null) {
+            for (Snake snake : snakes) {
+                if (snake != null) {
+                    line.append(String.format(" %d:%d%s", snake.getPlayerId(), snake.getScore(), snake.isAlive() ? "" : "x"));
+                }
+            }
+        }
+        if (!state.isGameRunning()) {
+            line.append("  [fin]");
+        }
+        System.out.println(line);
+        if (board) {
+            System.out.print(render(state));
+        }
+    }
+
+    // Tablero en texto: cabezas en mayúscula, muertas con x y comidas con *
+    private static String render(GameState state) {
+        int width = state.getBoardWidth();
+        int height = state.getBoardHeight();
+        char[][] cells = new char[height][width];
+        for (char[] row : cells) {
+            Arrays.fill(row, '.');
+        }
+        for (Food food : state.getFoods()) {
+            if (food.getX() >= 0 && food.getX() < width && food.getY() >= 0 && food.getY() < height) {
+                cells[food.getY()][food.getX()] = '*';
+            }
+        }
+        Snake[] snakes = state.getSnakes();
+        if (snakes != null) {
+            for (Snake snake : snakes) {
+                if (snake == null) {
+                    continue;
+                }
+                SnakeBody body = snake.getSegments();
+                char mark = snake.isAlive() ? Character.forDigit(snake.getPlayerId() % 36, 36) : 'x';
+                for (int i = body.size() - 1; i >= 0; i--) {
+                    int x = body.getX(i);
+                    int y = body.getY(i);
+                    if (x >= 0 && x < width && y >= 0 && y < height) {
+                        cells[y][x] = i == 0 ? Character.toUpperCase(mark) : mark;
+                    }
+                }
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        for (char[] row : cells) {
+            out.append(row).append('\n');
+        }
+        return out.toString();
+    }
+
+    // Compara los keyframes grabados con el estado simulado en ese mismo tick
+    private static final class KeyframeCheck implements ReplayReader.KeyframeVerifier {
+        private final Simulation sim;
+        int checked;
+        int mismatches;
+
+        KeyframeCheck(Simulation sim) {
+            this.sim = sim;
+        }
+
+        @Override
+        public void check(ByteBuffer recorded) {
+            ByteBuffer simulated = ByteBuffer.allocate(sim.keyframeSize());
+            sim.writeKeyframe(simulated);
+            simulated.flip();
+            checked++;
+            if (!simulated.equals(recorded)) {
+                mismatches++;
+                System.out.println("El keyframe del tick " + recorded.getInt(0) + " no coincide con la simulación");
+            }
+        }
+    }
+}
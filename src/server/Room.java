@@ -0,0 +1,162 @@
+package server;
+
+import common.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+// Sala de juego: sus jugadores y su propio motor
+class Room {
+    private final int id;
+    private final String name;
+    private final int width;
+    private final int height;
+    private final int maxPlayers;
+    private final FramePool framePool;
+    private final GameEngine engine;
+    private final List<ClientHandler> members = new CopyOnWriteArrayList<>();
+    private final ClientHandler[] slots; // lugar = número de jugador - 1
+    private boolean closed;
+
+    public Room(int id, RoomSettings settings, FramePool framePool, NetworkServer network, ServerMetrics metrics,
+                int maxFoods, int foodTtlTicks) {
+        this.id = id;
+        this.name = settings.getName();
+        this.width = settings.getWidth();
+        this.height = settings.getHeight();
+        this.maxPlayers = settings.getMaxPlayers();
+        this.slots = new ClientHandler[maxPlayers];
+        this.framePool = framePool;
+        this.engine = new GameEngine(this, framePool, network, metrics, settings, maxFoods, foodTtlTicks);
+    }
+
+    // replays: carpeta de grabaciones, null si no se graban las partidas
+    public void start(ScheduledExecutorService tickPool, ExecutorService snapshotPool, ReplayStore replays) {
+        engine.start(tickPool, snapshotPool, replays);
+    }
+
+    // Agrega al cliente en el primer lugar libre; devuelve su número de jugador o -1 si no entra
+    public synchronized int join(ClientHandler client) {
+        if (closed || members.size() >= maxPlayers) {
+            return -1;
+        }
+        int playerId = 1;
+        while (slots[playerId - 1] != null) {
+            playerId++;
+        }
+        slots[playerId - 1] = client;
+        // El cliente ya tiene su número cuando el motor lo ve como miembro
+        client.enterRoom(this, playerId);
+        members.add(client);
+        broadcastMessage(new Message(Message.Type.PLAYER_JOINED, playerId));
+        // En lockstep el cliente arma el tablero con el estado completo y sigue con los ticks que vengan
+        engine.sendSync(client);
+        return playerId;
+    }
+
+    // Saca al cliente; devuelve true si la sala quedó vacía y se cerró
+    public synchronized boolean leave(ClientHandler client) {
+        if (!members.remove(client)) {
+            return false;
+        }
+        for (int i = 0; i < maxPlayers; i++) {
+            if (slots[i] == client) {
+                slots[i] = null;
+                engine.removePlayer(i + 1);
+                broadcastMessage(new Message(Message.Type.PLAYER_LEFT, i + 1));
+            }
+        }
+        if (members.isEmpty()) {
+            closed = true;
+            engine.stop();
+            return true;
+        }
+        return false;
+    }
+
+    // Mensajes de juego de un jugador de la sala
+    public void handleMessage(ClientHandler client, Message message) {
+        switch (message.getType()) {
+            case MOVE_UP:
+                engine.movePlayer(client.getPlayerId(), Snake.Direction.UP, inputSeq(message));
+                break;
+            case MOVE_DOWN:
+                engine.movePlayer(client.getPlayerId(), Snake.Direction.DOWN, inputSeq(message));
+                break;
+            case MOVE_LEFT:
+                engine.movePlayer(client.getPlayerId(), Snake.Direction.LEFT, inputSeq(message));
+                break;
+            case MOVE_RIGHT:
+                engine.movePlayer(client.getPlayerId(), Snake.Direction.RIGHT, inputSeq(message));
+                break;
+            case SET_DIFFICULTY:
+                if (message.getData() instanceof GameState.Difficulty) {
+                    engine.setDifficulty((GameState.Difficulty) message.getData());
+                }
+                break;
+            case START_GAME:
+                engine.startGame();
+                break;
+            case LOCKSTEP_HASH: {
+                int[] hash = (int[]) message.getData();
+                engine.checkHash(client, hash[0], hash[1]);
+                break;
+            }
+        }
+    }
+
+    // Número de secuencia de un movimiento (0 si el cliente no lo manda)
+    private static int inputSeq(Message message) {
+        return message.getData() instanceof Integer ? (Integer) message.getData() : 0;
+    }
+
+    // Se codifica una sola vez para todos los jugadores de la sala
+    public void broadcastMessage(Message message) {
+        SharedFrame frame = framePool.encode(message);
+        try {
+            for (ClientHandler member : members) {
+                member.sendFrame(frame.retain(), this);
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    public RoomInfo info() {
+        return new RoomInfo(id, name, members.size(), maxPlayers, width, height, engine.isGameRunning(),
+                engine.isLockstep());
+    }
+
+    public int getId() {
+        return id;
+    }
+    public String getName() {
+        return name;
+    }
+    public List<ClientHandler> getMembers() {
+        return members;
+    }
+    public boolean isLockstep() {
+        return engine.isLockstep();
+    }
+    GameEngine getEngine() {
+        return engine;
+    }
+    public int getMaxPlayers() {
+        return maxPlayers;
+    }
+    // Celdas del tablero, para el tope de memoria del servidor
+    public long getCellCount() {
+        return (long) width * height;
+    }
+    public int getPlayerCount() {
+        return members.size();
+    }
+    public int getAliveSnakes() {
+        return engine.getAliveSnakes();
+    }
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
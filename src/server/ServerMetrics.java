@@ -0,0 +1,194 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Métricas del servidor: contadores y tiempos que registran el tick, la red y la codificación
+// Registrar es barato (LongAdder e histogramas sin locks ni objetos nuevos), se puede dejar siempre encendido
+// Los valores que dependen del estado (clientes, salas, colas) se calculan recién al leerlos
+public class ServerMetrics implements ServerMetricsMBean {
+    private static final String DOMAIN = "snake";
+
+    // Tiempos del tick por fase y de la codificación de mensajes
+    final LatencyHistogram tickTime = new LatencyHistogram();
+    final LatencyHistogram updateTime = new LatencyHistogram();
+    final LatencyHistogram foodTime = new LatencyHistogram();
+    final LatencyHistogram broadcastTime = new LatencyHistogram();
+    final LatencyHistogram encodeTime = new LatencyHistogram();
+
+    final LongAdder ticks = new LongAdder();
+    final LongAdder tickOverruns = new LongAdder();
+    final LongAdder ticksSkipped = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder bytesReceived = new LongAdder();
+    final LongAdder messagesSent = new LongAdder();
+    final LongAdder messagesReceived = new LongAdder();
+    final LongAdder messagesDropped = new LongAdder(); // descartados por el límite de mensajes
+    final LongAdder datagramsSent = new LongAdder();
+    final LongAdder datagramsLost = new LongAdder();   // no aceptados por el socket o descartados a propósito
+    final LongAdder lockstepResyncs = new LongAdder(); // estados completos mandados a clientes lockstep desfasados
+
+    private final Set<ClientHandler> clients;
+    private final Map<Integer, Room> rooms;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public ServerMetrics(Set<ClientHandler> clients, Map<Integer, Room> rooms) {
+        this.clients = clients;
+        this.rooms = rooms;
+    }
+
+    // Publica las métricas en el servidor de MBeans de la plataforma (jconsole, VisualVM, etc.)
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, DOMAIN + ":type=Server", this);
+            register(server, DOMAIN + ":type=Latency,name=tick", tickTime);
+            register(server, DOMAIN + ":type=Latency,name=update", updateTime);
+            register(server, DOMAIN + ":type=Latency,name=food", foodTime);
+            register(server, DOMAIN + ":type=Latency,name=broadcast", broadcastTime);
+            register(server, DOMAIN + ":type=Latency,name=encode", encodeTime);
+        } catch (JMException e) {
+            System.err.println("No se pudieron registrar las métricas JMX: " + e.getMessage());
+        }
+    }
+
+    private void register(MBeanServer server, String name, Object bean) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(bean, objectName);
+        registered.add(objectName);
+    }
+
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // Ya no estaba
+            }
+        }
+        registered.clear();
+    }
+
+    @Override
+    public int getConnectedClients() {
+        return clients.size();
+    }
+    @Override
+    public int getLiveRooms() {
+        return rooms.size();
+    }
+    @Override
+    public int getLiveSnakes() {
+        int snakes = 0;
+        for (Room room : rooms.values()) {
+            snakes += room.getAliveSnakes();
+        }
+        return snakes;
+    }
+    @Override
+    public long getTicks() {
+        return ticks.sum();
+    }
+    @Override
+    public long getTickOverruns() {
+        return tickOverruns.sum();
+    }
+    @Override
+    public long getTicksSkipped() {
+        return ticksSkipped.sum();
+    }
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+    @Override
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+    @Override
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+    @Override
+    public long getMessagesDropped() {
+        return messagesDropped.sum();
+    }
+    @Override
+    public long getDatagramsSent() {
+        return datagramsSent.sum();
+    }
+    @Override
+    public long getDatagramsLost() {
+        return datagramsLost.sum();
+    }
+    @Override
+    public long getLockstepResyncs() {
+        return lockstepResyncs.sum();
+    }
+    // Tramas esperando salir, sumando todas las conexiones
+    @Override
+    public int getOutboundQueueDepth() {
+        int depth = 0;
+        for (ClientHandler client : clients) {
+            depth += client.getConnection().getQueueDepth();
+        }
+        return depth;
+    }
+    @Override
+    public int getMaxOutboundQueueDepth() {
+        int max = 0;
+        for (ClientHandler client : clients) {
+            max = Math.max(max, client.getConnection().getQueueDepth());
+        }
+        return max;
+    }
+
+    // Una línea por cliente con su tráfico y su cola de salida
+    @Override
+    public String clientReport() {
+        StringBuilder out = new StringBuilder();
+        for (ClientHandler client : clients) {
+            Connection connection = client.getConnection();
+            Room room = client.getRoom();
+            out.append(String.format("%s sala=%s jugador=%d enviados=%d msgs/%d bytes recibidos=%d msgs/%d bytes cola=%d%n",
+                    connection.getAddress(), room == null ? "-" : String.valueOf(room.getId()), client.getPlayerId(),
+                    connection.getMessagesSent(), connection.getBytesSent(),
+                    connection.getMessagesReceived(), connection.getBytesReceived(), connection.getQueueDepth()));
+        }
+        return out.toString();
+    }
+
+    // Resumen en texto para el volcado periódico
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("[métricas] clientes=%d salas=%d serpientes=%d cola=%d (máx %d)%n",
+                getConnectedClients(), getLiveRooms(), getLiveSnakes(), getOutboundQueueDepth(), getMaxOutboundQueueDepth()));
+        out.append(String.format("[métricas] ticks=%d atrasados=%d saltados=%d%n", getTicks(), getTickOverruns(), getTicksSkipped()));
+        out.append(String.format("[métricas] enviados=%d msgs/%d bytes recibidos=%d msgs/%d bytes descartados=%d%n",
+                getMessagesSent(), getBytesSent(), getMessagesReceived(), getBytesReceived(), getMessagesDropped()));
+        out.append(String.format("[métricas] datagramas enviados=%d perdidos=%d%n", getDatagramsSent(), getDatagramsLost()));
+        out.append(String.format("[métricas] resincronizaciones lockstep=%d%n", getLockstepResyncs()));
+        out.append("[métricas] tick ").append(tickTime).append('\n');
+        out.append("[métricas]   actualizar ").append(updateTime).append('\n');
+        out.append("[métricas]   comida ").append(foodTime).append('\n');
+        out.append("[métricas]   envío ").append(broadcastTime).append('\n');
+        out.append("[métricas] codificar ").append(encodeTime).append('\n');
+        return out.toString();
+    }
+}
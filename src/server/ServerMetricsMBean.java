@@ -0,0 +1,23 @@
+package server;
+
+// Vista JMX de los contadores del servidor (snake:type=Server)
+public interface ServerMetricsMBean {
+    int getConnectedClients();
+    int getLiveRooms();
+    int getLiveSnakes();
+    long getTicks();
+    long getTickOverruns();
+    long getTicksSkipped();
+    long getBytesSent();
+    long getBytesReceived();
+    long getMessagesSent();
+    long getMessagesReceived();
+    long getMessagesDropped();
+    long getDatagramsSent();
+    long getDatagramsLost();
+    long getLockstepResyncs();
+    int getOutboundQueueDepth();
+    int getMaxOutboundQueueDepth();
+    String clientReport();
+    String dump();
+}
@@ -0,0 +1,51 @@
+package server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Trama ya codificada que se comparte entre varios clientes
+// Cada destinatario hace retain() antes de recibirla y release() al terminar de escribirla;
+// cuando nadie la usa vuelve al pool
+class SharedFrame {
+    private final ByteBuffer buffer;
+    private final FramePool pool;
+    private final AtomicInteger references = new AtomicInteger();
+
+    SharedFrame(ByteBuffer buffer, FramePool pool) {
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    // Lo llama el pool al entregarla: queda con una referencia (la del que la codificó)
+    void reset() {
+        buffer.clear();
+        references.set(1);
+    }
+
+    public SharedFrame retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int left = references.decrementAndGet();
+        if (left == 0) {
+            pool.recycle(this);
+        } else if (left < 0) {
+            throw new IllegalStateException("Trama liberada de más");
+        }
+    }
+
+    // Vista independiente (posición propia) de los bytes de la trama
+    public ByteBuffer view() {
+        return buffer.duplicate();
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,113 @@
+package server;
+
+import common.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Historial de los últimos estados enviados, para armar deltas contra el tick que confirmó cada cliente
+// Por serpiente solo se guardan las secuencias de cabeza y cola, no el cuerpo
+// El delta referencia las serpientes vivas: hay que codificarlo antes del siguiente tick
+class SnapshotHistory {
+    private static final int SIZE = 64;
+
+    private static class Snapshot {
+        int tick;
+        int matchId;
+        int[] playerIds;  // 0 = sin serpiente
+        int[] headSeqs;
+        int[] tailSeqs;
+        Map<Integer, Food> foods;
+    }
+
+    private final Snapshot[] ring = new Snapshot[SIZE];
+
+    // Guarda el estado del tick actual
+    public void record(GameState state, int matchId) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.tick = state.getTick();
+        snapshot.matchId = matchId;
+        Snake[] snakes = state.getSnakes();
+        int slots = snakes == null ? 0 : snakes.length;
+        snapshot.playerIds = new int[slots];
+        snapshot.headSeqs = new int[slots];
+        snapshot.tailSeqs = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            if (snakes[i] != null) {
+                snapshot.playerIds[i] = snakes[i].getPlayerId();
+                snapshot.headSeqs[i] = snakes[i].getSegments().getHeadSeq();
+                snapshot.tailSeqs[i] = snakes[i].getSegments().getTailSeq();
+            }
+        }
+        snapshot.foods = new HashMap<>();
+        for (Food food : state.getFoods()) {
+            snapshot.foods.put(SnakeBody.pack(food.getX(), food.getY()), food);
+        }
+        ring[Math.floorMod(snapshot.tick, SIZE)] = snapshot;
+    }
+
+    // Delta desde el tick base hasta el estado actual; null si la base ya no está
+    public StateDelta diff(int baseTick, GameState current, int matchId) {
+        Snapshot base = ring[Math.floorMod(baseTick, SIZE)];
+        if (base == null || base.tick != baseTick) {
+            return null;
+        }
+        StateDelta delta = new StateDelta(baseTick, current.getTick());
+        delta.setDifficulty(current.getDifficulty());
+        delta.setGameRunning(current.isGameRunning());
+        delta.setLastUpdateTime(current.getLastUpdateTime());
+
+        // Comidas quitadas y agregadas
+        Map<Integer, Food> currentFoods = new HashMap<>();
+        List<Food> added = new ArrayList<>();
+        for (Food food : current.getFoods()) {
+            int cell = SnakeBody.pack(food.getX(), food.getY());
+            currentFoods.put(cell, food);
+            Food previous = base.foods.get(cell);
+            if (previous == null || previous.getType() != food.getType()) {
+                added.add(new Food(food.getX(), food.getY(), food.getType()));
+            }
+        }
+        int[] removed = new int[base.foods.size()];
+        int removedCount = 0;
+        for (Map.Entry<Integer, Food> entry : base.foods.entrySet()) {
+            Food now = currentFoods.get(entry.getKey());
+            if (now == null || now.getType() != entry.getValue().getType()) {
+                removed[removedCount++] = entry.getKey();
+            }
+        }
+        delta.setRemovedFoods(Arrays.copyOf(removed, removedCount));
+        delta.setAddedFoods(added);
+
+        // Serpientes
+        Snake[] snakes = current.getSnakes();
+        int slots = snakes == null ? 0 : snakes.length;
+        StateDelta.SnakeChange[] changes = new StateDelta.SnakeChange[slots];
+        for (int i = 0; i < slots; i++) {
+            Snake snake = snakes[i];
+            if (snake == null) {
+                changes[i] = StateDelta.SnakeChange.absent();
+                continue;
+            }
+            SnakeBody body = snake.getSegments();
+            boolean sameSnake = base.matchId == matchId && i < base.playerIds.length
+                    && base.playerIds[i] == snake.getPlayerId();
+            int newHeads = sameSnake ? body.getHeadSeq() - base.headSeqs[i] : 0;
+            int tailsRemoved = sameSnake ? body.getTailSeq() - base.tailSeqs[i] : 0;
+            if (!sameSnake || newHeads < 0 || tailsRemoved < 0 || newHeads >= body.size()) {
+                changes[i] = StateDelta.SnakeChange.full(snake);
+                continue;
+            }
+            int[] heads = new int[newHeads];
+            for (int j = 0; j < newHeads; j++) {
+                heads[j] = body.getPacked(newHeads - 1 - j);
+            }
+            changes[i] = StateDelta.SnakeChange.changed(snake.getPlayerId(), snake.isAlive(),
+                    snake.getDirection(), snake.getScore(), snake.getInputSeq(), tailsRemoved, heads);
+        }
+        delta.setSnakes(changes);
+        return delta;
+    }
+}
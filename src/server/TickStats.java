@@ -0,0 +1,61 @@
+package server;
+
+// Estadísticas de puntualidad de los ticks de una sala
+// Retraso = cuánto tarde arrancó el tick respecto a su plazo; atrasado = el trabajo duró más que el período
+class TickStats {
+    private long ticks;
+    private long overruns;
+    private long skipped;
+    private long totalLatenessNanos;
+    private long maxLatenessNanos;
+    private long totalWorkNanos;
+
+    public void record(long latenessNanos, long workNanos, long periodNanos) {
+        ticks++;
+        long lateness = Math.max(0, latenessNanos);
+        totalLatenessNanos += lateness;
+        maxLatenessNanos = Math.max(maxLatenessNanos, lateness);
+        totalWorkNanos += workNanos;
+        if (workNanos > periodNanos) {
+            overruns++;
+        }
+    }
+
+    public void skip(long count) {
+        skipped += count;
+    }
+
+    public void reset() {
+        ticks = 0;
+        overruns = 0;
+        skipped = 0;
+        totalLatenessNanos = 0;
+        maxLatenessNanos = 0;
+        totalWorkNanos = 0;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+    public long getOverruns() {
+        return overruns;
+    }
+    public long getSkipped() {
+        return skipped;
+    }
+    public double getAverageLatenessMillis() {
+        return ticks == 0 ? 0 : totalLatenessNanos / (ticks * 1e6);
+    }
+    public double getMaxLatenessMillis() {
+        return maxLatenessNanos / 1e6;
+    }
+    public double getAverageWorkMillis() {
+        return ticks == 0 ? 0 : totalWorkNanos / (ticks * 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ticks, %d atrasados, %d saltados, retraso medio %.2f ms, máximo %.2f ms, trabajo medio %.2f ms",
+                ticks, overruns, skipped, getAverageLatenessMillis(), getMaxLatenessMillis(), getAverageWorkMillis());
+    }
+}
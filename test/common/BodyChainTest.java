@@ -0,0 +1,134 @@
+package common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Ida y vuelta de cuerpos por BodyChain: tramos, pasos de a 4 por byte y cuerpos circulares dados vuelta
+class BodyChainTest {
+
+    private static SnakeBody roundTrip(SnakeBody body) throws ProtocolException {
+        ByteBuffer out = ByteBuffer.allocate(BodyChain.encodedSize(body) + 3);
+        out.put(new byte[3]); // que no dependa de empezar en la posición 0
+        BodyChain.write(out, body);
+        assertEquals(BodyChain.encodedSize(body), out.position() - 3);
+        out.flip();
+        out.position(3);
+        SnakeBody decoded = BodyChain.read(out);
+        assertFalse(out.hasRemaining());
+        assertEquals(body.size(), decoded.size());
+        for (int i = 0; i < body.size(); i++) {
+            assertEquals(body.getPacked(i), decoded.getPacked(i), "segmento " + i);
+        }
+        return decoded;
+    }
+
+    // Camino al azar de vecinos desde (x, y)
+    private static SnakeBody walk(int x, int y, int length, long seed) {
+        Random random = new Random(seed);
+        Snake.Direction[] directions = Snake.Direction.values();
+        SnakeBody body = new SnakeBody();
+        body.pushTail(x, y);
+        for (int i = 1; i < length; i++) {
+            Snake.Direction step = directions[random.nextInt(directions.length)];
+            x += step.getDx();
+            y += step.getDy();
+            body.pushTail(x, y);
+        }
+        return body;
+    }
+
+    @Test
+    void emptyAndSingleCell() throws ProtocolException {
+        assertEquals(8, BodyChain.encodedSize(new SnakeBody()));
+        roundTrip(new SnakeBody());
+        SnakeBody one = new SnakeBody();
+        one.pushTail(7, 9);
+        roundTrip(one);
+    }
+
+    @Test
+    void everyStepCountPacksIntoWholeBytes() throws ProtocolException {
+        // 1 a 9 pasos: bytes llenos y a medio llenar
+        for (int length = 2; length <= 10; length++) {
+            SnakeBody body = walk(50, 50, length, length);
+            assertEquals(4 + 4 + 4 + 4 + (length - 1 + 3) / 4, BodyChain.encodedSize(body));
+            roundTrip(body);
+        }
+    }
+
+    @Test
+    void longestBodies() throws ProtocolException {
+        // Un solo tramo que recorre un tablero de 2048x2048 entero en zigzag
+        SnakeBody body = new SnakeBody();
+        for (int y = 0; y < RoomSettings.MAX_SIDE; y++) {
+            for (int i = 0; i < RoomSettings.MAX_SIDE; i++) {
+                body.pushTail(y % 2 == 0 ? i : RoomSettings.MAX_SIDE - 1 - i, y);
+            }
+        }
+        assertEquals(4 + 4 + 4 + 4 + (body.size() - 1 + 3) / 4, BodyChain.encodedSize(body));
+        roundTrip(body);
+    }
+
+    @Test
+    void negativeAndEdgeCoordinates() throws ProtocolException {
+        SnakeBody body = new SnakeBody();
+        body.pushTail(0, -1);
+        body.pushTail(0, 0);
+        body.pushTail(-1, 0);
+        body.pushTail(-1, 1);
+        body.pushTail(Short.MAX_VALUE, Short.MIN_VALUE); // hueco: otro tramo
+        body.pushTail(Short.MAX_VALUE, Short.MIN_VALUE + 1);
+        roundTrip(body);
+    }
+
+    @Test
+    void gapsStartNewRuns() throws ProtocolException {
+        SnakeBody body = new SnakeBody();
+        body.pushTail(10, 10);
+        body.pushTail(11, 10);
+        body.pushTail(20, 20); // recortado por la vista
+        body.pushTail(25, 25); // tramo de una sola celda
+        body.pushTail(25, 26);
+        body.pushTail(25, 26); // misma celda: tampoco es un paso
+        assertEquals(4 + 4 + 4 * (4 + 4) + 1 + 1, BodyChain.encodedSize(body));
+        roundTrip(body);
+    }
+
+    @Test
+    void wrappedRingBuffer() throws ProtocolException {
+        // Una serpiente que avanzó mucho: la cabeza dio varias vueltas al arreglo circular
+        Snake snake = new Snake(1, new java.awt.Point(100, 100), java.awt.Color.RED);
+        Snake.Direction[] turns = {Snake.Direction.DOWN, Snake.Direction.LEFT, Snake.Direction.UP, Snake.Direction.RIGHT};
+        for (int t = 0; t < 1000; t++) {
+            if (t % 7 == 0) {
+                snake.setDirection(turns[(t / 7) % 4]);
+            }
+            snake.move();
+            if (t % 50 != 0) {
+                snake.removeTail(); // cada tanto crece, así también se agranda el arreglo
+            }
+        }
+        SnakeBody decoded = roundTrip(snake.getSegments());
+        // El decodificado sigue funcionando como cuerpo
+        decoded.pushHead(SnakeBody.unpackX(decoded.head()) + 1, SnakeBody.unpackY(decoded.head()));
+        decoded.popTail();
+        assertEquals(snake.getSegments().size(), decoded.size());
+    }
+
+    @Test
+    void rejectsInventedLengths() {
+        ByteBuffer in = ByteBuffer.allocate(16);
+        in.putInt(1_000_000).putInt(1).putInt(0).putInt(999_999).flip();
+        assertThrows(ProtocolException.class, () -> BodyChain.read(in));
+        ByteBuffer runs = ByteBuffer.allocate(8);
+        runs.putInt(2).putInt(3).flip();
+        assertThrows(ProtocolException.class, () -> BodyChain.read(runs));
+        ByteBuffer shortRun = ByteBuffer.allocate(17);
+        shortRun.putInt(3).putInt(1).putInt(0).putInt(1).put((byte) 0).flip();
+        assertThrows(ProtocolException.class, () -> BodyChain.read(shortRun));
+    }
+}
@@ -0,0 +1,341 @@
+package common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Ida y vuelta de cada tipo de mensaje por MessageCodec
+class MessageCodecTest {
+
+    // Codifica, comprueba el largo anunciado y decodifica sin el campo de largo
+    private static Message roundTrip(Message message) throws ProtocolException {
+        ByteBuffer frame = MessageCodec.encode(message);
+        assertEquals(MessageCodec.encodedSize(message), frame.remaining());
+        assertEquals(frame.remaining() - MessageCodec.LENGTH_SIZE, frame.getInt());
+        Message decoded = MessageCodec.decode(frame);
+        assertEquals(message.getType(), decoded.getType());
+        assertFalse(frame.hasRemaining(), "quedaron bytes sin leer en " + message.getType());
+        return decoded;
+    }
+
+    private static Snake snake(int playerId, int x, int y, int length) {
+        SnakeBody body = new SnakeBody();
+        for (int i = 0; i < length; i++) {
+            body.pushTail(x - i, y);
+        }
+        Snake snake = new Snake(playerId, Color.BLUE, body, Snake.Direction.UP);
+        snake.setScore(playerId * 10);
+        snake.setInputSeq(playerId + 100);
+        return snake;
+    }
+
+    private static GameState state() {
+        GameState state = new GameState(40, 30);
+        state.setTick(77);
+        state.setDifficulty(GameState.Difficulty.HARD);
+        state.setGameRunning(true);
+        state.setLastUpdateTime(123456789L);
+        state.getFoods().add(new Food(3, 4, Food.FoodType.SMALL));
+        state.getFoods().add(new Food(39, 29, Food.FoodType.LARGE));
+        state.setSnakes(new Snake[] {snake(1, 10, 5, 3), null, snake(3, 20, 20, 12), null});
+        // Color con transparencia: el alfa viaja con el resto
+        state.getSnakes()[2].setColor(new Color(0x80FF8000, true));
+        return state;
+    }
+
+    private static void assertSnakeEquals(Snake expected, Snake actual) {
+        assertEquals(expected.getPlayerId(), actual.getPlayerId());
+        assertEquals(expected.getColor().getRGB(), actual.getColor().getRGB());
+        assertEquals(expected.isAlive(), actual.isAlive());
+        assertEquals(expected.getDirection(), actual.getDirection());
+        assertEquals(expected.getScore(), actual.getScore());
+        assertEquals(expected.getInputSeq(), actual.getInputSeq());
+        assertEquals(expected.getBody(), actual.getBody());
+    }
+
+    static void assertStateEquals(GameState expected, GameState actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        assertEquals(expected.getDifficulty(), actual.getDifficulty());
+        assertEquals(expected.isGameRunning(), actual.isGameRunning());
+        assertEquals(expected.getBoardWidth(), actual.getBoardWidth());
+        assertEquals(expected.getBoardHeight(), actual.getBoardHeight());
+        assertEquals(expected.getLastUpdateTime(), actual.getLastUpdateTime());
+        assertEquals(expected.getFoods(), actual.getFoods());
+        for (int i = 0; i < expected.getFoods().size(); i++) {
+            assertEquals(expected.getFoods().get(i).getType(), actual.getFoods().get(i).getType());
+        }
+        assertEquals(expected.getSnakes().length, actual.getSnakes().length);
+        for (int i = 0; i < expected.getSnakes().length; i++) {
+            if (expected.getSnakes()[i] == null) {
+                assertNull(actual.getSnakes()[i]);
+            } else {
+                assertSnakeEquals(expected.getSnakes()[i], actual.getSnakes()[i]);
+            }
+        }
+    }
+
+    @Test
+    void intMessages() throws ProtocolException {
+        Message.Type[] types = {Message.Type.CONNECT, Message.Type.PLAYER_JOINED, Message.Type.PLAYER_LEFT,
+                Message.Type.STATE_ACK, Message.Type.JOIN_ROOM, Message.Type.UDP_TOKEN, Message.Type.MOVE_UP, Message.Type.MOVE_DOWN,
+                Message.Type.MOVE_LEFT, Message.Type.MOVE_RIGHT};
+        for (Message.Type type : types) {
+            assertEquals(-123456, roundTrip(new Message(type, -123456)).getData(), type.name());
+        }
+    }
+
+    @Test
+    void emptyMessages() throws ProtocolException {
+        Message.Type[] types = {Message.Type.DISCONNECT, Message.Type.START_GAME, Message.Type.LIST_ROOMS,
+                Message.Type.LEAVE_ROOM};
+        for (Message.Type type : types) {
+            assertEquals(MessageCodec.HEADER_SIZE, MessageCodec.encodedSize(new Message(type)));
+            assertNull(roundTrip(new Message(type)).getData());
+        }
+    }
+
+    @Test
+    void playerAndRoomIds() throws ProtocolException {
+        for (Message.Type type : new Message.Type[] {Message.Type.CONNECTION_ACCEPTED, Message.Type.ROOM_JOINED}) {
+            Message decoded = roundTrip(new Message(type, 42, 7));
+            assertEquals(42, decoded.getData());
+            assertEquals(7, decoded.getPlayerId());
+        }
+    }
+
+    @Test
+    void difficulty() throws ProtocolException {
+        for (GameState.Difficulty difficulty : GameState.Difficulty.values()) {
+            assertEquals(difficulty, roundTrip(new Message(Message.Type.SET_DIFFICULTY, difficulty)).getData());
+        }
+    }
+
+    @Test
+    void strings() throws ProtocolException {
+        assertEquals("Versión incompatible ñ", roundTrip(new Message(Message.Type.CONNECTION_REJECTED, "Versión incompatible ñ")).getData());
+        assertEquals("", roundTrip(new Message(Message.Type.ERROR, "")).getData());
+    }
+
+    @Test
+    void createRoom() throws ProtocolException {
+        RoomSettings settings = new RoomSettings("Sala grande", 2048, 1500, 1024, true);
+        RoomSettings decoded = (RoomSettings) roundTrip(new Message(Message.Type.CREATE_ROOM, settings)).getData();
+        assertEquals("Sala grande", decoded.getName());
+        assertEquals(2048, decoded.getWidth());
+        assertEquals(1500, decoded.getHeight());
+        assertEquals(1024, decoded.getMaxPlayers());
+        assertTrue(decoded.isLockstep());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void roomList() throws ProtocolException {
+        List<RoomInfo> rooms = Arrays.asList(
+                new RoomInfo(1, "Uno", 2, 4, 40, 30, true, false),
+                new RoomInfo(9, "Dos", 0, 1024, 2048, 2048, false, true));
+        List<RoomInfo> decoded = (List<RoomInfo>) roundTrip(new Message(Message.Type.ROOM_LIST, rooms)).getData();
+        assertEquals(2, decoded.size());
+        for (int i = 0; i < rooms.size(); i++) {
+            RoomInfo expected = rooms.get(i);
+            RoomInfo actual = decoded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getPlayers(), actual.getPlayers());
+            assertEquals(expected.getMaxPlayers(), actual.getMaxPlayers());
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            assertEquals(expected.isGameRunning(), actual.isGameRunning());
+            assertEquals(expected.isLockstep(), actual.isLockstep());
+        }
+        assertTrue(((List<RoomInfo>) roundTrip(new Message(Message.Type.ROOM_LIST, Collections.emptyList())).getData()).isEmpty());
+    }
+
+    @Test
+    void minimap() throws ProtocolException {
+        byte[] heads = {0, 1, 2, 3, 4, 5, (byte) 255, 7};
+        Minimap decoded = (Minimap) roundTrip(new Message(Message.Type.MINIMAP, new Minimap(2048, 1024, 4, 2, heads))).getData();
+        assertEquals(2048, decoded.getBoardWidth());
+        assertEquals(1024, decoded.getBoardHeight());
+        assertEquals(4, decoded.getCols());
+        assertEquals(2, decoded.getRows());
+        assertArrayEquals(heads, decoded.getHeads());
+    }
+
+    @Test
+    void gameState() throws ProtocolException {
+        GameState state = state();
+        assertStateEquals(state, (GameState) roundTrip(new Message(Message.Type.GAME_STATE, state)).getData());
+        assertStateEquals(state, (GameState) roundTrip(new Message(Message.Type.GAME_OVER, state)).getData());
+    }
+
+    @Test
+    void gameStateDelta() throws ProtocolException {
+        StateDelta delta = new StateDelta(70, 77);
+        delta.setDifficulty(GameState.Difficulty.MEDIUM);
+        delta.setGameRunning(true);
+        delta.setLastUpdateTime(987654321L);
+        delta.setRemovedFoods(new int[] {SnakeBody.pack(1, 2), SnakeBody.pack(30, 29)});
+        delta.setAddedFoods(Arrays.asList(new Food(5, 6, Food.FoodType.MEDIUM)));
+        Snake full = snake(2, 15, 15, 5);
+        delta.setSnakes(new StateDelta.SnakeChange[] {
+                StateDelta.SnakeChange.absent(),
+                StateDelta.SnakeChange.full(full),
+                StateDelta.SnakeChange.changed(3, false, Snake.Direction.LEFT, 40, 9, 2,
+                        new int[] {SnakeBody.pack(8, 8), SnakeBody.pack(7, 8)})});
+        StateDelta decoded = (StateDelta) roundTrip(new Message(Message.Type.GAME_STATE_DELTA, delta)).getData();
+        assertEquals(70, decoded.getBaseTick());
+        assertEquals(77, decoded.getTick());
+        assertEquals(GameState.Difficulty.MEDIUM, decoded.getDifficulty());
+        assertTrue(decoded.isGameRunning());
+        assertEquals(987654321L, decoded.getLastUpdateTime());
+        assertArrayEquals(delta.getRemovedFoods(), decoded.getRemovedFoods());
+        assertEquals(delta.getAddedFoods(), decoded.getAddedFoods());
+        assertEquals(StateDelta.ABSENT, decoded.getSnakes()[0].getKind());
+        assertEquals(StateDelta.FULL, decoded.getSnakes()[1].getKind());
+        assertSnakeEquals(full, decoded.getSnakes()[1].getSnake());
+        StateDelta.SnakeChange changed = decoded.getSnakes()[2];
+        assertEquals(StateDelta.CHANGED, changed.getKind());
+        assertEquals(3, changed.getPlayerId());
+        assertFalse(changed.isAlive());
+        assertEquals(Snake.Direction.LEFT, changed.getDirection());
+        assertEquals(40, changed.getScore());
+        assertEquals(9, changed.getInputSeq());
+        assertEquals(2, changed.getTailsRemoved());
+        assertArrayEquals(new int[] {SnakeBody.pack(8, 8), SnakeBody.pack(7, 8)}, changed.getNewHeads());
+    }
+
+    @Test
+    void lockstepTick() throws ProtocolException {
+        TickInputs inputs = new TickInputs();
+        inputs.setTick(400);
+        inputs.setPlayers(3);
+        inputs.setTime(55555L);
+        inputs.addEvent(TickInputs.REMOVE, 2);
+        inputs.addEvent(TickInputs.DIFFICULTY, GameState.Difficulty.HARD.ordinal());
+        inputs.addInput(1, Snake.Direction.DOWN, 17);
+        inputs.addInput(1024, Snake.Direction.LEFT, 18);
+        inputs.addSpawn(1234, Food.FoodType.LARGE);
+        TickInputs decoded = (TickInputs) roundTrip(new Message(Message.Type.LOCKSTEP_TICK, inputs)).getData();
+        assertEquals(400, decoded.getTick());
+        assertEquals(3, decoded.getPlayers());
+        assertEquals(55555L, decoded.getTime());
+        assertEquals(2, decoded.getEventCount());
+        assertEquals(TickInputs.REMOVE, decoded.getEventKind(0));
+        assertEquals(2, decoded.getEventValue(0));
+        assertEquals(TickInputs.DIFFICULTY, decoded.getEventKind(1));
+        assertEquals(GameState.Difficulty.HARD.ordinal(), decoded.getEventValue(1));
+        assertEquals(2, decoded.getInputCount());
+        assertEquals(1024, decoded.getInputPlayer(1));
+        assertEquals(Snake.Direction.LEFT, decoded.getInputDirection(1));
+        assertEquals(18, decoded.getInputSeq(1));
+        assertEquals(1, decoded.getSpawnCount());
+        assertEquals(1234, decoded.getSpawnCell(0));
+        assertEquals(Food.FoodType.LARGE, decoded.getSpawnType(0));
+    }
+
+    @Test
+    void lockstepTickWithManyEvents() throws ProtocolException {
+        // Sala grande que se vacía de golpe: más de 255 eliminaciones en un tick
+        TickInputs inputs = new TickInputs();
+        inputs.setTick(9);
+        for (int player = 1; player <= 300; player++) {
+            inputs.addEvent(TickInputs.REMOVE, player);
+        }
+        TickInputs decoded = (TickInputs) roundTrip(new Message(Message.Type.LOCKSTEP_TICK, inputs)).getData();
+        assertEquals(300, decoded.getEventCount());
+        assertEquals(300, decoded.getEventValue(299));
+        assertEquals(0, decoded.getInputCount());
+    }
+
+    @Test
+    void lockstepSync() throws ProtocolException {
+        Simulation sim = new Simulation(40, 30, 4, 5, 100);
+        sim.setSeed(7);
+        sim.resetBoard(new int[] {1, 2});
+        sim.generateFood(null);
+        sim.getGameState().setGameRunning(true);
+        sim.getGameState().setLastUpdateTime(4242L);
+        Simulation decoded = (Simulation) roundTrip(new Message(Message.Type.LOCKSTEP_SYNC, sim)).getData();
+        assertEquals(sim.stateHash(), decoded.stateHash());
+        assertEquals(4242L, decoded.getGameState().getLastUpdateTime());
+        assertEquals(sim.getMaxFoods(), decoded.getMaxFoods());
+        assertEquals(sim.getFoodTtlTicks(), decoded.getFoodTtlTicks());
+    }
+
+    @Test
+    void lockstepHash() throws ProtocolException {
+        int[] decoded = (int[]) roundTrip(new Message(Message.Type.LOCKSTEP_HASH, new int[] {-1, 0xCAFEBABE})).getData();
+        assertArrayEquals(new int[] {-1, 0xCAFEBABE}, decoded);
+    }
+
+    @Test
+    void frameReadAndWrite() throws Exception {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        MessageCodec.writeFrame(new java.io.DataOutputStream(bytes), new Message(Message.Type.PLAYER_JOINED, 5));
+        MessageCodec.writeFrame(new java.io.DataOutputStream(bytes), new Message(Message.Type.START_GAME));
+        java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(5, MessageCodec.readFrame(in).getData());
+        assertEquals(Message.Type.START_GAME, MessageCodec.readFrame(in).getType());
+    }
+
+    @Test
+    void rejectsOtherVersion() {
+        ByteBuffer frame = MessageCodec.encode(new Message(Message.Type.START_GAME));
+        frame.put(MessageCodec.LENGTH_SIZE, (byte) (MessageCodec.PROTOCOL_VERSION + 1));
+        frame.position(MessageCodec.LENGTH_SIZE);
+        assertThrows(ProtocolException.class, () -> MessageCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsUnknownType() {
+        ByteBuffer frame = ByteBuffer.allocate(2);
+        frame.put((byte) MessageCodec.PROTOCOL_VERSION).put((byte) Message.Type.values().length).flip();
+        assertThrows(ProtocolException.class, () -> MessageCodec.decode(frame));
+    }
+
+    @Test
+    void rejectsTruncatedFrame() {
+        ByteBuffer frame = MessageCodec.encode(new Message(Message.Type.GAME_STATE, state()));
+        frame.position(MessageCodec.LENGTH_SIZE);
+        frame.limit(frame.limit() - 3);
+        assertThrows(ProtocolException.class, () -> MessageCodec.decode(frame));
+    }
+
+    @Test
+    void clientFramesFitTheServerLimit() {
+        // El nombre de sala más largo que manda el cliente, con caracteres de 3 bytes en UTF-8
+        char[] name = new char[RoomSettings.MAX_NAME_LENGTH];
+        Arrays.fill(name, '€');
+        RoomSettings settings = new RoomSettings(new String(name), RoomSettings.MAX_SIDE, RoomSettings.MAX_SIDE,
+                RoomSettings.MAX_PLAYERS_LIMIT, true);
+        Message[] largest = {new Message(Message.Type.CREATE_ROOM, settings),
+                new Message(Message.Type.LOCKSTEP_HASH, new int[] {1, 2}), new Message(Message.Type.CONNECT, 7)};
+        for (Message message : largest) {
+            int length = MessageCodec.encodedSize(message) - MessageCodec.LENGTH_SIZE;
+            assertTrue(length <= MessageCodec.MAX_CLIENT_FRAME_SIZE, message.getType().name());
+        }
+    }
+
+    @Test
+    void clientFramesOnlyCarryClientTypes() throws ProtocolException {
+        for (Message.Type type : Message.Type.values()) {
+            boolean fromClient = type.ordinal() <= Message.Type.LOCKSTEP_HASH.ordinal();
+            if (fromClient) {
+                continue;
+            }
+            // El contenido no importa: se rechaza por el tipo antes de leerlo
+            ByteBuffer frame = ByteBuffer.allocate(2);
+            frame.put((byte) MessageCodec.PROTOCOL_VERSION).put((byte) type.ordinal()).flip();
+            assertThrows(ProtocolException.class, () -> MessageCodec.decodeFromClient(frame), type.name());
+        }
+        ByteBuffer frame = MessageCodec.encode(new Message(Message.Type.MOVE_LEFT, 3));
+        frame.position(MessageCodec.LENGTH_SIZE);
+        assertEquals(3, MessageCodec.decodeFromClient(frame).getData());
+    }
+}
@@ -0,0 +1,122 @@
+package common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+// El conjunto de celdas libres de OccupancyGrid contra un recorrido completo de la rejilla
+class OccupancyGridTest {
+
+    // Random que devuelve el índice pedido, para recorrer el conjunto de celdas libres entero
+    private static final class FixedRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        int next;
+
+        @Override
+        public int nextInt(int bound) {
+            return next;
+        }
+    }
+
+    private static void assertFreeIndex(OccupancyGrid grid) {
+        Set<Integer> empty = new HashSet<>();
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                if (grid.get(x, y) == OccupancyGrid.EMPTY) {
+                    empty.add(grid.index(x, y));
+                }
+            }
+        }
+        assertEquals(empty.size(), grid.getFreeCount());
+        Set<Integer> free = new HashSet<>();
+        FixedRandom random = new FixedRandom();
+        for (random.next = 0; random.next < grid.getFreeCount(); random.next++) {
+            assertTrue(free.add(grid.randomFreeCell(random)), "celda libre repetida");
+        }
+        assertEquals(empty, free);
+    }
+
+    @Test
+    void newGridIsAllFree() {
+        OccupancyGrid grid = new OccupancyGrid(7, 5);
+        assertEquals(35, grid.getFreeCount());
+        assertFreeIndex(grid);
+    }
+
+    @Test
+    void occupyAndReleaseKeepTheIndex() {
+        OccupancyGrid grid = new OccupancyGrid(20, 20);
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(20);
+            int y = random.nextInt(20);
+            switch (random.nextInt(5)) {
+                case 0:
+                    grid.occupy(x, y, 1 + random.nextInt(4));
+                    break;
+                case 1:
+                    grid.occupy(x, y, OccupancyGrid.foodValue(random.nextInt(10)));
+                    break;
+                case 2:
+                    grid.release(x, y);
+                    break;
+                case 3:
+                    grid.releaseIfOwner(x, y, 1 + random.nextInt(4));
+                    break;
+                default:
+                    grid.setWall(x, y, random.nextBoolean());
+                    break;
+            }
+            if (i % 250 == 0) {
+                assertFreeIndex(grid);
+            }
+        }
+        assertFreeIndex(grid);
+        grid.clear();
+        assertFreeIndex(grid);
+    }
+
+    @Test
+    void wallsStayAfterRelease() {
+        OccupancyGrid grid = new OccupancyGrid(4, 4);
+        grid.setWall(1, 1, true);
+        grid.occupy(1, 1, 2); // una serpiente que entra a la pared (choca) no la borra
+        grid.release(1, 1);
+        assertEquals(OccupancyGrid.WALL, grid.get(1, 1));
+        grid.occupy(2, 2, 3);
+        grid.releaseIfOwner(2, 2, 4);
+        assertEquals(3, grid.get(2, 2));
+        grid.clear();
+        assertEquals(OccupancyGrid.WALL, grid.get(1, 1));
+        assertEquals(OccupancyGrid.EMPTY, grid.get(2, 2));
+        assertEquals(15, grid.getFreeCount());
+        assertFreeIndex(grid);
+    }
+
+    @Test
+    void fullGridHasNoFreeCell() {
+        OccupancyGrid grid = new OccupancyGrid(3, 3);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                grid.occupy(x, y, 1);
+            }
+        }
+        assertEquals(-1, grid.randomFreeCell(new Random(0)));
+        grid.release(2, 1);
+        assertEquals(grid.index(2, 1), grid.randomFreeCell(new Random(0)));
+    }
+
+    @Test
+    void foodValuesMapBackToSlots() {
+        for (int slot = 0; slot < 70000; slot += 997) {
+            int value = OccupancyGrid.foodValue(slot);
+            assertTrue(OccupancyGrid.isFood(value));
+            assertEquals(slot, OccupancyGrid.foodSlot(value));
+        }
+        assertFalse(OccupancyGrid.isFood(OccupancyGrid.WALL));
+        assertFalse(OccupancyGrid.isFood(OccupancyGrid.EMPTY));
+    }
+}
@@ -0,0 +1,209 @@
+package common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Determinismo de Simulation: las réplicas que avanzan con los mismos TickInputs dan el mismo hash que el original,
+// y un keyframe escrito y restaurado sigue igual
+class SimulationTest {
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    private static final int MAX_PLAYERS = 4;
+    private static final int MAX_FOODS = 12;
+    private static final int FOOD_TTL = 25;
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+
+    // Hace de servidor: decide entradas, comidas y cambios de la sala y los anota en TickInputs, como GameEngine
+    private static final class Authority {
+        final Simulation sim = newSimulation();
+        final Random random;
+
+        Authority(long seed) {
+            random = new Random(seed);
+            sim.setSeed(seed);
+            sim.resetBoard(new int[] {1, 2, 3});
+            sim.generateFood(null);
+            sim.getGameState().setGameRunning(true);
+        }
+
+        TickInputs tick() {
+            TickInputs inputs = new TickInputs();
+            int t = sim.getTick();
+            if (t == 20) {
+                sim.removePlayer(3);
+                inputs.addEvent(TickInputs.REMOVE, 3);
+            }
+            if (t == 35) {
+                sim.setDifficulty(GameState.Difficulty.MEDIUM);
+                inputs.addEvent(TickInputs.DIFFICULTY, GameState.Difficulty.MEDIUM.ordinal());
+            }
+            sim.expireFoods();
+            for (int player = 1; player <= MAX_PLAYERS; player++) {
+                Snake snake = sim.getSnake(player);
+                if (snake == null) {
+                    continue;
+                }
+                // Vueltas en cuadrado para que la partida dure y, cada tanto, varias teclas en el mismo tick
+                // (se llena el buffer de giros)
+                if (random.nextInt(10) == 0) {
+                    for (int n = 1; n <= 3; n++) {
+                        input(inputs, player, DIRECTIONS[random.nextInt(DIRECTIONS.length)], t * 10 + n);
+                    }
+                } else if (t % (3 + player) == 0) {
+                    input(inputs, player, clockwise(snake.getDirection()), t * 10);
+                }
+            }
+            sim.applyTurns();
+            sim.update(1); // como con un solo jugador: la partida sigue hasta que mueren todas
+            if (random.nextInt(3) == 0) {
+                sim.generateFood(inputs);
+            }
+            sim.endTick();
+            inputs.setTick(sim.getTick());
+            inputs.setPlayers(1);
+            return inputs;
+        }
+
+        private void input(TickInputs inputs, int player, Snake.Direction direction, int seq) {
+            if (sim.applyInput(player, direction, seq)) {
+                inputs.addInput(player, direction, seq);
+            }
+        }
+
+        private static Snake.Direction clockwise(Snake.Direction direction) {
+            switch (direction) {
+                case UP: return Snake.Direction.RIGHT;
+                case RIGHT: return Snake.Direction.DOWN;
+                case DOWN: return Snake.Direction.LEFT;
+                default: return Snake.Direction.UP;
+            }
+        }
+    }
+
+    private static Simulation newSimulation() {
+        return new Simulation(WIDTH, HEIGHT, MAX_PLAYERS, MAX_FOODS, FOOD_TTL);
+    }
+
+    private static byte[] keyframe(Simulation sim) {
+        ByteBuffer out = ByteBuffer.allocate(sim.keyframeSize());
+        sim.writeKeyframe(out);
+        assertFalse(out.hasRemaining(), "keyframeSize no coincide con lo escrito");
+        return out.array();
+    }
+
+    private static Simulation restore(byte[] keyframe) throws ProtocolException {
+        Simulation sim = newSimulation();
+        ByteBuffer in = ByteBuffer.wrap(keyframe);
+        sim.restoreKeyframe(in);
+        assertFalse(in.hasRemaining());
+        return sim;
+    }
+
+    @Test
+    void replicasFollowTheAuthority() throws ProtocolException {
+        for (long seed = 1; seed <= 8; seed++) {
+            Authority authority = new Authority(seed);
+            byte[] start = keyframe(authority.sim);
+            Simulation a = restore(start);
+            Simulation b = restore(start);
+            assertEquals(authority.sim.stateHash(), a.stateHash());
+            int tick = 0;
+            for (; tick < 300 && authority.sim.getGameState().isGameRunning(); tick++) {
+                TickInputs inputs = authority.tick();
+                a.step(inputs);
+                b.step(inputs);
+                assertEquals(authority.sim.getTick(), a.getTick());
+                assertEquals(authority.sim.stateHash(), a.stateHash(), "semilla " + seed + ", tick " + a.getTick());
+                assertEquals(a.stateHash(), b.stateHash());
+            }
+            assertTrue(tick > 35, "la partida terminó antes de los cambios de la sala");
+        }
+    }
+
+    @Test
+    void sameInputsFromScratchGiveSameHash() {
+        Authority first = new Authority(8);
+        Authority second = new Authority(8);
+        for (int tick = 0; tick < 150; tick++) {
+            first.tick();
+            second.tick();
+            assertEquals(first.sim.stateHash(), second.sim.stateHash(), "tick " + tick);
+        }
+    }
+
+    @Test
+    void keyframeRoundTripMidMatch() throws ProtocolException {
+        Authority authority = new Authority(33);
+        List<TickInputs> later = new ArrayList<>();
+        for (int tick = 0; tick < 40; tick++) {
+            authority.tick();
+        }
+        byte[] middle = keyframe(authority.sim);
+        Simulation restored = restore(middle);
+        assertEquals(authority.sim.stateHash(), restored.stateHash());
+        assertArrayEquals(middle, keyframe(restored));
+        // Lo restaurado sigue igual: vencimientos de comida, giros guardados y secuencias de entrada incluidos
+        for (int tick = 0; tick < 80; tick++) {
+            later.add(authority.tick());
+        }
+        for (TickInputs inputs : later) {
+            restored.step(inputs);
+        }
+        assertEquals(authority.sim.stateHash(), restored.stateHash());
+        assertArrayEquals(keyframe(authority.sim), keyframe(restored));
+    }
+
+    @Test
+    void missingInputIsDetectedByTheHash() throws ProtocolException {
+        Authority authority = new Authority(5);
+        Simulation replica = restore(keyframe(authority.sim));
+        boolean diverged = false;
+        for (int tick = 0; tick < 100 && !diverged; tick++) {
+            TickInputs inputs = authority.tick();
+            if (tick == 10) {
+                TickInputs partial = new TickInputs();
+                partial.setTick(inputs.getTick());
+                partial.setPlayers(inputs.getPlayers());
+                for (int i = 0; i < inputs.getSpawnCount(); i++) {
+                    partial.addSpawn(inputs.getSpawnCell(i), inputs.getSpawnType(i));
+                }
+                // La réplica nunca ve la primera entrada que cambió algo
+                partial.addInput(1, Snake.Direction.UP, 1);
+                inputs = partial;
+            }
+            replica.step(inputs);
+            diverged = replica.stateHash() != authority.sim.stateHash();
+        }
+        assertTrue(diverged);
+    }
+
+    @Test
+    void restoreRejectsBadSnakeSlot() {
+        Simulation big = new Simulation(WIDTH, HEIGHT, 8, MAX_FOODS, FOOD_TTL);
+        big.resetBoard(new int[] {8});
+        ByteBuffer out = ByteBuffer.allocate(big.keyframeSize());
+        big.writeKeyframe(out);
+        out.flip();
+        assertThrows(ProtocolException.class, () -> newSimulation().restoreKeyframe(out));
+    }
+
+    @Test
+    void turnBufferKeepsTwoTurns() {
+        Snake.Direction[] turns = new Snake.Direction[Simulation.TURN_BUFFER];
+        Snake.Direction current = Snake.Direction.RIGHT;
+        assertEquals(-1, Simulation.queueTurn(turns, 0, current, Snake.Direction.RIGHT));
+        assertEquals(-1, Simulation.queueTurn(turns, 0, current, Snake.Direction.LEFT));
+        assertEquals(0, Simulation.queueTurn(turns, 0, current, Snake.Direction.UP));
+        assertEquals(1, Simulation.queueTurn(turns, 1, current, Snake.Direction.LEFT));
+        // Lleno: una tercera tecla no agrega giros; si es válida se confirma junto con el último
+        assertEquals(-1, Simulation.queueTurn(turns, 2, current, Snake.Direction.RIGHT));
+        assertEquals(1, Simulation.queueTurn(turns, 2, current, Snake.Direction.DOWN));
+        assertArrayEquals(new Snake.Direction[] {Snake.Direction.UP, Snake.Direction.LEFT}, turns);
+    }
+}
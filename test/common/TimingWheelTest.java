@@ -0,0 +1,125 @@
+package common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+// Vencimientos de TimingWheel contra un mapa id -> tick de vencimiento
+class TimingWheelTest {
+
+    private static List<Integer> advance(TimingWheel wheel) {
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(expired::add);
+        return expired;
+    }
+
+    @Test
+    void expiresAfterTheDelay() {
+        TimingWheel wheel = new TimingWheel(8, 4);
+        wheel.schedule(0, 3);
+        wheel.schedule(1, 1);
+        wheel.schedule(2, 0); // se agenda al menos a un tick
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), new HashSet<>(advance(wheel)));
+        assertEquals(2, wheel.remaining(0));
+        assertTrue(advance(wheel).isEmpty());
+        assertEquals(Arrays.asList(0), advance(wheel));
+        assertFalse(wheel.isScheduled(0));
+        assertEquals(0, wheel.remaining(0));
+    }
+
+    @Test
+    void delaysLongerThanTheWheelWaitForTheirRound() {
+        TimingWheel wheel = new TimingWheel(4, 2);
+        wheel.schedule(0, 10);
+        wheel.schedule(1, 4);
+        for (int tick = 1; tick <= 10; tick++) {
+            List<Integer> expired = advance(wheel);
+            if (tick == 4) {
+                assertEquals(Arrays.asList(1), expired);
+            } else if (tick == 10) {
+                assertEquals(Arrays.asList(0), expired);
+            } else {
+                assertTrue(expired.isEmpty(), "tick " + tick);
+                assertEquals(10 - tick, wheel.remaining(0));
+            }
+        }
+    }
+
+    @Test
+    void rescheduleAndCancel() {
+        TimingWheel wheel = new TimingWheel(8, 3);
+        wheel.schedule(0, 2);
+        wheel.schedule(0, 5); // reemplaza el plazo anterior
+        wheel.schedule(1, 2);
+        wheel.cancel(1);
+        wheel.cancel(2); // sin agendar: no hace nada
+        for (int tick = 1; tick < 5; tick++) {
+            assertTrue(advance(wheel).isEmpty(), "tick " + tick);
+        }
+        assertEquals(Arrays.asList(0), advance(wheel));
+    }
+
+    @Test
+    void randomOperationsMatchTheModel() {
+        int capacity = 64;
+        TimingWheel wheel = new TimingWheel(16, capacity);
+        Map<Integer, Long> due = new HashMap<>();
+        Random random = new Random(4);
+        long tick = 0;
+        for (int step = 0; step < 20000; step++) {
+            int id = random.nextInt(capacity);
+            int op = random.nextInt(4);
+            if (op == 0) {
+                int delay = 1 + random.nextInt(50);
+                wheel.schedule(id, delay);
+                due.put(id, tick + delay);
+            } else if (op == 1) {
+                wheel.cancel(id);
+                due.remove(id);
+            } else {
+                tick++;
+                Set<Integer> expected = new HashSet<>();
+                for (Map.Entry<Integer, Long> entry : due.entrySet()) {
+                    if (entry.getValue() == tick) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                due.keySet().removeAll(expected);
+                assertEquals(expected, new HashSet<>(advance(wheel)), "tick " + tick);
+            }
+            Long expiry = due.get(id);
+            assertEquals(expiry != null, wheel.isScheduled(id));
+            assertEquals(expiry == null ? 0 : (int) (expiry - tick), wheel.remaining(id));
+        }
+        Set<Integer> scheduled = new HashSet<>();
+        wheel.forEachScheduled(scheduled::add);
+        assertEquals(due.keySet(), scheduled);
+    }
+
+    @Test
+    void forEachScheduledStartsWithTheNextToExpire() {
+        TimingWheel wheel = new TimingWheel(8, 4);
+        advance(wheel);
+        wheel.schedule(0, 6);
+        wheel.schedule(1, 2);
+        wheel.schedule(2, 4);
+        List<Integer> order = new ArrayList<>();
+        wheel.forEachScheduled(order::add);
+        assertEquals(Arrays.asList(1, 2, 0), order);
+        wheel.clear();
+        for (int id = 0; id < 3; id++) {
+            assertFalse(wheel.isScheduled(id));
+        }
+        for (int tick = 0; tick < 8; tick++) {
+            assertTrue(advance(wheel).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import common.*;
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Deltas de SnapshotHistory aplicados con StateDelta.applyTo sobre la copia que tendría el cliente
+class SnapshotHistoryTest {
+    private static final Snake.Direction[] DIRECTIONS = Snake.Direction.values();
+    private static final Food.FoodType[] FOOD_TYPES = Food.FoodType.values();
+    private static final int SLOTS = 4;
+
+    // Partida de prueba sin tablero: serpientes que giran, crecen, mueren y se reemplazan, y comidas que aparecen,
+    // se comen o cambian de tipo. Guarda cada estado en el historial y lo devuelve por tick
+    private static Map<Integer, GameState> play(SnapshotHistory history, int matchId, int ticks, long seed) {
+        Random random = new Random(seed);
+        Snake[] snakes = new Snake[SLOTS];
+        for (int i = 0; i < 3; i++) {
+            snakes[i] = new Snake(i + 1, new Point(10 + i * 10, 10), Color.GREEN);
+        }
+        int nextPlayerId = 4;
+        List<Food> foods = new ArrayList<>();
+        Map<Integer, GameState> states = new HashMap<>();
+        for (int tick = 1; tick <= ticks; tick++) {
+            for (Snake snake : snakes) {
+                if (snake == null || !snake.isAlive()) {
+                    continue;
+                }
+                if (random.nextInt(4) == 0) {
+                    snake.setDirection(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+                    snake.setInputSeq(snake.getInputSeq() + 1);
+                }
+                snake.move();
+                if (random.nextInt(10) == 0) {
+                    snake.grow(new Food(0, 0, FOOD_TYPES[random.nextInt(FOOD_TYPES.length)]));
+                } else {
+                    snake.removeTail();
+                }
+                if (random.nextInt(150) == 0) {
+                    snake.setAlive(false);
+                }
+            }
+            int slot = random.nextInt(SLOTS);
+            if (random.nextInt(40) == 0) {
+                // Otro jugador en el mismo lugar
+                snakes[slot] = new Snake(nextPlayerId++, new Point(5, 5 + slot), Color.ORANGE);
+            } else if (random.nextInt(60) == 0) {
+                snakes[slot] = null;
+            }
+            if (!foods.isEmpty() && random.nextInt(3) == 0) {
+                foods.remove(random.nextInt(foods.size()));
+            }
+            if (random.nextInt(2) == 0) {
+                Food food = new Food(random.nextInt(40), random.nextInt(30), FOOD_TYPES[random.nextInt(FOOD_TYPES.length)]);
+                foods.remove(food); // misma celda: cambia el tipo
+                foods.add(food);
+            }
+            GameState state = new GameState(40, 30);
+            state.setTick(tick);
+            state.setDifficulty(GameState.Difficulty.values()[tick / 50 % 3]);
+            state.setGameRunning(tick % 97 != 0);
+            state.setLastUpdateTime(1000L + tick * 100);
+            state.setFoods(new ArrayList<>(foods));
+            Snake[] copies = new Snake[SLOTS];
+            for (int i = 0; i < SLOTS; i++) {
+                copies[i] = snakes[i] == null ? null : new Snake(snakes[i]);
+            }
+            state.setSnakes(copies);
+            if (history != null) {
+                history.record(state, matchId);
+            }
+            states.put(tick, state);
+        }
+        return states;
+    }
+
+    private static void assertSameState(GameState expected, GameState actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        assertEquals(expected.getDifficulty(), actual.getDifficulty());
+        assertEquals(expected.isGameRunning(), actual.isGameRunning());
+        assertEquals(expected.getLastUpdateTime(), actual.getLastUpdateTime());
+        // El orden de las comidas puede cambiar: se comparan por celda
+        assertEquals(foodsByCell(expected), foodsByCell(actual));
+        assertEquals(expected.getSnakes().length, actual.getSnakes().length);
+        for (int i = 0; i < expected.getSnakes().length; i++) {
+            Snake a = expected.getSnakes()[i];
+            Snake b = actual.getSnakes()[i];
+            if (a == null) {
+                assertNull(b);
+                continue;
+            }
+            assertEquals(a.getPlayerId(), b.getPlayerId());
+            assertEquals(a.isAlive(), b.isAlive());
+            assertEquals(a.getDirection(), b.getDirection());
+            assertEquals(a.getScore(), b.getScore());
+            assertEquals(a.getInputSeq(), b.getInputSeq());
+            assertEquals(a.getBody(), b.getBody());
+        }
+    }
+
+    private static Map<Integer, Food.FoodType> foodsByCell(GameState state) {
+        Map<Integer, Food.FoodType> foods = new HashMap<>();
+        for (Food food : state.getFoods()) {
+            assertNull(foods.put(SnakeBody.pack(food.getX(), food.getY()), food.getType()), "comida repetida");
+        }
+        return foods;
+    }
+
+    @Test
+    void deltaRebuildsStateFromAnyKeptBase() {
+        SnapshotHistory history = new SnapshotHistory();
+        Map<Integer, GameState> states = play(history, 1, 100, 11);
+        GameState current = states.get(100);
+        for (int base = 100 - 63; base < 100; base++) {
+            StateDelta delta = history.diff(base, current, 1);
+            assertNotNull(delta, "base " + base);
+            assertSameState(current, delta.applyTo(states.get(base)));
+        }
+    }
+
+    @Test
+    void deltasFollowALongMatchTickByTick() {
+        Map<Integer, GameState> states = play(null, 1, 1000, 5);
+        // Igual que el cliente: cada delta se aplica sobre el estado armado con el anterior
+        SnapshotHistory history = new SnapshotHistory();
+        history.record(states.get(1), 1);
+        GameState client = states.get(1);
+        for (int tick = 2; tick <= 1000; tick++) {
+            GameState expected = states.get(tick);
+            StateDelta delta = history.diff(tick - 1, expected, 1);
+            history.record(expected, 1);
+            client = delta.applyTo(client);
+            assertNotNull(client, "tick " + tick);
+            assertSameState(expected, client);
+        }
+    }
+
+    @Test
+    void missingBaseGivesNoDelta() {
+        SnapshotHistory history = new SnapshotHistory();
+        Map<Integer, GameState> states = play(history, 1, 100, 3);
+        // El historial guarda 64 ticks: la base más vieja ya se pisó
+        assertNull(history.diff(100 - 64, states.get(100), 1));
+        assertNull(history.diff(101, states.get(100), 1));
+    }
+
+    @Test
+    void deltaNeedsTheBaseItWasBuiltFor() {
+        SnapshotHistory history = new SnapshotHistory();
+        Map<Integer, GameState> states = play(history, 1, 20, 8);
+        StateDelta delta = history.diff(18, states.get(20), 1);
+        assertNull(delta.applyTo(states.get(19)));
+        assertNull(delta.applyTo(null));
+    }
+
+    @Test
+    void newMatchSendsWholeSnakes() {
+        SnapshotHistory history = new SnapshotHistory();
+        Map<Integer, GameState> states = play(history, 1, 20, 9);
+        StateDelta delta = history.diff(19, states.get(20), 2);
+        for (StateDelta.SnakeChange change : delta.getSnakes()) {
+            assertNotEquals(StateDelta.CHANGED, change.getKind());
+        }
+        assertSameState(states.get(20), delta.applyTo(states.get(19)));
+    }
+}